@@ -115,6 +115,19 @@ public class Field implements Cloneable{
         return Objects.hash(name, alias);
     }
 
+    /**
+     * Shallow copy keeping the actual class, ex. MethodField, so that setters on the copy
+     * don't affect this field.
+     * @return field copied
+     */
+    public Field copy() {
+        try {
+            return (Field) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Failed to copy field " + name, e);
+        }
+    }
+
     @Override
     protected Object clone() throws CloneNotSupportedException {
         return new Field(new String(this.name), new String(this.alias));
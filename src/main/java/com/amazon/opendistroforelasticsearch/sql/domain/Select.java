@@ -168,5 +168,45 @@ public class Select extends Query {
     public boolean isSelectAll() {
         return selectAll;
     }
+
+    /**
+     * Copy of this Select for a single execution, which is used to hand out Select cached or prepared.
+     * WHERE, fields and all lists are copied because execution modifies them, ex. alias of aggregation
+     * fixed in AggMaker. Immutable parts like FROM, HAVING and sub-queries are shared.
+     * @return Select copied
+     */
+    public Select copy() {
+        Select copy = new Select();
+        try {
+            copy.setWhere(getWhere() == null ? null : (Where) getWhere().clone());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Failed to copy WHERE of Select", e);
+        }
+        copy.getFrom().addAll(this.getFrom());
+        copy.hints = new ArrayList<>(this.hints);
+        copy.fields = copyFields(this.fields);
+        copy.groupBys = new ArrayList<>();
+        for (List<Field> groupBy : this.groupBys) {
+            copy.groupBys.add(copyFields(groupBy));
+        }
+        copy.having = this.having;
+        copy.orderBys = new ArrayList<>(this.orderBys);
+        copy.offset = this.offset;
+        copy.rowCount = this.rowCount;
+        copy.containsSubQueries = this.containsSubQueries;
+        copy.subQueries = this.subQueries;
+        copy.isQuery = this.isQuery;
+        copy.selectAll = this.selectAll;
+        copy.isAgg = this.isAgg;
+        return copy;
+    }
+
+    private static List<Field> copyFields(List<Field> fields) {
+        List<Field> copies = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            copies.add(field.copy());
+        }
+        return copies;
+    }
 }
 
@@ -93,6 +93,9 @@ public class HintFactory {
         if(hintAsString.startsWith("! IGNORE_UNAVAILABLE")){
             return new Hint(HintType.IGNORE_UNAVAILABLE,null);
         }
+        if(hintAsString.startsWith("! NO_RESULT_CACHE")){
+            return new Hint(HintType.NO_RESULT_CACHE, new Object[0]);
+        }
         if(hintAsString.startsWith("! DOCS_WITH_AGGREGATION")) {
             Integer[] params = parseParamsAsInts(hintAsString,"! DOCS_WITH_AGGREGATION");
             return new Hint(HintType.DOCS_WITH_AGGREGATION, params);
@@ -188,6 +191,9 @@ public class HintFactory {
              || hintStr.startsWith("! JOIN_CIRCUIT_BREAK_LIMIT")
              || hintStr.startsWith("! JOIN_BACK_OFF_RETRY_INTERVALS")
              || hintStr.startsWith("! JOIN_TIME_OUT")
+             || hintStr.startsWith("! JOIN_SCROLL_SLICES")
+             || hintStr.startsWith("! JOIN_SORT_BUFFER_SIZE")
+             || hintStr.startsWith("! JOIN_PARALLEL_PROBE")
             )) { // Note that Trie tree is needed here if many hint options
 
             String hintName = hintStr.substring(PREFIX.length(), hintStr.indexOf('(')).trim();
@@ -202,6 +208,12 @@ public class HintFactory {
         else if (hintStr.startsWith("! JOIN_ALGORITHM_USE_LEGACY")) {
             return new Hint(HintType.JOIN_ALGORITHM_USE_LEGACY, new Object[0]);
         }
+        else if (hintStr.startsWith("! JOIN_ASYNC_PREFETCH")) {
+            return new Hint(HintType.JOIN_ASYNC_PREFETCH, new Object[0]);
+        }
+        else if (hintStr.startsWith("! JOIN_SPILL_TO_DISK")) {
+            return new Hint(HintType.JOIN_SPILL_TO_DISK, new Object[0]);
+        }
         return null;
     }
 
@@ -39,5 +39,11 @@ public enum HintType
     JOIN_SCROLL_PAGE_SIZE,
     JOIN_CIRCUIT_BREAK_LIMIT,
     JOIN_BACK_OFF_RETRY_INTERVALS,
-    JOIN_TIME_OUT
+    JOIN_TIME_OUT,
+    JOIN_SCROLL_SLICES,
+    JOIN_ASYNC_PREFETCH,
+    JOIN_SPILL_TO_DISK,
+    JOIN_SORT_BUFFER_SIZE,
+    JOIN_PARALLEL_PROBE,
+    NO_RESULT_CACHE
 }
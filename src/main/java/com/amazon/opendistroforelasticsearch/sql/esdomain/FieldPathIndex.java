@@ -0,0 +1,240 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.esdomain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.common.compress.CompressedXContent;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Immutable flattened index from full path of field to its type, keyword sub-field and nested path,
+ * which saves walking nested mapping maps for each field lookup.
+ *
+ * Sample:
+ *  {
+ *      'name':             {type: text, keyword: keyword},
+ *      'name.keyword':     {type: keyword, multi-field},
+ *      'comments':         {type: nested, nested path: comments},
+ *      'comments.message': {type: text, nested path: comments}
+ *  }
+ *
+ * Index is built once per distinct mapping source and shared by all indices with identical mapping,
+ * ex. daily indices created from the same template. Index of identical mappings is the same instance.
+ */
+@SuppressWarnings("unchecked")
+public class FieldPathIndex {
+
+    private static final String PROPERTIES = "properties";
+    private static final String FIELDS = "fields";
+    private static final String TYPE = "type";
+    private static final String OBJECT = "object";
+    private static final String NESTED = "nested";
+    private static final String KEYWORD = "keyword";
+
+    /** Index of mapping source seen recently, the same mapping results in the same index in any version */
+    private static final Cache<CompressedXContent, FieldPathIndex> INDICES =
+        CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    private final Map<String, FieldInfo> fields;
+
+    /** Hash code computed once because index is compared frequently to check if mappings are identical */
+    private final int hash;
+
+    private FieldPathIndex(Map<String, FieldInfo> fields) {
+        this.fields = fields;
+        this.hash = fields.hashCode();
+    }
+
+    /**
+     * @param source    mapping source
+     * @param mapping   mapping source as map, only evaluated if index for the source not built yet
+     * @return          index of the mapping
+     */
+    public static FieldPathIndex of(CompressedXContent source, Supplier<Map<String, Object>> mapping) {
+        try {
+            return INDICES.get(source, () -> of(mapping.get()));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to build field path index for mapping: " + source, e);
+        }
+    }
+
+    /**
+     * @param mapping   mapping source as map
+     * @return          index of the mapping
+     */
+    public static FieldPathIndex of(Map<String, Object> mapping) {
+        ImmutableMap.Builder<String, FieldInfo> builder = ImmutableMap.builder();
+        addProperties(builder, (Map<String, Map<String, Object>>) mapping.get(PROPERTIES), "", null);
+        return new FieldPathIndex(builder.build());
+    }
+
+    public boolean has(String path) {
+        return fields.containsKey(path);
+    }
+
+    /**
+     * @param path  full path of field
+     * @return      field info, or null if not found
+     */
+    public FieldInfo get(String path) {
+        return fields.get(path);
+    }
+
+    /** @return all fields in order of mapping, parent field first */
+    public Map<String, FieldInfo> fields() {
+        return fields;
+    }
+
+    private static void addProperties(ImmutableMap.Builder<String, FieldInfo> builder,
+                                      Map<String, Map<String, Object>> properties,
+                                      String prefix,
+                                      String nestedPath) {
+        if (properties == null) {
+            return;
+        }
+
+        for (Map.Entry<String, Map<String, Object>> property : properties.entrySet()) {
+            String path = prefix + property.getKey();
+            Map<String, Object> mapping = property.getValue();
+            Map<String, Map<String, Object>> innerProperties = (Map<String, Map<String, Object>>) mapping.get(PROPERTIES);
+
+            String type = (String) mapping.get(TYPE);
+            if (type == null) {
+                if (innerProperties == null) {
+                    continue;
+                }
+                type = OBJECT; // Type is omitted for object field
+            }
+
+            String fieldNestedPath = NESTED.equals(type) ? path : nestedPath;
+            Map<String, Map<String, Object>> subFields = (Map<String, Map<String, Object>>) mapping.get(FIELDS);
+            builder.put(path, new FieldInfo(type, keywordSubField(subFields), fieldNestedPath, false));
+
+            addProperties(builder, innerProperties, path + ".", fieldNestedPath);
+            if (subFields != null) {
+                for (Map.Entry<String, Map<String, Object>> subField : subFields.entrySet()) {
+                    builder.put(path + "." + subField.getKey(),
+                        new FieldInfo((String) subField.getValue().get(TYPE), null, fieldNestedPath, true));
+                }
+            }
+        }
+    }
+
+    private static String keywordSubField(Map<String, Map<String, Object>> subFields) {
+        if (subFields != null) {
+            for (Map.Entry<String, Map<String, Object>> subField : subFields.entrySet()) {
+                if (KEYWORD.equals(subField.getValue().get(TYPE))) {
+                    return subField.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FieldPathIndex that = (FieldPathIndex) o;
+        return hash == that.hash && Objects.equals(fields, that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "FieldPathIndex{" + fields + '}';
+    }
+
+    /**
+     * Type, keyword sub-field and nested path of a field.
+     */
+    public static class FieldInfo {
+
+        private final String type;
+        private final String keywordSubField;
+        private final String nestedPath;
+        private final boolean isMultiField;
+
+        public FieldInfo(String type, String keywordSubField, String nestedPath, boolean isMultiField) {
+            this.type = type;
+            this.keywordSubField = keywordSubField;
+            this.nestedPath = nestedPath;
+            this.isMultiField = isMultiField;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /** @return name of sub-field of keyword type, ex. "keyword" for text field with fields.keyword, or null */
+        public String getKeywordSubField() {
+            return keywordSubField;
+        }
+
+        /** @return path of nested field itself or closest nested field that it belongs to, or null if not nested */
+        public String getNestedPath() {
+            return nestedPath;
+        }
+
+        public boolean isNested() {
+            return nestedPath != null;
+        }
+
+        /** @return true if object or nested field which has properties rather than value */
+        public boolean isObject() {
+            return OBJECT.equals(type) || NESTED.equals(type);
+        }
+
+        /** @return true if sub-field defined in "fields" of another field, ex. name.keyword */
+        public boolean isMultiField() {
+            return isMultiField;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FieldInfo that = (FieldInfo) o;
+            return isMultiField == that.isMultiField
+                && Objects.equals(type, that.type)
+                && Objects.equals(keywordSubField, that.keywordSubField)
+                && Objects.equals(nestedPath, that.nestedPath);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, keywordSubField, nestedPath, isMultiField);
+        }
+
+        @Override
+        public String toString() {
+            return "FieldInfo{type=" + type + ", keywordSubField=" + keywordSubField
+                + ", nestedPath=" + nestedPath + ", isMultiField=" + isMultiField + '}';
+        }
+    }
+
+}
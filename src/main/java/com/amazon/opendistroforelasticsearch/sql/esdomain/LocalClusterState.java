@@ -29,6 +29,7 @@ import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.index.IndexNotFoundException;
 import org.json.JSONObject;
 
@@ -38,6 +39,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -76,6 +78,9 @@ public class LocalClusterState {
      */
     private final Cache<Tuple<List<String>, List<String>>, IndexMappings> cache;
 
+    /** Callbacks of other caches in plugin that depend on mappings */
+    private final List<Runnable> metadataChangeListeners = new CopyOnWriteArrayList<>();
+
 
     public static synchronized LocalClusterState state() {
         if (INSTANCE == null) {
@@ -99,10 +104,27 @@ public class LocalClusterState {
                     LOG.debug("Metadata in cluster state changed: {}", new IndexMappings(clusterService.state().metaData()));
                 }
                 cache.invalidateAll();
+                metadataChangeListeners.forEach(Runnable::run);
             }
         });
     }
 
+    /** Register callback to invalidate cache that depends on mappings when metadata in cluster state changed */
+    public void addMetadataChangeListener(Runnable listener) {
+        metadataChangeListeners.add(listener);
+    }
+
+    /**
+     * Version of metadata in current cluster state which is increased whenever mapping is changed.
+     * @return  metadata version, or -1 if cluster service is not available yet
+     */
+    public long getMetadataVersion() {
+        if (clusterService == null) {
+            return -1;
+        }
+        return clusterService.state().metaData().version();
+    }
+
     public void setResolver(IndexNameExpressionResolver resolver) {
         this.resolver = resolver;
     }
@@ -359,8 +381,15 @@ public class LocalClusterState {
         /** Mapping from field name to its type */
         private final Map<String, Object> fieldMappings;
 
+        /** Mapping source which identifies the flattened path index shared by identical mappings */
+        private final CompressedXContent source;
+
+        /** Flattened path index looked up on first access */
+        private volatile FieldPathIndex pathIndex;
+
         public FieldMappings(MappingMetaData mappings) {
             fieldMappings = mappings.sourceAsMap();
+            source = mappings.source();
         }
 
         @Override
@@ -389,6 +418,19 @@ public class LocalClusterState {
             return (Map<String, Map<String, Object>>) fieldMappings.get(PROPERTIES);
         }
 
+        /**
+         * Flattened index from full path of field to its type, keyword sub-field and nested path,
+         * which is the same instance for identical mappings.
+         */
+        public FieldPathIndex pathIndex() {
+            FieldPathIndex index = pathIndex;
+            if (index == null) {
+                index = FieldPathIndex.of(source, () -> fieldMappings);
+                pathIndex = index;
+            }
+            return index;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
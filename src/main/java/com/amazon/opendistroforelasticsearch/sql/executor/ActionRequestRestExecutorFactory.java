@@ -39,16 +39,17 @@ public class ActionRequestRestExecutorFactory {
         if (format == null || format.equals("")) {
             return new AsyncRestExecutor(
                 new ElasticDefaultRestExecutor(queryAction),
-                action -> isJoin(action) || isUnionMinus(action)
+                action -> isJoin(action) || isUnionMinus(action),
+                action -> WorkloadClass.of(action, format)
             );
         }
 
         if (format.equalsIgnoreCase("csv")) {
-            return new AsyncRestExecutor(new CSVResultRestExecutor());
+            return new AsyncRestExecutor(new CSVResultRestExecutor(), action -> WorkloadClass.of(action, format));
         }
 
         if (Stream.of("jdbc", "table", "raw").anyMatch(format::equalsIgnoreCase)) {
-            return new AsyncRestExecutor(new PrettyFormatRestExecutor(format));
+            return new AsyncRestExecutor(new PrettyFormatRestExecutor(format), action -> WorkloadClass.of(action, format));
         }
 
         throw new IllegalArgumentException("Failed to create executor due to unknown response format: " + format);
@@ -0,0 +1,239 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor;
+
+import com.amazon.opendistroforelasticsearch.sql.query.join.BackOffRetryStrategy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control in front of SQL worker thread pool. Each query declares an estimated memory need on
+ * submission. If there is not enough memory headroom, the query is parked in a bounded queue instead of
+ * sleeping a worker thread, and resumed by a callback scheduled on ES thread pool once memory is released.
+ * Query is rejected right away (429) if the queue is full, or if it has been parked for too long.
+ */
+public class AdmissionController {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Max number of queries parked and waiting for memory headroom */
+    public static final Setting<Integer> MAX_PARKED_QUERIES =
+        Setting.intSetting("opendistro.sql.admission.max_parked_queries", 100, 0, Property.NodeScope);
+
+    /** Max time a query can be parked before rejected */
+    public static final Setting<TimeValue> MAX_PARK_TIME =
+        Setting.timeSetting("opendistro.sql.admission.max_park_time", TimeValue.timeValueSeconds(30), Property.NodeScope);
+
+    public static final List<Setting<?>> SETTINGS = Arrays.asList(MAX_PARKED_QUERIES, MAX_PARK_TIME);
+
+    /** Interval between checks of memory headroom for parked queries */
+    private static final TimeValue RESUME_INTERVAL = TimeValue.timeValueMillis(100);
+
+    private static final AdmissionController INSTANCE = new AdmissionController(
+        () -> BackOffRetryStrategy.isMemoryHealthy() ? QueryMemoryAccount.headroom() : 0L
+    );
+
+    /** Memory headroom in bytes available for new queries */
+    private final LongSupplier headroom;
+
+    /** Queries parked in order of submission */
+    private final Deque<ParkedQuery> parkedQueries = new ArrayDeque<>();
+
+    private volatile int maxParkedQueries = MAX_PARKED_QUERIES.getDefault(Settings.EMPTY);
+
+    private volatile TimeValue maxParkTime = MAX_PARK_TIME.getDefault(Settings.EMPTY);
+
+    private boolean isResumeScheduled = false;
+
+    /** Memory reserved for queries admitted but not yet started in worker thread */
+    private long reservedMemory = 0L;
+
+    public AdmissionController(LongSupplier headroom) {
+        this.headroom = headroom;
+    }
+
+    public static AdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    public void configure(Settings settings) {
+        maxParkedQueries = MAX_PARKED_QUERIES.get(settings);
+        maxParkTime = MAX_PARK_TIME.get(settings);
+    }
+
+    /**
+     * Run task on executor in thread pool right away if memory headroom is enough, otherwise park it.
+     *
+     * @param threadPool        ES thread pool
+     * @param executorName      name of executor to run task
+     * @param estimatedMemory   estimated memory need of the task
+     * @param task              task to run
+     * @param onRejected        callback if task is rejected
+     */
+    public void admit(ThreadPool threadPool,
+                      String executorName,
+                      long estimatedMemory,
+                      Runnable task,
+                      Consumer<Exception> onRejected) {
+        ParkedQuery query = new ParkedQuery(threadPool, executorName, estimatedMemory, task, onRejected,
+                                            threadPool.relativeTimeInMillis() + maxParkTime.millis());
+        synchronized (this) {
+            if (!parkedQueries.isEmpty() || !hasHeadroom(estimatedMemory)) {
+                if (parkedQueries.size() >= maxParkedQueries) {
+                    LOG.warn("[MCB] Reject query because {} queries are parked already", parkedQueries.size());
+                    query.reject("Too many SQL queries waiting for memory, please retry later");
+                    return;
+                }
+                LOG.debug("[MCB] Park query because memory headroom is not enough for {} bytes", estimatedMemory);
+                parkedQueries.addLast(query);
+                scheduleResume(threadPool);
+                return;
+            }
+            reserve(estimatedMemory);
+        }
+        query.run();
+    }
+
+    /**
+     * @return  number of queries parked now
+     */
+    public synchronized int parkedSize() {
+        return parkedQueries.size();
+    }
+
+    /**
+     * @return  memory in bytes reserved for queries admitted but not started yet
+     */
+    public synchronized long reservedMemory() {
+        return reservedMemory;
+    }
+
+    private void scheduleResume(ThreadPool threadPool) {
+        if (!isResumeScheduled) {
+            isResumeScheduled = true;
+            threadPool.schedule(RESUME_INTERVAL, ThreadPool.Names.SAME, () -> resume(threadPool));
+        }
+    }
+
+    /**
+     * Resume parked queries in order as long as memory headroom is enough, and reject those timed out.
+     */
+    void resume(ThreadPool threadPool) {
+        List<ParkedQuery> toRun = new ArrayList<>();
+        List<ParkedQuery> toReject = new ArrayList<>();
+        synchronized (this) {
+            isResumeScheduled = false;
+
+            long now = threadPool.relativeTimeInMillis();
+            while (!parkedQueries.isEmpty()) {
+                ParkedQuery query = parkedQueries.peekFirst();
+                if (query.deadline <= now) {
+                    toReject.add(parkedQueries.pollFirst());
+                } else if (hasHeadroom(query.estimatedMemory)) {
+                    reserve(query.estimatedMemory);
+                    toRun.add(parkedQueries.pollFirst());
+                } else {
+                    break;
+                }
+            }
+
+            if (!parkedQueries.isEmpty()) {
+                scheduleResume(threadPool);
+            }
+        }
+
+        toReject.forEach(query -> query.reject("Timed out waiting for memory, please retry later"));
+        toRun.forEach(ParkedQuery::run);
+    }
+
+    /**
+     * Headroom is reduced by reservations of queries admitted already, otherwise a burst of queries
+     * submitted before any of them charges its memory account would all be admitted at once.
+     */
+    private boolean hasHeadroom(long estimatedMemory) {
+        return headroom.getAsLong() - reservedMemory >= estimatedMemory;
+    }
+
+    private void reserve(long estimatedMemory) {
+        reservedMemory += estimatedMemory;
+    }
+
+    private synchronized void release(long estimatedMemory) {
+        reservedMemory -= estimatedMemory;
+    }
+
+    /**
+     * Query waiting for memory headroom.
+     */
+    private class ParkedQuery {
+        private final ThreadPool threadPool;
+        private final String executorName;
+        private final long estimatedMemory;
+        private final Runnable task;
+        private final Consumer<Exception> onRejected;
+        private final long deadline;
+
+        ParkedQuery(ThreadPool threadPool,
+                    String executorName,
+                    long estimatedMemory,
+                    Runnable task,
+                    Consumer<Exception> onRejected,
+                    long deadline) {
+            this.threadPool = threadPool;
+            this.executorName = executorName;
+            this.estimatedMemory = estimatedMemory;
+            this.task = task;
+            this.onRejected = onRejected;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Run task in worker thread. Reservation is released right before the task starts because
+         * its memory is charged to the query memory account opened by the task from then on.
+         */
+        void run() {
+            try {
+                threadPool.executor(executorName).execute(() -> {
+                    release(estimatedMemory);
+                    task.run();
+                });
+            } catch (EsRejectedExecutionException e) {
+                release(estimatedMemory);
+                onRejected.accept(e);
+            }
+        }
+
+        void reject(String reason) {
+            onRejected.accept(new EsRejectedExecutionException(reason));
+        }
+    }
+
+}
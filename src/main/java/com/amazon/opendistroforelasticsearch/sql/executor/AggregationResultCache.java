@@ -0,0 +1,320 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor;
+
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsRequest;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.seqno.SeqNoStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Node level cache of aggregation and count query result. Dashboard panels re-run the same queries every
+ * few seconds over indices which mostly have not changed, so response is reused as long as the search
+ * request is identical and none of the shards of concrete indices has been written or refreshed since.
+ *
+ * Key is the search request (indices, types, routing, options and search source) plus max seq_no and refresh
+ * count of all shard copies. Shard state is read by indices stats API asynchronously and at most once per
+ * refresh interval for each index pattern, so the query itself never waits for the broadcast and result can
+ * lag behind the latest refresh by one interval at most, the same as default index refresh interval.
+ * Eviction is LRU bounded by serialized response size. Only request with request cache explicitly enabled
+ * and no hits to fetch is cached, and query with date math on "now" is never cached because its result
+ * changes over time without any write. Hint NO_RESULT_CACHE bypasses
+ * this cache and shard request cache both.
+ *
+ * Because of the lag, cache is disabled unless its size is set explicitly. Client relying on read-after-refresh
+ * must keep it disabled or use hint NO_RESULT_CACHE.
+ *
+ * Cache is disabled if a security plugin is configured on the node, because response cached for a user
+ * would otherwise be returned to another user regardless of document and field level security.
+ */
+public class AggregationResultCache {
+
+    private static final Logger LOG = LogManager.getLogger(AggregationResultCache.class);
+
+    /**
+     * Max memory of responses cached on the node. 0 disables the cache, which is the default because result
+     * may be stale for up to a refresh interval after a refresh and thus caching has to be opted in explicitly.
+     */
+    public static final Setting<ByteSizeValue> RESULT_CACHE_SIZE =
+        Setting.memorySizeSetting("opendistro.sql.result_cache.size", "0b", Property.NodeScope);
+
+    /** Setting prefixes of security plugins which filter search result by caller */
+    private static final List<String> SECURITY_SETTING_PREFIXES = Arrays.asList("opendistro_security.", "searchguard.");
+
+    /** Min interval between reads of shard state of the same index pattern */
+    public static final Setting<TimeValue> RESULT_CACHE_REFRESH_INTERVAL =
+        Setting.positiveTimeSetting("opendistro.sql.result_cache.refresh_interval", TimeValue.timeValueSeconds(1),
+                                    Property.NodeScope);
+
+    public static final List<Setting<?>> SETTINGS = Arrays.asList(RESULT_CACHE_SIZE, RESULT_CACHE_REFRESH_INTERVAL);
+
+    /** Max number of index patterns whose shard state is tracked */
+    private static final int MAX_SHARD_STATES = 1000;
+
+    /** Quoted value of date math on now, ex. "now", "now-1h" or "now/d" */
+    private static final Pattern NOW_DATE_MATH = Pattern.compile("\"now([+\\-/][^\"]*)?\"");
+
+    private static final AggregationResultCache INSTANCE = new AggregationResultCache();
+
+    /** Null until configured on node start, so that cache is disabled by default */
+    private volatile Cache<String, CachedResponse> cache;
+
+    /** Total weight of responses cached now */
+    private final AtomicLong memoryInBytes = new AtomicLong();
+
+    /** Last shard state read for each index pattern */
+    private final Cache<String, ShardState> shardStates = CacheBuilder.newBuilder().maximumSize(MAX_SHARD_STATES).build();
+
+    private volatile long refreshIntervalNanos = RESULT_CACHE_REFRESH_INTERVAL.getDefault(Settings.EMPTY).nanos();
+
+    private AggregationResultCache() {
+    }
+
+    public static AggregationResultCache getInstance() {
+        return INSTANCE;
+    }
+
+    public void configure(Settings settings) {
+        long size = RESULT_CACHE_SIZE.get(settings).getBytes();
+        if (size > 0 && isSecurityEnabled(settings)) {
+            LOG.info("Aggregation result cache is disabled because security plugin is configured");
+            size = 0;
+        }
+        memoryInBytes.set(0);
+        refreshIntervalNanos = RESULT_CACHE_REFRESH_INTERVAL.get(settings).nanos();
+        shardStates.invalidateAll();
+        cache = (size > 0)
+            ? CacheBuilder.newBuilder().
+                maximumWeight(size).
+                <String, CachedResponse>weigher((key, value) -> value.weight).
+                removalListener(notification -> memoryInBytes.addAndGet(-notification.getValue().weight)).
+                recordStats().
+                build()
+            : null;
+        LocalClusterState.state().addMetadataChangeListener(this::invalidateAll);
+    }
+
+    /**
+     * Search through the cache if the request is cacheable.
+     * @param client    ES client
+     * @param request   search request
+     * @return          search response cached or returned by ES
+     */
+    public SearchResponse search(Client client, SearchRequest request) {
+        Cache<String, CachedResponse> current = cache;
+        if (current == null || !isCacheable(request)) {
+            return client.search(request).actionGet();
+        }
+
+        String shardState = shardState(client, request);
+        if (shardState == null) {
+            return client.search(request).actionGet();
+        }
+
+        String key = key(request, shardState);
+
+        CachedResponse cached = current.getIfPresent(key);
+        if (cached != null) {
+            return cached.response;
+        }
+
+        SearchResponse response = client.search(request).actionGet();
+        if (isCompleted(response)) {
+            try {
+                CachedResponse value = new CachedResponse(response, weigh(key, response));
+                memoryInBytes.addAndGet(value.weight);
+                current.put(key, value);
+            } catch (IOException e) {
+                LOG.warn("Failed to estimate size of search response, skip caching it", e);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @param request   search request
+     * @return          true if request cache is enabled explicitly and no hit to fetch and not time dependent
+     */
+    public static boolean isCacheable(SearchRequest request) {
+        if (!Boolean.TRUE.equals(request.requestCache()) || request.source() == null
+                || request.source().size() != 0 || request.scroll() != null) {
+            return false;
+        }
+        return !NOW_DATE_MATH.matcher(request.source().toString()).find();
+    }
+
+    /**
+     * @param request       search request
+     * @param shardState    state of all shards read, which changes on any write or refresh
+     * @return              key of the request in the shard state
+     */
+    public static String key(SearchRequest request, String shardState) {
+        return Arrays.toString(request.indices()) + Arrays.toString(request.types()) + request.routing() +
+            request.preference() + request.indicesOptions() + request.source() + shardState;
+    }
+
+    /**
+     * @param settings  node settings
+     * @return          true if any security plugin which may filter result by caller is configured
+     */
+    public static boolean isSecurityEnabled(Settings settings) {
+        if (settings.getAsBoolean("xpack.security.enabled", false)) {
+            return true;
+        }
+        for (String key : settings.keySet()) {
+            for (String prefix : SECURITY_SETTING_PREFIXES) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public void invalidateAll() {
+        Cache<String, CachedResponse> current = cache;
+        if (current != null) {
+            current.invalidateAll();
+        }
+        shardStates.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Cache<String, CachedResponse> current = cache;
+        if (current != null) {
+            CacheStats cacheStats = current.stats();
+            stats.put("size", current.size());
+            stats.put("memory_in_bytes", memoryInBytes.get());
+            stats.put("hit_count", cacheStats.hitCount());
+            stats.put("miss_count", cacheStats.missCount());
+            stats.put("hit_rate", cacheStats.hitRate());
+            stats.put("eviction_count", cacheStats.evictionCount());
+        }
+        return stats;
+    }
+
+    /**
+     * Get last shard state read for indices of the request, and read it again in background if out of date.
+     * @return shard state, or null if not read yet or cannot be read completely
+     */
+    private String shardState(Client client, SearchRequest request) {
+        ShardState shardState = shardStates.asMap().computeIfAbsent(
+            Arrays.toString(request.indices()) + request.indicesOptions(), indices -> new ShardState());
+
+        if (shardState.isOutOfDate(refreshIntervalNanos) && shardState.reading.compareAndSet(false, true)) {
+            IndicesStatsRequest statsRequest = new IndicesStatsRequest().indices(request.indices()).clear().refresh(true);
+            statsRequest.indicesOptions(request.indicesOptions());
+            client.admin().indices().stats(statsRequest, ActionListener.wrap(
+                response -> shardState.update(describe(response)),
+                e -> {
+                    LOG.warn("Failed to read shard state of indices " + Arrays.toString(request.indices()), e);
+                    shardState.update(null);
+                }
+            ));
+        }
+        return shardState.state;
+    }
+
+    /** @return shard state described by indices stats, or null if stats of any shard is missing */
+    private static String describe(IndicesStatsResponse stats) {
+        if (stats.getFailedShards() > 0) {
+            return null;
+        }
+
+        List<String> states = new ArrayList<>();
+        for (ShardStats shard : stats.getShards()) {
+            SeqNoStats seqNoStats = shard.getSeqNoStats();
+            if (seqNoStats == null) {
+                return null;
+            }
+            states.add(shard.getShardRouting().shardId() + "/" + shard.getShardRouting().allocationId() +
+                ":" + seqNoStats.getMaxSeqNo() + ":" + shard.getStats().getRefresh().getTotal());
+        }
+        Collections.sort(states);
+        return states.toString();
+    }
+
+    private static boolean isCompleted(SearchResponse response) {
+        return response.getFailedShards() == 0
+            && !response.isTimedOut()
+            && !Boolean.TRUE.equals(response.isTerminatedEarly());
+    }
+
+    private static int weigh(String key, SearchResponse response) throws IOException {
+        try (BytesStreamOutput output = new BytesStreamOutput()) {
+            response.writeTo(output);
+            return (int) Math.min(Integer.MAX_VALUE, output.size() + 2L * key.length());
+        }
+    }
+
+    private static class ShardState {
+        private final AtomicBoolean reading = new AtomicBoolean();
+        private volatile String state;
+        private volatile boolean isRead = false;
+        private volatile long readAtNanos;
+
+        private boolean isOutOfDate(long intervalNanos) {
+            return !isRead || System.nanoTime() - readAtNanos >= intervalNanos;
+        }
+
+        private void update(String newState) {
+            state = newState;
+            readAtNanos = System.nanoTime();
+            isRead = true;
+            reading.set(false);
+        }
+    }
+
+    private static class CachedResponse {
+        private final SearchResponse response;
+        private final int weight;
+
+        private CachedResponse(SearchResponse response, int weight) {
+            this.response = response;
+            this.weight = weight;
+        }
+    }
+
+}
@@ -17,11 +17,11 @@ package com.amazon.opendistroforelasticsearch.sql.executor;
 
 import com.amazon.opendistroforelasticsearch.sql.exception.SqlParseException;
 import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
-import com.amazon.opendistroforelasticsearch.sql.query.join.BackOffRetryStrategy;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.CheckedRunnable;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestStatus;
@@ -29,6 +29,8 @@ import org.elasticsearch.transport.Transports;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import static org.elasticsearch.rest.RestStatus.INTERNAL_SERVER_ERROR;
@@ -38,9 +40,6 @@ import static org.elasticsearch.rest.RestStatus.INTERNAL_SERVER_ERROR;
  */
 public class AsyncRestExecutor implements RestExecutor {
 
-    /** Custom thread pool name managed by ES */
-    public static final String SQL_WORKER_THREAD_POOL_NAME = "sql-worker";
-
     private static final Logger LOG = LogManager.getLogger();
 
     /** Treat all actions as blocking which means async all actions, ex. execute() in csv executor or pretty format executor */
@@ -52,14 +51,20 @@ public class AsyncRestExecutor implements RestExecutor {
     /** Request type that expect to async to avoid blocking */
     private final Predicate<QueryAction> isBlocking;
 
+    /** Workload class that decides which thread pool to run request */
+    private final Function<QueryAction, WorkloadClass> workloadClassOf;
+
 
-    AsyncRestExecutor(RestExecutor executor) {
-        this(executor, ALL_ACTION_IS_BLOCKING);
+    AsyncRestExecutor(RestExecutor executor, Function<QueryAction, WorkloadClass> workloadClassOf) {
+        this(executor, ALL_ACTION_IS_BLOCKING, workloadClassOf);
     }
 
-    AsyncRestExecutor(RestExecutor executor, Predicate<QueryAction> isBlocking) {
+    AsyncRestExecutor(RestExecutor executor,
+                      Predicate<QueryAction> isBlocking,
+                      Function<QueryAction, WorkloadClass> workloadClassOf) {
         this.executor = executor;
         this.isBlocking = isBlocking;
+        this.workloadClassOf = workloadClassOf;
     }
 
     @Override
@@ -76,7 +81,9 @@ public class AsyncRestExecutor implements RestExecutor {
                 LOG.debug("Continue running query action [{}] for executor [{}] in current thread [{}]",
                     name(executor), name(queryAction), Thread.currentThread().getName());
             }
-            executor.execute(client, params, queryAction, channel);
+            try (QueryMemoryAccount ignored = QueryMemoryAccount.open()) {
+                executor.execute(client, params, queryAction, channel);
+            }
         }
     }
 
@@ -95,25 +102,48 @@ public class AsyncRestExecutor implements RestExecutor {
     }
 
     private void async(Client client, Map<String, String> params, QueryAction queryAction, RestChannel channel) {
-        // Run given task in thread pool asynchronously
-        client.threadPool().schedule(
-            new TimeValue(0L),
-            SQL_WORKER_THREAD_POOL_NAME,
+        async(client, workloadClassOf.apply(queryAction), channel,
+              () -> executor.execute(client, params, queryAction, channel));
+    }
+
+    /**
+     * Run task that sends response to the channel in thread pool of its workload class once admitted
+     * by admission control, with memory account of the query open in the worker thread.
+     *
+     * @param client        ES client
+     * @param workloadClass workload class of the task
+     * @param channel       channel to send error response if task failed or rejected
+     * @param task          task to run
+     */
+    public static void async(Client client, WorkloadClass workloadClass, RestChannel channel, CheckedRunnable<Exception> task) {
+        long submitTime = System.nanoTime();
+
+        // Run given task in thread pool of its workload class asynchronously once admitted
+        AdmissionController.getInstance().admit(
+            client.threadPool(),
+            workloadClass.threadPoolName(),
+            workloadClass.estimatedMemory(),
             () -> {
-                try {
-                    executor.execute(client, params, queryAction, channel);
+                workloadClass.recordQueueTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitTime));
+                try (QueryMemoryAccount ignored = QueryMemoryAccount.open()) {
+                    task.run();
                 } catch (IOException | SqlParseException e) {
                     LOG.warn("[MCB] async task got an IO/SQL exception: {}", e.getMessage());
                     channel.sendResponse(new BytesRestResponse(RestStatus.INTERNAL_SERVER_ERROR, e.getMessage()));
+                } catch (CircuitBreakingException e) {
+                    LOG.warn("[MCB] async task tripped memory circuit breaker: {}", e.getMessage());
+                    channel.sendResponse(new BytesRestResponse(e.status(), e.getMessage()));
                 } catch (IllegalStateException e) {
                     LOG.warn("[MCB] async task got a runtime exception: {}", e.getMessage());
                     channel.sendResponse(new BytesRestResponse(RestStatus.INSUFFICIENT_STORAGE, "Memory circuit is broken."));
                 } catch (Throwable t) {
                     LOG.warn("[MCB] async task got an unknown throwable: {}", t.getMessage());
                     channel.sendResponse(new BytesRestResponse(RestStatus.INTERNAL_SERVER_ERROR, String.valueOf(t.getMessage())));
-                } finally {
-                    BackOffRetryStrategy.releaseMem(executor);
                 }
+            },
+            e -> {
+                LOG.warn("[MCB] async task rejected by admission control: {}", e.getMessage());
+                channel.sendResponse(new BytesRestResponse(RestStatus.TOO_MANY_REQUESTS, e.getMessage()));
             });
     }
 
@@ -70,12 +70,21 @@ public class ElasticDefaultRestExecutor implements RestExecutor {
 
         if (requestBuilder instanceof JoinRequestBuilder) {
             ElasticJoinExecutor executor = ElasticJoinExecutor.createJoinExecutor(client, requestBuilder);
-            executor.run();
-            executor.sendResponse(channel);
+            executor.runAndSendResponse(channel);
         } else if (requestBuilder instanceof MultiQueryRequestBuilder) {
             ElasticHitsExecutor executor = MultiRequestExecutorFactory.createExecutor(client, (MultiQueryRequestBuilder) requestBuilder);
             executor.run();
             sendDefaultResponse(executor.getHits(), channel);
+        } else if (request instanceof SearchRequest && AggregationResultCache.isCacheable((SearchRequest) request)) {
+            RestStatusToXContentListener<SearchResponse> listener = new RestStatusToXContentListener<>(channel);
+            SearchResponse response;
+            try {
+                response = AggregationResultCache.getInstance().search(client, (SearchRequest) request);
+            } catch (Exception e) {
+                listener.onFailure(e);
+                return;
+            }
+            listener.onResponse(response);
         } else if (request instanceof SearchRequest) {
             client.search((SearchRequest) request, new RestStatusToXContentListener<>(channel));
         } else if (request instanceof GetIndexRequest) {
@@ -99,6 +108,8 @@ public class ElasticDefaultRestExecutor implements RestExecutor {
             ElasticHitsExecutor executor = MultiRequestExecutorFactory.createExecutor(client, (MultiQueryRequestBuilder) requestBuilder);
             executor.run();
             return ElasticUtils.hitsAsStringResult(executor.getHits(), new MetaSearchResult());
+        } else if (request instanceof SearchRequest && AggregationResultCache.isCacheable((SearchRequest) request)) {
+            return AggregationResultCache.getInstance().search(client, (SearchRequest) request).toString();
         } else if (request instanceof SearchRequest) {
             ActionFuture<SearchResponse> future = client.search((SearchRequest) request);
             SearchResponse response = future.actionGet();
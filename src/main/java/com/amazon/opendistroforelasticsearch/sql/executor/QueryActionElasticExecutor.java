@@ -18,6 +18,7 @@ package com.amazon.opendistroforelasticsearch.sql.executor;
 import com.amazon.opendistroforelasticsearch.sql.executor.join.ElasticJoinExecutor;
 import com.amazon.opendistroforelasticsearch.sql.executor.multi.MultiRequestExecutorFactory;
 import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.search.SearchHits;
@@ -55,7 +56,8 @@ public class QueryActionElasticExecutor {
 
     public static Aggregations executeAggregationAction(AggregationQueryAction aggregationQueryAction) throws SqlParseException {
         SqlElasticSearchRequestBuilder select =  aggregationQueryAction.explain();
-        return ((SearchResponse)select.get()).getAggregations();
+        SearchRequest request = (SearchRequest) select.request();
+        return AggregationResultCache.getInstance().search(aggregationQueryAction.getClient(), request).getAggregations();
     }
 
     public static ActionResponse executeShowQueryAction(ShowQueryAction showQueryAction) {
@@ -0,0 +1,175 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory account of a single query which charges estimated bytes of data buffered by the query,
+ * such as hash table block in join, rows being sorted and response being built.
+ *
+ * Each charge is checked against both the per-query limit and the SQL circuit breaker shared by all
+ * queries on the node. So the query asking for more memory is the one that trips rather than others.
+ * All bytes charged are released when the account is closed at the end of the query.
+ */
+public class QueryMemoryAccount implements AutoCloseable {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Name of the circuit breaker for SQL queries */
+    public static final String BREAKER_NAME = "opendistro_sql";
+
+    /** Account that charges nothing, used when no query is being tracked in current thread */
+    public static final QueryMemoryAccount NOOP = new QueryMemoryAccount(-1) {
+        @Override
+        public void charge(long bytes, String label) {
+        }
+
+        @Override
+        public void release(long bytes) {
+        }
+    };
+
+    /** Circuit breaker shared by all SQL queries on current node, registered by plugin on start */
+    private static volatile CircuitBreaker breaker = new NoopCircuitBreaker(BREAKER_NAME);
+
+    /** Max bytes a single query can charge. Negative value means no limit */
+    private static volatile long queryLimit = -1;
+
+    /** Account of the query running in current thread */
+    private static final ThreadLocal<QueryMemoryAccount> CURRENT = new ThreadLocal<>();
+
+    /** Bytes charged by the query so far */
+    private final AtomicLong used = new AtomicLong();
+
+    /** Limit captured when the account opened */
+    private final long limit;
+
+    private QueryMemoryAccount(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Register circuit breaker and per-query limit.
+     *
+     * @param sqlBreaker    circuit breaker for SQL queries
+     * @param limit         max bytes per query, negative for no limit
+     */
+    public static void initialize(CircuitBreaker sqlBreaker, long limit) {
+        breaker = sqlBreaker;
+        queryLimit = limit;
+    }
+
+    /**
+     * @return  bytes left before the SQL circuit breaker trips, or Long.MAX_VALUE if no limit
+     */
+    public static long headroom() {
+        CircuitBreaker sqlBreaker = breaker;
+        long limit = sqlBreaker.getLimit();
+        return (limit > 0) ? Math.max(limit - sqlBreaker.getUsed(), 0) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Open an account for the query about to run in current thread.
+     *
+     * @return  account opened
+     */
+    public static QueryMemoryAccount open() {
+        QueryMemoryAccount account = new QueryMemoryAccount(queryLimit);
+        CURRENT.set(account);
+        return account;
+    }
+
+    /**
+     * @return  account of the query running in current thread or NOOP if none
+     */
+    public static QueryMemoryAccount current() {
+        QueryMemoryAccount account = CURRENT.get();
+        return (account == null) ? NOOP : account;
+    }
+
+    /**
+     * Charge bytes to the account. Bytes are added first and rolled back if any limit is exceeded,
+     * so that concurrent charges from parallel probing threads cannot exceed the per-query limit together.
+     *
+     * @param bytes     estimated bytes to buffer
+     * @param label     what the memory is for, used in error message
+     * @throws CircuitBreakingException if per-query limit or circuit breaker limit would be exceeded
+     */
+    public void charge(long bytes, String label) {
+        if (bytes <= 0) {
+            return;
+        }
+
+        long newUsed = used.addAndGet(bytes);
+        if (limit >= 0 && newUsed > limit) {
+            used.addAndGet(-bytes);
+            throw new CircuitBreakingException(
+                "[" + BREAKER_NAME + "] Data too large for query, data for [" + label + "] would be ["
+                    + newUsed + "], which is larger than the limit of [" + limit + "] per query",
+                newUsed, limit);
+        }
+
+        try {
+            breaker.addEstimateBytesAndMaybeBreak(bytes, label);
+        } catch (CircuitBreakingException e) {
+            used.addAndGet(-bytes);
+            throw e;
+        }
+    }
+
+    /**
+     * Release bytes charged before.
+     *
+     * @param bytes     bytes to release
+     */
+    public void release(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        breaker.addWithoutBreaking(-bytes);
+        used.addAndGet(-bytes);
+    }
+
+    /**
+     * @return  bytes charged currently
+     */
+    public long used() {
+        return used.get();
+    }
+
+    /** Release all bytes still charged and detach from current thread */
+    @Override
+    public void close() {
+        long remaining = used.getAndSet(0);
+        if (remaining > 0) {
+            LOG.debug("Release {} bytes remaining in memory account of query", remaining);
+            breaker.addWithoutBreaking(-remaining);
+        }
+
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor;
+
+import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.join.ESJoinQueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.multi.MultiQueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.Config;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Workload class of SQL query. Each class runs in its own thread pool so that heavy queries, ex. join, minus
+ * or CSV export, cannot starve light single index search or aggregation. Thread pool size and queue size
+ * can be configured by node settings thread_pool.[name].size and thread_pool.[name].queue_size.
+ */
+public enum WorkloadClass {
+
+    /** Single index search or aggregation */
+    LIGHT("sql-worker", 1000, 1024L * 1024) {
+        @Override
+        int defaultSize(Settings settings) {
+            return EsExecutors.numberOfProcessors(settings);
+        }
+    },
+
+    /** Join, union/minus or CSV export that reads and holds many rows */
+    HEAVY("sql-heavy-worker", 100, Config.DEFAULT_BLOCK_SIZE * 1024L) {
+        @Override
+        int defaultSize(Settings settings) {
+            return Math.max(1, EsExecutors.numberOfProcessors(settings) / 2);
+        }
+    };
+
+    /** Name of thread pool managed by ES */
+    private final String threadPoolName;
+
+    private final int defaultQueueSize;
+
+    /** Estimated memory need declared to admission control */
+    private final long estimatedMemory;
+
+    /** Queue time metrics from submission to start running */
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder totalQueueTimeMillis = new LongAdder();
+    private final AtomicLong maxQueueTimeMillis = new AtomicLong();
+
+    WorkloadClass(String threadPoolName, int defaultQueueSize, long estimatedMemory) {
+        this.threadPoolName = threadPoolName;
+        this.defaultQueueSize = defaultQueueSize;
+        this.estimatedMemory = estimatedMemory;
+    }
+
+    /**
+     * Classify query by query action and response format.
+     *
+     * @param queryAction   query action
+     * @param format        response format
+     * @return              workload class
+     */
+    public static WorkloadClass of(QueryAction queryAction, String format) {
+        if (queryAction instanceof ESJoinQueryAction
+            || queryAction instanceof MultiQueryAction
+            || "csv".equalsIgnoreCase(format)) {
+            return HEAVY;
+        }
+        return LIGHT;
+    }
+
+    abstract int defaultSize(Settings settings);
+
+    public ExecutorBuilder<?> executorBuilder(Settings settings) {
+        return new FixedExecutorBuilder(settings, threadPoolName, defaultSize(settings), defaultQueueSize, null);
+    }
+
+    public String threadPoolName() {
+        return threadPoolName;
+    }
+
+    public long estimatedMemory() {
+        return estimatedMemory;
+    }
+
+    public void recordQueueTime(long millis) {
+        queuedCount.increment();
+        totalQueueTimeMillis.add(millis);
+        maxQueueTimeMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    public Map<String, Object> stats() {
+        long count = queuedCount.sum();
+        long total = totalQueueTimeMillis.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("thread_pool", threadPoolName);
+        stats.put("queries", count);
+        stats.put("total_queue_time_in_millis", total);
+        stats.put("avg_queue_time_in_millis", (count == 0) ? 0 : total / count);
+        stats.put("max_queue_time_in_millis", maxQueueTimeMillis.get());
+        return stats;
+    }
+
+}
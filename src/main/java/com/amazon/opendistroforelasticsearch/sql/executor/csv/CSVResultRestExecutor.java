@@ -16,13 +16,15 @@
 package com.amazon.opendistroforelasticsearch.sql.executor.csv;
 
 import com.amazon.opendistroforelasticsearch.sql.executor.QueryActionElasticExecutor;
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
 import com.amazon.opendistroforelasticsearch.sql.executor.RestExecutor;
-import com.amazon.opendistroforelasticsearch.sql.query.join.BackOffRetryStrategy;
 import com.google.common.base.Joiner;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestStatus;
+import com.amazon.opendistroforelasticsearch.sql.query.DefaultQueryAction;
 import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
 
 import java.util.*;
@@ -34,6 +36,11 @@ public class CSVResultRestExecutor implements RestExecutor {
 
     @Override
     public void execute(Client client, Map<String, String> params, QueryAction queryAction, RestChannel channel) throws Exception {
+        if (getBooleanOrDefault(params, "stream", false) && CSVResultStreamExporter.isStreamable(queryAction)) {
+            exportByScroll(client, params, (DefaultQueryAction) queryAction, channel);
+            return;
+        }
+
         Object queryResult = QueryActionElasticExecutor.executeAnyAction(client, queryAction);
 
         boolean flat = getBooleanOrDefault(params,"flat",false);
@@ -52,9 +59,7 @@ public class CSVResultRestExecutor implements RestExecutor {
         String csvString = buildString(separator, result, newLine);
         BytesRestResponse bytesRestResponse = new BytesRestResponse(RestStatus.OK, csvString);
 
-        if (!BackOffRetryStrategy.isHealthy(2 * bytesRestResponse.content().length(), this)) {
-            throw new IllegalStateException("[CSVResultRestExecutor] Memory could be insufficient when sendResponse().");
-        }
+        QueryMemoryAccount.current().charge(2L * bytesRestResponse.content().length(), "csv response");
 
         channel.sendResponse(bytesRestResponse);
     }
@@ -80,6 +85,30 @@ public class CSVResultRestExecutor implements RestExecutor {
         return csvString;
     }
 
+    /**
+     * Streaming mode that scrolls all hits and writes CSV lines page by page without building CSVResult.
+     */
+    private void exportByScroll(Client client,
+                                Map<String, String> params,
+                                DefaultQueryAction queryAction,
+                                RestChannel channel) throws Exception {
+        boolean flat = getBooleanOrDefault(params, "flat", false);
+        String separator = params.getOrDefault("separator", ",");
+        String newLine = params.getOrDefault("newLine", "\n");
+        boolean includeScore = getBooleanOrDefault(params, "_score", false);
+        boolean includeType = getBooleanOrDefault(params, "_type", false);
+        boolean includeId = getBooleanOrDefault(params, "_id", false);
+
+        CSVResultStreamExporter exporter = new CSVResultStreamExporter(
+            new CSVResultsExtractor(includeScore, includeType, includeId), flat, separator, newLine);
+
+        // RestChannel has no chunked response, so lines are written into response buffer of the channel
+        // directly which is sent without another copy and released once the response is sent.
+        BytesStreamOutput output = channel.bytesOutput();
+        exporter.export(client, queryAction, output);
+        channel.sendResponse(new BytesRestResponse(RestStatus.OK, BytesRestResponse.TEXT_CONTENT_TYPE, output.bytes()));
+    }
+
     private boolean getBooleanOrDefault(Map<String, String> params, String param, boolean defaultValue) {
         boolean flat = defaultValue;
         if(params.containsKey(param)){
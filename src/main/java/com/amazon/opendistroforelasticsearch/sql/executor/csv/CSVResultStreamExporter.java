@@ -0,0 +1,182 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor.csv;
+
+import com.amazon.opendistroforelasticsearch.sql.domain.Field;
+import com.amazon.opendistroforelasticsearch.sql.domain.MethodField;
+import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.domain.hints.HintType;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.FieldPathIndex;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.FieldPathIndex.FieldInfo;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.FieldMappings;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.TypeMappings;
+import com.amazon.opendistroforelasticsearch.sql.exception.SqlParseException;
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import com.amazon.opendistroforelasticsearch.sql.query.DefaultQueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
+import com.google.common.base.Joiner;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Export search result to CSV by scrolling the index and writing each line to output once a page
+ * of hits is fetched. Unlike CSVResultsExtractor, headers are computed from selected fields or
+ * index mappings up front, so no hit needs to be kept after its line is written.
+ */
+public class CSVResultStreamExporter {
+
+    /** Number of hits fetched in each scroll */
+    private static final int SCROLL_SIZE = 1000;
+
+    private static final TimeValue SCROLL_TIMEOUT = TimeValue.timeValueSeconds(60);
+
+    private final CSVResultsExtractor extractor;
+    private final boolean flat;
+    private final String separator;
+    private final String newLine;
+
+    public CSVResultStreamExporter(CSVResultsExtractor extractor, boolean flat, String separator, String newLine) {
+        this.extractor = extractor;
+        this.flat = flat;
+        this.separator = separator;
+        this.newLine = newLine;
+    }
+
+    /**
+     * Only plain search without offset, scroll hint or script field is exportable by scroll
+     * with headers known up front.
+     */
+    public static boolean isStreamable(QueryAction queryAction) {
+        if (!(queryAction instanceof DefaultQueryAction)) {
+            return false;
+        }
+
+        Select select = (Select) queryAction.getQueryStatement();
+        return select.getOffset() == 0
+            && select.getHints().stream().noneMatch(hint -> hint.getType() == HintType.USE_SCROLL)
+            && select.getFields().stream().noneMatch(field -> field instanceof MethodField);
+    }
+
+    /**
+     * Scroll all hits and write header and CSV lines to output.
+     * @param client        ES client
+     * @param queryAction   search query action
+     * @param output        output to write CSV content to
+     */
+    public void export(Client client, DefaultQueryAction queryAction, BytesStreamOutput output)
+        throws IOException, SqlParseException {
+        Select select = (Select) queryAction.getQueryStatement();
+        queryAction.explain();
+        SearchRequestBuilder request = queryAction.getRequestBuilder();
+
+        int limit = select.getRowCount();
+        int pageSize = Math.min(limit, SCROLL_SIZE);
+        request.setSize(pageSize).setScroll(SCROLL_TIMEOUT);
+        if (!select.isOrderdSelect()) {
+            request.addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC);
+        }
+
+        List<String> headers = headers(select);
+        write(output, Joiner.on(separator).join(headers));
+
+        SearchResponse response = request.get();
+        int numOfHits = 0;
+        long charged = 0;
+        try {
+            while (true) {
+                SearchHit[] hits = response.getHits().getHits();
+                for (SearchHit hit : hits) {
+                    if (numOfHits >= limit) {
+                        break;
+                    }
+                    write(output, newLine);
+                    write(output, extractor.extractLine(hit, headers, flat, separator));
+                    numOfHits++;
+                }
+
+                // Charge lines written to response buffer
+                long size = output.size();
+                QueryMemoryAccount.current().charge(size - charged, "csv export");
+                charged = size;
+
+                // Partial page means no more hits, so stop here rather than scroll once more for an empty page
+                if (hits.length < pageSize || numOfHits >= limit) {
+                    break;
+                }
+                response = client.prepareSearchScroll(response.getScrollId()).setScroll(SCROLL_TIMEOUT).get();
+            }
+        } finally {
+            client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+        }
+    }
+
+    private List<String> headers(Select select) {
+        Set<String> headers = new LinkedHashSet<>();
+        if (select.getFields().isEmpty() || select.isSelectAll()) {
+            String[] types = (select.getTypeArr() == null) ? new String[0] : select.getTypeArr();
+            for (TypeMappings typeMappings : LocalClusterState.state().
+                                                getFieldMappings(select.getIndexArr(), types).allMappings()) {
+                for (FieldMappings fieldMappings : typeMappings.allMappings()) {
+                    addFieldNames(headers, fieldMappings.pathIndex());
+                }
+            }
+        } else {
+            for (Field field : select.getFields()) {
+                String name = field.getName();
+                headers.add(flat ? name : name.split("\\.")[0]);
+            }
+        }
+
+        List<String> headerList = new ArrayList<>(headers);
+        headerList.addAll(extractor.metaFieldHeaders());
+        return headerList;
+    }
+
+    /** Add top level fields, or all fields with value out of object or nested field if flat */
+    private void addFieldNames(Set<String> headers, FieldPathIndex pathIndex) {
+        for (Map.Entry<String, FieldInfo> field : pathIndex.fields().entrySet()) {
+            String path = field.getKey();
+            FieldInfo info = field.getValue();
+            if (info.isMultiField()) {
+                continue;
+            }
+            if (flat ? !info.isObject() : path.indexOf('.') < 0) {
+                headers.add(path);
+            }
+        }
+    }
+
+    private void write(BytesStreamOutput output, String text) throws IOException {
+        output.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -273,28 +273,59 @@ public class CSVResultsExtractor {
                 doc.put(searchHitField.getName(),searchHitField.getValue());
             }
             mergeHeaders(csvHeaders, doc, flat);
-            if(this.indcludeId){
-                doc.put("_id", hit.getId());
-            }
-            if(this.includeScore){
-                doc.put("_score", hit.getScore());
-            }
-            if(this.includeType){
-                doc.put("_type",hit.getType());
-            }
+            addMetaFields(doc, hit);
             docsAsMap.add(doc);
         }
         ArrayList<String> headersList = new ArrayList<>(csvHeaders);
+        headersList.addAll(metaFieldHeaders());
+        return headersList;
+    }
+
+    /**
+     * Create CSV line for a single hit with headers known beforehand, which is used by streaming export
+     * that cannot look at all docs to compute headers.
+     */
+    public String extractLine(SearchHit hit, List<String> headers, boolean flat, String separator) {
+        Map<String, Object> doc = hit.getSourceAsMap();
+        for(DocumentField searchHitField : hit.getFields().values()){
+            doc.put(searchHitField.getName(),searchHitField.getValue());
+        }
+        addMetaFields(doc, hit);
+
+        StringBuilder line = new StringBuilder();
+        for(String header : headers){
+            line.append(findFieldValue(header, doc, flat, separator));
+        }
+        return line.substring(0, Math.max(line.lastIndexOf(separator), 0));
+    }
+
+    /**
+     * Headers of meta fields required, which are appended after headers of doc fields.
+     */
+    public List<String> metaFieldHeaders() {
+        List<String> headers = new ArrayList<>();
         if (this.indcludeId){
-            headersList.add("_id");
+            headers.add("_id");
         }
         if (this.includeScore){
-            headersList.add("_score");
+            headers.add("_score");
         }
         if (this.includeType){
-            headersList.add("_type");
+            headers.add("_type");
+        }
+        return headers;
+    }
+
+    private void addMetaFields(Map<String, Object> doc, SearchHit hit) {
+        if(this.indcludeId){
+            doc.put("_id", hit.getId());
+        }
+        if(this.includeScore){
+            doc.put("_score", hit.getScore());
+        }
+        if(this.includeType){
+            doc.put("_type",hit.getType());
         }
-        return headersList;
     }
 
     private String findFieldValue(String header, Map<String, Object> doc, boolean flat, String separator) {
@@ -0,0 +1,120 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor.format;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Server-side cursor of JDBC response. It wraps scroll id and the schema resolved for the first page,
+ * so that next page can be fetched and formatted without parsing query or reading mapping again.
+ * Cursor is handed to client as an opaque Base64 string.
+ */
+public class Cursor {
+
+    /** Time that scroll context is kept alive between two page fetches */
+    public static final TimeValue KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    private static final String SCROLL_ID = "scroll_id";
+    private static final String REMAINING = "remaining";
+    private static final String FETCH_SIZE = "fetch_size";
+    private static final String INDEX = "index";
+    private static final String TYPE = "type";
+    private static final String SCHEMA = "schema";
+    private static final String NAME = "name";
+    private static final String ALIAS = "alias";
+
+    private final String scrollId;
+
+    /** Number of rows left to fetch according to LIMIT */
+    private final long remaining;
+
+    private final int fetchSize;
+
+    private final Schema schema;
+
+    public Cursor(String scrollId, long remaining, int fetchSize, Schema schema) {
+        this.scrollId = scrollId;
+        this.remaining = remaining;
+        this.fetchSize = fetchSize;
+        this.schema = schema;
+    }
+
+    public String getScrollId() { return scrollId; }
+
+    public long getRemaining() { return remaining; }
+
+    public int getFetchSize() { return fetchSize; }
+
+    public Schema getSchema() { return schema; }
+
+    public String encode() {
+        JSONArray columns = new JSONArray();
+        for (Schema.Column column : schema) {
+            JSONObject columnJson = new JSONObject();
+            columnJson.put(NAME, column.getName());
+            if (column.getAlias() != null) {
+                columnJson.put(ALIAS, column.getAlias());
+            }
+            columnJson.put(TYPE, column.getType());
+            columns.put(columnJson);
+        }
+
+        JSONObject cursor = new JSONObject();
+        cursor.put(SCROLL_ID, scrollId);
+        cursor.put(REMAINING, remaining);
+        cursor.put(FETCH_SIZE, fetchSize);
+        cursor.put(INDEX, schema.getIndexName());
+        cursor.put(TYPE, schema.getTypeName());
+        cursor.put(SCHEMA, columns);
+        return Base64.getUrlEncoder().encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String encoded) {
+        try {
+            JSONObject cursor = new JSONObject(new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8));
+
+            List<Schema.Column> columns = new ArrayList<>();
+            JSONArray columnsJson = cursor.getJSONArray(SCHEMA);
+            for (int i = 0; i < columnsJson.length(); i++) {
+                JSONObject columnJson = columnsJson.getJSONObject(i);
+                columns.add(new Schema.Column(
+                    columnJson.getString(NAME),
+                    columnJson.optString(ALIAS, null),
+                    Schema.Type.valueOf(columnJson.getString(TYPE).toUpperCase())
+                ));
+            }
+
+            return new Cursor(
+                cursor.getString(SCROLL_ID),
+                cursor.getLong(REMAINING),
+                cursor.getInt(FETCH_SIZE),
+                new Schema(cursor.optString(INDEX, null), cursor.optString(TYPE, null), columns)
+            );
+        } catch (IllegalArgumentException | JSONException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + encoded, e);
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor.format;
+
+import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.domain.hints.HintType;
+import com.amazon.opendistroforelasticsearch.sql.exception.SqlParseException;
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import com.amazon.opendistroforelasticsearch.sql.query.DefaultQueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Executor of cursor pagination for JDBC format. First page is fetched by opening a scroll with
+ * page size as fetch size, and each subsequent page is fetched by the scroll id wrapped in cursor.
+ * Scroll is cleared once the last page is fetched or cursor is closed by client.
+ */
+public class CursorResultExecutor {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final String JDBC_FORMAT = "jdbc";
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+
+    private final Client client;
+
+    public CursorResultExecutor(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * Cursor is only supported for JDBC format of plain search without offset or scroll hint.
+     */
+    public static boolean isCursorRequested(QueryAction queryAction, String format) {
+        if (!JDBC_FORMAT.equals(format)
+            || !(queryAction instanceof DefaultQueryAction)
+            || queryAction.getSqlRequest() == null
+            || queryAction.getSqlRequest().fetchSize() <= 0) {
+            return false;
+        }
+
+        Select select = (Select) queryAction.getQueryStatement();
+        return select.getOffset() == 0
+            && select.getHints().stream().noneMatch(hint -> hint.getType() == HintType.USE_SCROLL);
+    }
+
+    /**
+     * Fetch first page and create cursor for next page if any.
+     */
+    public Protocol executeFirstPage(DefaultQueryAction queryAction) throws SqlParseException {
+        Select select = (Select) queryAction.getQueryStatement();
+        int pageSize = Math.min(queryAction.getSqlRequest().fetchSize(), select.getRowCount());
+
+        queryAction.explain();
+        SearchRequestBuilder request = queryAction.getRequestBuilder();
+        request.setSize(pageSize).setScroll(Cursor.KEEP_ALIVE);
+        if (!select.isOrderdSelect()) {
+            request.addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC);
+        }
+
+        SearchResponse response = request.get();
+        SearchHits hits = response.getHits();
+        Protocol protocol = new Protocol(client, select, hits, JDBC_FORMAT);
+
+        long remaining = select.getRowCount() - hits.getHits().length;
+        protocol.setCursor(nextCursor(response.getScrollId(), remaining, pageSize, hits.getHits().length,
+                                      protocol.getResultSet().getSchema()));
+        return protocol;
+    }
+
+    /**
+     * Fetch next page by cursor and send it back in JDBC format. This blocks on the scroll and is expected
+     * to run in SQL worker thread with memory account open, ex. by AsyncRestExecutor.
+     *
+     * @throws CircuitBreakingException if memory of the page formatted exceeds limit
+     */
+    public void executeNextPage(String encodedCursor, RestChannel channel) {
+        try {
+            Cursor cursor = Cursor.decode(encodedCursor);
+            SearchResponse response = client.prepareSearchScroll(cursor.getScrollId()).
+                                              setScroll(Cursor.KEEP_ALIVE).
+                                              get();
+
+            SearchHits hits = limit(response.getHits(), cursor.getRemaining());
+            Protocol protocol = new Protocol(client, cursor, hits, JDBC_FORMAT);
+
+            long remaining = cursor.getRemaining() - hits.getHits().length;
+            protocol.setCursor(nextCursor(response.getScrollId(), remaining, cursor.getFetchSize(),
+                                          hits.getHits().length, cursor.getSchema()));
+
+            String content = protocol.format();
+            QueryMemoryAccount.current().charge(2L * content.length(), "cursor page");
+            sendResponse(channel, RestStatus.OK, content);
+        } catch (CircuitBreakingException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            sendError(channel, e);
+        }
+    }
+
+    /**
+     * Close cursor by clearing the scroll wrapped in it.
+     */
+    public void close(String encodedCursor, RestChannel channel) {
+        Cursor cursor = Cursor.decode(encodedCursor);
+        client.prepareClearScroll().addScrollId(cursor.getScrollId()).execute(
+            ActionListener.wrap(response -> {
+                JSONObject result = new JSONObject();
+                result.put("succeeded", response.isSucceeded());
+                sendResponse(channel, RestStatus.OK, result.toString(2));
+            }, e -> sendError(channel, e))
+        );
+    }
+
+    /**
+     * Create cursor for next page if LIMIT is not reached and current page is full.
+     * Otherwise this is the last page and scroll is cleared right away.
+     */
+    private Cursor nextCursor(String scrollId, long remaining, int pageSize, int numOfHits, Schema schema) {
+        if (remaining > 0 && numOfHits >= pageSize && numOfHits > 0) {
+            return new Cursor(scrollId, remaining, pageSize, schema);
+        }
+
+        client.prepareClearScroll().addScrollId(scrollId).execute(
+            ActionListener.wrap(
+                (ClearScrollResponse response) -> LOG.debug("Cleared scroll of last page: {}", scrollId),
+                e -> LOG.warn("Failed to clear scroll of last page: " + scrollId, e))
+        );
+        return null;
+    }
+
+    /** Drop hits beyond LIMIT in the last page */
+    private SearchHits limit(SearchHits hits, long remaining) {
+        if (hits.getHits().length <= remaining) {
+            return hits;
+        }
+        SearchHit[] limited = Arrays.copyOf(hits.getHits(), (int) remaining);
+        return new SearchHits(limited, hits.getTotalHits(), hits.getMaxScore());
+    }
+
+    private void sendResponse(RestChannel channel, RestStatus status, String content) {
+        channel.sendResponse(new BytesRestResponse(status, JSON_CONTENT_TYPE, content));
+    }
+
+    private void sendError(RestChannel channel, Exception e) {
+        LOG.error("Failed to fetch page by cursor", e);
+        sendResponse(channel, RestStatus.INTERNAL_SERVER_ERROR,
+                     new ErrorMessage(e, RestStatus.INTERNAL_SERVER_ERROR.getStatus()).toString());
+    }
+
+}
@@ -16,12 +16,13 @@
 package com.amazon.opendistroforelasticsearch.sql.executor.format;
 
 import com.amazon.opendistroforelasticsearch.sql.executor.QueryActionElasticExecutor;
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
 import com.amazon.opendistroforelasticsearch.sql.executor.RestExecutor;
-import com.amazon.opendistroforelasticsearch.sql.query.join.BackOffRetryStrategy;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestStatus;
+import com.amazon.opendistroforelasticsearch.sql.query.DefaultQueryAction;
 import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
 
 import java.util.Map;
@@ -49,9 +50,7 @@ public class PrettyFormatRestExecutor implements RestExecutor {
             bytesRestResponse = new BytesRestResponse(RestStatus.OK, formattedResponse);
         }
 
-        if (!BackOffRetryStrategy.isHealthy(2 * bytesRestResponse.content().length(), this)) {
-            throw new IllegalStateException("[PrettyFormatRestExecutor] Memory could be insufficient when sendResponse().");
-        }
+        QueryMemoryAccount.current().charge(2L * bytesRestResponse.content().length(), "pretty format response");
 
         channel.sendResponse(bytesRestResponse);
     }
@@ -61,8 +60,12 @@ public class PrettyFormatRestExecutor implements RestExecutor {
         Protocol protocol;
 
         try {
-            Object queryResult = QueryActionElasticExecutor.executeAnyAction(client, queryAction);
-            protocol = new Protocol(client, queryAction.getQueryStatement(), queryResult, format);
+            if (CursorResultExecutor.isCursorRequested(queryAction, format)) {
+                protocol = new CursorResultExecutor(client).executeFirstPage((DefaultQueryAction) queryAction);
+            } else {
+                Object queryResult = QueryActionElasticExecutor.executeAnyAction(client, queryAction);
+                protocol = new Protocol(client, queryAction.getQueryStatement(), queryResult, format);
+            }
         } catch (Exception e) {
             // TODO Might require some refactoring, Exceptions that happen in RestSqAction code before invoking execution
             // TODO are being caught in RestController (line 242) and being sent as a bytesRestResponse
@@ -16,6 +16,7 @@
 package com.amazon.opendistroforelasticsearch.sql.executor.format;
 
 import org.elasticsearch.client.Client;
+import org.elasticsearch.search.SearchHits;
 import com.amazon.opendistroforelasticsearch.sql.executor.format.DataRows.Row;
 import com.amazon.opendistroforelasticsearch.sql.executor.format.Schema.Column;
 import org.json.JSONArray;
@@ -40,6 +41,7 @@ public class Protocol {
     private long total;
     private ResultSet resultSet;
     private ErrorMessage error;
+    private Cursor cursor;
 
     public Protocol(Client client, QueryStatement query, Object queryResult, String formatType) {
         this.formatType = formatType;
@@ -50,6 +52,18 @@ public class Protocol {
         this.total = resultSet.getDataRows().getTotalHits();
     }
 
+    /**
+     * Protocol of a page fetched by cursor.
+     */
+    public Protocol(Client client, Cursor cursor, SearchHits searchHits, String formatType) {
+        this.formatType = formatType;
+
+        this.status = OK_STATUS;
+        this.resultSet = new SelectResultSet(client, cursor.getSchema(), searchHits);
+        this.size = resultSet.getDataRows().getSize();
+        this.total = resultSet.getDataRows().getTotalHits();
+    }
+
     public Protocol(Exception e) {
         this.formatType = null;
         this.status = ERROR_STATUS;
@@ -80,6 +94,9 @@ public class Protocol {
 
     public ResultSet getResultSet() { return resultSet; }
 
+    /** Cursor to fetch next page, or null if this is the last page */
+    public void setCursor(Cursor cursor) { this.cursor = cursor; }
+
     public String format() {
         if (status == OK_STATUS) {
             switch (formatType) {
@@ -108,6 +125,10 @@ public class Protocol {
         formattedOutput.put("schema", getSchemaAsJson());
         formattedOutput.put("datarows", getDataRowsAsJson());
 
+        if (cursor != null) {
+            formattedOutput.put("cursor", cursor.encode());
+        }
+
         return formattedOutput.toString(2);
     }
 
@@ -15,8 +15,13 @@
 
 package com.amazon.opendistroforelasticsearch.sql.executor.format;
 
-import org.elasticsearch.action.admin.indices.mapping.get.GetFieldMappingsRequest;
-import org.elasticsearch.action.admin.indices.mapping.get.GetFieldMappingsResponse;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.FieldPathIndex;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.FieldMappings;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.IndexMappings;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.TypeMappings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.search.SearchHit;
@@ -40,10 +45,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import static org.elasticsearch.action.admin.indices.mapping.get.GetFieldMappingsResponse.FieldMappingMetaData;
+import static java.util.Collections.emptyMap;
 
 public class SelectResultSet extends ResultSet {
 
+    /**
+     * Schema built for the same tables and fields, key includes metadata version so that
+     * schema built against stale mappings is never hit.
+     */
+    private static final Cache<String, Schema> SCHEMA_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+
     private Query query;
     private Object queryResult;
 
@@ -63,14 +74,34 @@ public class SelectResultSet extends ResultSet {
         this.queryResult = queryResult;
         this.selectAll = false;
 
-        if (isJoinQuery()) {
-            JoinSelect joinQuery = (JoinSelect) query;
-            loadFromEsState(joinQuery.getFirstTable());
-            loadFromEsState(joinQuery.getSecondTable());
+        String schemaKey = schemaKey();
+        Schema cachedSchema = SCHEMA_CACHE.getIfPresent(schemaKey);
+        if (cachedSchema != null) {
+            this.schema = cachedSchema;
         } else {
-            loadFromEsState(query);
+            if (isJoinQuery()) {
+                JoinSelect joinQuery = (JoinSelect) query;
+                loadFromEsState(joinQuery.getFirstTable());
+                loadFromEsState(joinQuery.getSecondTable());
+            } else {
+                loadFromEsState(query);
+            }
+            this.schema = new Schema(indexName, typeName, columns);
+            SCHEMA_CACHE.put(schemaKey, schema);
         }
-        this.schema = new Schema(indexName, typeName, columns);
+        this.head = schema.getHeaders();
+
+        extractData();
+        this.dataRows = new DataRows(size, totalHits, rows);
+    }
+
+    /**
+     * Result set of a page fetched by cursor. Schema has been resolved for the first page already.
+     */
+    public SelectResultSet(Client client, Schema schema, SearchHits searchHits) {
+        this.client = client;
+        this.queryResult = searchHits;
+        this.schema = schema;
         this.head = schema.getHeaders();
 
         extractData();
@@ -82,8 +113,31 @@ public class SelectResultSet extends ResultSet {
      ***********************************************************/
 
 
+    /** Key of schema which consists of mapping version, result kind and index, type, alias and fields of each table */
+    private String schemaKey() {
+        StringBuilder key = new StringBuilder();
+        key.append(LocalClusterState.state().getMetadataVersion())
+           .append(queryResult instanceof Aggregations ? "|aggs" : "|hits");
+
+        List<Query> tables = isJoinQuery()
+            ? Arrays.asList(((JoinSelect) query).getFirstTable(), ((JoinSelect) query).getSecondTable())
+            : Arrays.asList(query);
+        for (Query table : tables) {
+            key.append('|').append(fetchIndexName(table))
+               .append('/').append(fetchTypeName(table));
+            if (table instanceof TableOnJoinSelect) {
+                key.append('/').append(((TableOnJoinSelect) table).getAlias());
+            }
+            for (Field field : fetchFields(table)) {
+                key.append(field instanceof MethodField ? ",m:" : ",f:")
+                   .append(field.getName()).append(':').append(field.getAlias());
+            }
+        }
+        return key.toString();
+    }
+
     /**
-     * Makes a request to local node to receive meta data information and maps each field specified in SELECT to its
+     * Reads field mappings in local cluster state and maps each field specified in SELECT to its
      * type in the index mapping
      */
     private void loadFromEsState(Query query) {
@@ -96,38 +150,28 @@ public class SelectResultSet extends ResultSet {
         else
             selectAll = false; // Reset boolean in the case of JOIN query where multiple calls to loadFromEsState() are made
 
-        GetFieldMappingsRequest request = new GetFieldMappingsRequest()
-                .indices(indexName)
-                .types(emptyArrayIfNull(typeName))
-                .fields(selectAllFieldsIfEmpty(fieldNames))
-                .local(true);
-        GetFieldMappingsResponse response = client.admin().indices()
-                .getFieldMappings(request)
-                .actionGet();
-
-        Map<String, Map<String, Map<String, FieldMappingMetaData>>> mappings = response.mappings();
-        if (mappings.isEmpty()) {
+        IndexMappings mappings = LocalClusterState.state().getFieldMappings(
+                new String[] {indexName}, emptyArrayIfNull(typeName));
+        if (mappings.isEmpty() || mappings.firstMapping().isEmpty()) {
             throw new IllegalArgumentException(String.format("Index type %s does not exist", query.getFrom()));
         }
 
         // Assumption is all indices share the same mapping which is validated in TermFieldRewriter.
-        Map<String, Map<String, FieldMappingMetaData>> indexMappings = mappings.values().iterator().next();
+        TypeMappings indexMappings = mappings.firstMapping();
 
         /*
-         * There are three cases regarding type name to consider:
+         * There are two cases regarding type name to consider:
          * 1. If the correct type name was given, its typeMapping is retrieved
-         * 2. If the incorrect type name was given then the response is null
-         * 3. If no type name is given, the indexMapping is searched for a typeMapping
+         * 2. If no type name is given, the indexMapping is searched for a typeMapping
          */
-        Map<String, FieldMappingMetaData> typeMappings = new HashMap<>();
-        if (indexMappings.containsKey(typeName)) {
-            typeMappings = indexMappings.get(typeName);
+        FieldMappings fieldMappings;
+        if (indexMappings.has(typeName)) {
+            fieldMappings = indexMappings.mapping(typeName);
         } else {
-            // Assuming ES version 6.x, there can be only one type per index so this for loop should grab the only type
-            for (String type : indexMappings.keySet()) {
-                typeMappings = indexMappings.get(type);
-            }
+            // Assuming ES version 6.x, there can be only one type per index so this should grab the only type
+            fieldMappings = indexMappings.firstMapping();
         }
+        FieldPathIndex typeMappings = (fieldMappings == null) ? FieldPathIndex.of(emptyMap()) : fieldMappings.pathIndex();
 
         this.indexName = this.indexName == null ? indexName : (this.indexName + "|" + indexName);
         this.typeName = this.typeName == null ? typeName : (this.typeName + "|" + typeName);
@@ -208,7 +252,8 @@ public class SelectResultSet extends ResultSet {
         Select select = (Select) query;
         List<Field> fields;
         if (queryResult instanceof Aggregations) {
-            fields = select.getGroupBys().isEmpty() ? new ArrayList<>() : select.getGroupBys().get(0);
+            // Copy to avoid adding method fields to GROUP BY of Select which may be cached and reused
+            fields = select.getGroupBys().isEmpty() ? new ArrayList<>() : new ArrayList<>(select.getGroupBys().get(0));
             for (Field field : select.getFields()) {
                 if (field instanceof MethodField) {
                     fields.add(field);
@@ -249,13 +294,6 @@ public class SelectResultSet extends ResultSet {
         return fieldMap;
     }
 
-    private String[] selectAllFieldsIfEmpty(String[] fields) {
-        if (isSelectAll())
-            return new String[] {"*"};
-
-        return fields;
-    }
-
     private String[] emptyArrayIfNull(String typeName) {
         if (typeName != null)
             return new String[] {typeName};
@@ -287,11 +325,11 @@ public class SelectResultSet extends ResultSet {
      * If an alias was given for a field, that will be used to identify the field in Column, otherwise the field name
      * will be used.
      */
-    private List<Schema.Column> populateColumns(Query query, String[] fieldNames, Map<String, FieldMappingMetaData> typeMappings) {
+    private List<Schema.Column> populateColumns(Query query, String[] fieldNames, FieldPathIndex typeMappings) {
         List<String> fields;
 
         if (isSelectAll() || containsWildcard(query)) {
-            fields = new ArrayList<>(typeMappings.keySet());
+            fields = new ArrayList<>(typeMappings.fields().keySet());
         } else {
             fields = Arrays.asList(fieldNames);
         }
@@ -333,15 +371,14 @@ public class SelectResultSet extends ResultSet {
              * Fields like field.keyword will be ignored when isSelectAll is true but will be returned if
              * explicitly selected.
              */
-            if (typeMappings.containsKey(field) && !field.startsWith("_")) {
+            // Object and nested field itself has no value to be a column
+            if (typeMappings.has(field) && !typeMappings.get(field).isObject() && !field.startsWith("_")) {
                 if (!isSelectAll() || !field.endsWith(".keyword")) {
-                    FieldMappingMetaData metaData = typeMappings.get(field);
-
                     // Ignore nested fields during SELECT *, expectation is that user will SELECT them specifically
                     // TODO isPropertyType() logic should be changed to check for nested more effectively
                     if (isSelectAll() && isPropertyType(field)) { continue; }
 
-                    String type = getTypeFromMetaData(field, metaData).toUpperCase();
+                    String type = typeMappings.get(field).getType().toUpperCase();
 
                     /*
                      * Three cases regarding Type:
@@ -389,30 +426,6 @@ public class SelectResultSet extends ResultSet {
         return lastDot > -1 && !fieldName.substring(lastDot + 1).equals("keyword");
     }
 
-    /** Used to retrieve the type of fields from metaData map structures for both regular and nested fields */
-    @SuppressWarnings("unchecked")
-    private String getTypeFromMetaData(String fieldName, FieldMappingMetaData metaData) {
-        Map<String, Object> source = metaData.sourceAsMap();
-        String[] fieldPath = fieldName.split("\\.");
-
-        /*
-         * When field is not nested the metaData source is fieldName -> type
-         * When it is nested or contains "." in general (ex. fieldName.nestedName) the source is nestedName -> type
-         */
-        Map<String, Object> fieldMapping;
-        if (fieldPath.length < 2) {
-            fieldMapping = (Map<String, Object>) source.get(fieldName);
-        } else {
-            fieldMapping = (Map<String, Object>) source.get(fieldPath[1]);
-        }
-
-        for (int i = 2; i < fieldPath.length; i++) {
-            fieldMapping = (Map<String, Object>) fieldMapping.get(fieldPath[i]);
-        }
-
-        return (String) fieldMapping.get("type");
-    }
-
     /***********************************************************
           Logic for loading Rows to be stored in DataRows
      ***********************************************************/
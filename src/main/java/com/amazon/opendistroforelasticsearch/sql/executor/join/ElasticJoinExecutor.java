@@ -91,6 +91,15 @@ public abstract class ElasticJoinExecutor implements ElasticHitsExecutor {
         LOG.debug("[MCB] Successfully send response with size of {}. Thread id = {}", len, Thread.currentThread().getId());
     }
 
+    /**
+     * Run join and send response back. Executor that yields result hits one by one overrides it
+     * to write each hit to response once yielded rather than holding all result hits in memory.
+     */
+    public void runAndSendResponse(RestChannel channel) throws IOException, SqlParseException {
+        run();
+        sendResponse(channel);
+    }
+
     public void run() throws IOException, SqlParseException {
         long timeBefore = System.currentTimeMillis();
         results = innerRun();
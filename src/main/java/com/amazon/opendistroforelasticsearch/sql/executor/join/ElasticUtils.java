@@ -31,6 +31,7 @@ import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
 import com.amazon.opendistroforelasticsearch.sql.query.join.BackOffRetryStrategy;
 
 import java.io.IOException;
@@ -107,9 +108,7 @@ public class ElasticUtils {
         toXContent(builder, EMPTY_PARAMS, results, executor);
         builder.endObject();
 
-        if (!BackOffRetryStrategy.isHealthy(2 * outputStream.size(), executor)) {
-            throw new IllegalStateException("Memory could be insufficient when sendResponse().");
-        }
+        QueryMemoryAccount.current().charge(2L * outputStream.size(), "join response");
 
         return builder;
     }
@@ -134,7 +133,7 @@ public class ElasticUtils {
     }
 
     /** Code copy from SearchHit but only keep fields interested and replace source by sourceMap */
-    private static void toXContent(XContentBuilder builder, Params params, SearchHit hit) throws IOException {
+    static void toXContent(XContentBuilder builder, Params params, SearchHit hit) throws IOException {
         builder.startObject();
         if (hit.getType() != null) {
             builder.field("_type", hit.getType());
@@ -34,6 +34,8 @@ import com.amazon.opendistroforelasticsearch.sql.query.join.HashJoinElasticReque
 import com.amazon.opendistroforelasticsearch.sql.query.join.TableInJoinRequestBuilder;
 
 import com.amazon.opendistroforelasticsearch.sql.query.maker.QueryMaker;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join.RuntimeFilter;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.Scroll;
 
 import java.io.IOException;
 import java.util.*;
@@ -283,13 +285,14 @@ public class HashJoinElasticExecutor extends ElasticJoinExecutor {
     private void updateRequestWithTermsFilter(Map<String,Map<String, List<Object>>> optimizationTermsFilterStructure, TableInJoinRequestBuilder secondTableRequest) throws SqlParseException {
         Select select = secondTableRequest.getOriginalSelect();
 
+        String[] indices = secondTableRequest.getRequestBuilder().request().indices();
         BoolQueryBuilder orQuery = QueryBuilders.boolQuery();
         for(Map<String,List<Object>> optimization : optimizationTermsFilterStructure.values()) {
             BoolQueryBuilder andQuery = QueryBuilders.boolQuery();
             for (Map.Entry<String, List<Object>> keyToValues : optimization.entrySet()) {
                 String fieldName = keyToValues.getKey();
                 List<Object> values = keyToValues.getValue();
-                andQuery.must(QueryBuilders.termsQuery(fieldName, values));
+                andQuery.must(RuntimeFilter.filterOf(fieldName, values, Scroll.isKeywordField(indices, fieldName)));
             }
             orQuery.should(andQuery);
         }
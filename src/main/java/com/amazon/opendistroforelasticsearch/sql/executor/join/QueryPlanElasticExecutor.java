@@ -15,10 +15,14 @@
 
 package com.amazon.opendistroforelasticsearch.sql.executor.join;
 
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.HashJoinQueryPlanRequestBuilder;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.QueryPlanner;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -42,6 +46,25 @@ class QueryPlanElasticExecutor extends ElasticJoinExecutor {
         return result;
     }
 
+    /**
+     * Write hits to response once yielded by physical plan without collecting them into a list.
+     */
+    @Override
+    public void runAndSendResponse(RestChannel channel) throws IOException {
+        StreamingHitsResponse response = new StreamingHitsResponse();
+        try {
+            long timeBefore = System.currentTimeMillis();
+            queryPlanner.execute(response);
+            populateMetaResult();
+            metaResults.setTookImMilli(System.currentTimeMillis() - timeBefore);
+
+            channel.sendResponse(new BytesRestResponse(RestStatus.OK, response.finish(metaResults)));
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+    }
+
     private void populateMetaResult() {
         metaResults.addTotalNumOfShards(queryPlanner.getMetaResult().getTotalNumOfShards());
         metaResults.addSuccessfulShards(queryPlanner.getMetaResult().getSuccessfulShards());
@@ -0,0 +1,117 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.executor.join;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import static org.elasticsearch.common.xcontent.ToXContent.EMPTY_PARAMS;
+
+/**
+ * Response body that hits are written to one by one as soon as they are yielded, instead of being
+ * collected into a list first. Hits total and metadata such as took and shards are only known after
+ * the last hit, so they are written as a trailer after the hits array.
+ */
+public class StreamingHitsResponse implements Consumer<SearchHit> {
+
+    /** Number of hits written between two charges of response size to memory account */
+    private static final int CHARGE_INTERVAL = 1000;
+
+    private final BytesStreamOutput outputStream = new BytesStreamOutput();
+
+    private final XContentBuilder builder;
+
+    private long numOfHits = 0;
+
+    /** Response size in bytes charged to memory account so far */
+    private long charged = 0;
+
+    public StreamingHitsResponse() throws IOException {
+        builder = XContentFactory.contentBuilder(XContentType.JSON, outputStream).prettyPrint();
+        builder.startObject();
+        builder.startObject(SearchHits.Fields.HITS);
+        builder.field(SearchHits.Fields.HITS);
+        builder.startArray();
+    }
+
+    @Override
+    public void accept(SearchHit hit) {
+        try {
+            ElasticUtils.toXContent(builder, EMPTY_PARAMS, hit);
+
+            numOfHits++;
+            if (numOfHits % CHARGE_INTERVAL == 0) {
+                chargeWritten();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write hit to response", e);
+        }
+    }
+
+    /**
+     * Write metadata trailer and complete the response.
+     * @param metaResults   metadata of search
+     * @return              builder with complete response
+     */
+    public XContentBuilder finish(MetaSearchResult metaResults) throws IOException {
+        builder.endArray();
+        builder.field(SearchHits.Fields.TOTAL, numOfHits);
+        builder.field(SearchHits.Fields.MAX_SCORE, 1.0f);
+        builder.endObject();
+
+        builder.field("took", metaResults.getTookImMilli());
+        builder.field("timed_out", metaResults.isTimedOut());
+        builder.field("_shards", ImmutableMap.of(
+            "total", metaResults.getTotalNumOfShards(),
+            "successful", metaResults.getSuccessfulShards(),
+            "failed", metaResults.getFailedShards()
+        ));
+        builder.endObject();
+        chargeWritten();
+        return builder;
+    }
+
+    public void close() {
+        try {
+            builder.close();
+        } catch (Exception e) {
+            // Ignore. Failure of response is reported by caller
+        }
+    }
+
+    /**
+     * Charge bytes written since last charge and double for copy made when sending response.
+     * Builder is flushed first because JSON generator buffers output before writing to the stream.
+     */
+    private void chargeWritten() throws IOException {
+        builder.flush();
+        long size = outputStream.size();
+        QueryMemoryAccount.current().charge(2L * (size - charged), "join response");
+        charged = size;
+    }
+
+}
@@ -69,7 +69,7 @@ public class RestSqlAction extends BaseRestHandler {
     protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
         try {
             final SqlRequest sqlRequest = SqlRequestFactory.getSqlRequest(request);
-            final QueryAction queryAction = new SearchDao(client).explain(sqlRequest.getSql());
+            final QueryAction queryAction = new SearchDao(client).explain(sqlRequest);
             queryAction.setSqlRequest(sqlRequest);
 
             if (request.path().endsWith("/_explain")) {
@@ -96,7 +96,7 @@ public class RestSqlAction extends BaseRestHandler {
     @Override
     protected Set<String> responseParams() {
         Set<String> responseParams = new HashSet<>(super.responseParams());
-        responseParams.addAll(Arrays.asList("sql", "flat", "separator", "_score", "_type", "_id", "newLine", "format"));
+        responseParams.addAll(Arrays.asList("sql", "flat", "separator", "_score", "_type", "_id", "newLine", "format", "stream"));
         return responseParams;
     }
 
@@ -0,0 +1,78 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.plugin;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.AsyncRestExecutor;
+import com.amazon.opendistroforelasticsearch.sql.executor.WorkloadClass;
+import com.amazon.opendistroforelasticsearch.sql.executor.format.CursorResultExecutor;
+import com.amazon.opendistroforelasticsearch.sql.executor.format.ErrorMessage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import static org.elasticsearch.rest.RestStatus.BAD_REQUEST;
+
+/**
+ * Fetch next page or close cursor returned in JDBC response.
+ */
+public class RestSqlCursorAction extends BaseRestHandler {
+
+    private static final Logger LOG = LogManager.getLogger(RestSqlCursorAction.class);
+
+    /** API endpoint path */
+    public static final String CURSOR_API_ENDPOINT = RestSqlAction.QUERY_API_ENDPOINT + "/_cursor";
+    public static final String CLOSE_CURSOR_API_ENDPOINT = CURSOR_API_ENDPOINT + "/_close";
+
+    private static final String CURSOR_FIELD_NAME = "cursor";
+
+    public RestSqlCursorAction(Settings settings, RestController restController) {
+        super(settings);
+        restController.registerHandler(RestRequest.Method.POST, CURSOR_API_ENDPOINT, this);
+        restController.registerHandler(RestRequest.Method.POST, CLOSE_CURSOR_API_ENDPOINT, this);
+    }
+
+    @Override
+    public String getName() {
+        return "sql_cursor_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        try {
+            String cursor = new JSONObject(request.content().utf8ToString()).getString(CURSOR_FIELD_NAME);
+            CursorResultExecutor executor = new CursorResultExecutor(client);
+
+            if (request.path().endsWith("/_close")) {
+                return channel -> executor.close(cursor, channel);
+            }
+            return channel -> AsyncRestExecutor.async(
+                client, WorkloadClass.LIGHT, channel, () -> executor.executeNextPage(cursor, channel));
+        } catch (JSONException | IllegalArgumentException e) {
+            LOG.error("Failed to parse cursor request.", e);
+            return channel -> channel.sendResponse(new BytesRestResponse(
+                BAD_REQUEST, new ErrorMessage(e, BAD_REQUEST.getStatus()).toString()));
+        }
+    }
+
+}
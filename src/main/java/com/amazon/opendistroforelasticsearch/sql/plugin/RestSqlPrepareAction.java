@@ -0,0 +1,74 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.plugin;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.format.ErrorMessage;
+import com.amazon.opendistroforelasticsearch.sql.query.PreparedStatementCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.json.JSONObject;
+
+import static org.elasticsearch.rest.RestStatus.BAD_REQUEST;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Prepare a statement on server side. Statement id returned is executed later by sending it
+ * with "statement_id" and "parameters" to query endpoint instead of the SQL template.
+ */
+public class RestSqlPrepareAction extends BaseRestHandler {
+
+    private static final Logger LOG = LogManager.getLogger(RestSqlPrepareAction.class);
+
+    /** API endpoint path */
+    public static final String PREPARE_API_ENDPOINT = RestSqlAction.QUERY_API_ENDPOINT + "/_prepare";
+
+    private static final String SQL_FIELD_NAME = "query";
+    private static final String STATEMENT_ID_FIELD_NAME = "statement_id";
+
+    public RestSqlPrepareAction(Settings settings, RestController restController) {
+        super(settings);
+        restController.registerHandler(RestRequest.Method.POST, PREPARE_API_ENDPOINT, this);
+    }
+
+    @Override
+    public String getName() {
+        return "sql_prepare_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        try {
+            String sqlTemplate = new JSONObject(request.content().utf8ToString()).getString(SQL_FIELD_NAME);
+            String statementId = PreparedStatementCache.getInstance().prepare(client, sqlTemplate);
+
+            JSONObject response = new JSONObject();
+            response.put(STATEMENT_ID_FIELD_NAME, statementId);
+            return channel -> channel.sendResponse(new BytesRestResponse(OK, response.toString()));
+        } catch (Exception e) {
+            LOG.error("Failed to prepare statement.", e);
+            return channel -> channel.sendResponse(new BytesRestResponse(
+                BAD_REQUEST, new ErrorMessage(e, BAD_REQUEST.getStatus()).toString()));
+        }
+    }
+
+}
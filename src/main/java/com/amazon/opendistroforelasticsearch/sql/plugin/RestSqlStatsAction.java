@@ -0,0 +1,68 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.plugin;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.AggregationResultCache;
+import com.amazon.opendistroforelasticsearch.sql.executor.WorkloadClass;
+import com.amazon.opendistroforelasticsearch.sql.query.ParsedQueryCache;
+import com.amazon.opendistroforelasticsearch.sql.query.PreparedStatementCache;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Statistics of SQL query execution on current node.
+ */
+public class RestSqlStatsAction extends BaseRestHandler {
+
+    /** API endpoint path */
+    public static final String STATS_API_ENDPOINT = RestSqlAction.QUERY_API_ENDPOINT + "/_stats";
+
+    public RestSqlStatsAction(Settings settings, RestController restController) {
+        super(settings);
+        restController.registerHandler(RestRequest.Method.GET, STATS_API_ENDPOINT, this);
+    }
+
+    @Override
+    public String getName() {
+        return "sql_stats_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        JSONObject workload = new JSONObject();
+        for (WorkloadClass workloadClass : WorkloadClass.values()) {
+            workload.put(workloadClass.name().toLowerCase(Locale.ROOT), workloadClass.stats());
+        }
+
+        JSONObject stats = new JSONObject();
+        stats.put("workload", workload);
+        stats.put("query_cache", ParsedQueryCache.getInstance().stats());
+        stats.put("prepared_statements", PreparedStatementCache.getInstance().stats());
+        stats.put("result_cache", AggregationResultCache.getInstance().stats());
+        return channel -> channel.sendResponse(new BytesRestResponse(OK, stats.toString()));
+    }
+
+}
@@ -22,6 +22,7 @@ import java.util.Set;
 import com.amazon.opendistroforelasticsearch.sql.exception.SqlParseException;
 import com.amazon.opendistroforelasticsearch.sql.query.ESActionFactory;
 import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
+import com.amazon.opendistroforelasticsearch.sql.request.SqlRequest;
 import org.elasticsearch.client.Client;
 
 
@@ -59,6 +60,16 @@ public class SearchDao {
 		return ESActionFactory.create(client, sql);
 	}
 
+	/**
+	 * Prepare action from SQL request, binding parameters into
+	 * prepared statement if possible
+	 * @param sqlRequest SQL request to execute.
+	 * @return ES request
+	 */
+	public QueryAction explain(SqlRequest sqlRequest) throws Exception {
+		return ESActionFactory.create(client, sqlRequest);
+	}
+
 
 
 }
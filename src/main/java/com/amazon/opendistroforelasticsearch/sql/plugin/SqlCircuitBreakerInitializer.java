@@ -0,0 +1,87 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.plugin;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.breaker.BreakerSettings;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Create child circuit breaker for SQL queries under the parent breaker of ES on node start,
+ * and initialize memory account of queries with it.
+ */
+public class SqlCircuitBreakerInitializer extends AbstractLifecycleComponent {
+
+    /** Max memory all SQL queries on the node can charge in total */
+    public static final Setting<ByteSizeValue> SQL_BREAKER_LIMIT =
+        Setting.memorySizeSetting("opendistro.sql.breaker.limit", "20%", Property.NodeScope);
+
+    /** Constant multiplied with bytes charged to get the final estimation */
+    public static final Setting<Double> SQL_BREAKER_OVERHEAD =
+        Setting.doubleSetting("opendistro.sql.breaker.overhead", 1.0d, 0.0d, Property.NodeScope);
+
+    /** Max memory single SQL query can charge */
+    public static final Setting<ByteSizeValue> SQL_QUERY_MEMORY_LIMIT =
+        Setting.memorySizeSetting("opendistro.sql.query.memory_limit", "10%", Property.NodeScope);
+
+    public static final List<Setting<?>> SETTINGS = Arrays.asList(
+        SQL_BREAKER_LIMIT, SQL_BREAKER_OVERHEAD, SQL_QUERY_MEMORY_LIMIT
+    );
+
+    @Inject
+    public SqlCircuitBreakerInitializer(Settings settings, CircuitBreakerService breakerService) {
+        super(settings);
+
+        // Registered breaker is counted by the parent breaker and shown in node stats.
+        // Breaker service with breaker disabled ignores it and returns noop breaker.
+        breakerService.registerBreaker(
+            new BreakerSettings(
+                QueryMemoryAccount.BREAKER_NAME,
+                SQL_BREAKER_LIMIT.get(settings).getBytes(),
+                SQL_BREAKER_OVERHEAD.get(settings),
+                CircuitBreaker.Type.MEMORY
+            )
+        );
+        QueryMemoryAccount.initialize(
+            breakerService.getBreaker(QueryMemoryAccount.BREAKER_NAME),
+            SQL_QUERY_MEMORY_LIMIT.get(settings).getBytes()
+        );
+    }
+
+    @Override
+    protected void doStart() {
+    }
+
+    @Override
+    protected void doStop() {
+    }
+
+    @Override
+    protected void doClose() {
+    }
+
+}
@@ -15,18 +15,23 @@
 
 package com.amazon.opendistroforelasticsearch.sql.plugin;
 
-import com.amazon.opendistroforelasticsearch.sql.executor.AsyncRestExecutor;
+import com.amazon.opendistroforelasticsearch.sql.executor.AdmissionController;
+import com.amazon.opendistroforelasticsearch.sql.executor.AggregationResultCache;
+import com.amazon.opendistroforelasticsearch.sql.executor.WorkloadClass;
 import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.query.ParsedQueryCache;
+import com.amazon.opendistroforelasticsearch.sql.query.PreparedStatementCache;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsFilter;
-import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.env.NodeEnvironment;
@@ -36,14 +41,16 @@ import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestHandler;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.threadpool.ExecutorBuilder;
-import org.elasticsearch.threadpool.FixedExecutorBuilder;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.watcher.ResourceWatcherService;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class SqlPlug extends Plugin implements ActionPlugin {
 
@@ -63,26 +70,43 @@ public class SqlPlug extends Plugin implements ActionPlugin {
 	@Override
 	public List<RestHandler> getRestHandlers(Settings settings, RestController restController, ClusterSettings clusterSettings, IndexScopedSettings indexScopedSettings, SettingsFilter settingsFilter, IndexNameExpressionResolver indexNameExpressionResolver, Supplier<DiscoveryNodes> nodesInCluster) {
 	    LocalClusterState.state().setResolver(indexNameExpressionResolver);
-		return Collections.singletonList(new RestSqlAction(settings, restController));
+		return Arrays.asList(
+		    new RestSqlAction(settings, restController),
+		    new RestSqlCursorAction(settings, restController),
+		    new RestSqlPrepareAction(settings, restController),
+		    new RestSqlStatsAction(settings, restController)
+		);
 	}
 
     @Override
     public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool, ResourceWatcherService resourceWatcherService, ScriptService scriptService, NamedXContentRegistry xContentRegistry, Environment environment, NodeEnvironment nodeEnvironment, NamedWriteableRegistry namedWriteableRegistry) {
 	    LocalClusterState.state().setClusterService(clusterService);
+	    AdmissionController.getInstance().configure(clusterService.getSettings());
+	    ParsedQueryCache.getInstance().configure(clusterService.getSettings());
+	    PreparedStatementCache.getInstance().configure(clusterService.getSettings());
+	    AggregationResultCache.getInstance().configure(clusterService.getSettings());
 	    return super.createComponents(client, clusterService, threadPool, resourceWatcherService, scriptService, xContentRegistry, environment, nodeEnvironment, namedWriteableRegistry);
     }
 
+    @Override
+    public Collection<Class<? extends LifecycleComponent>> getGuiceServiceClasses() {
+        return Collections.singletonList(SqlCircuitBreakerInitializer.class);
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        List<Setting<?>> settings = new ArrayList<>(SqlCircuitBreakerInitializer.SETTINGS);
+        settings.addAll(AdmissionController.SETTINGS);
+        settings.add(ParsedQueryCache.QUERY_CACHE_SIZE);
+        settings.addAll(AggregationResultCache.SETTINGS);
+        return settings;
+    }
+
 	@Override
 	public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
-        return Collections.singletonList(
-			new FixedExecutorBuilder(
-			    settings,
-                AsyncRestExecutor.SQL_WORKER_THREAD_POOL_NAME,
-                EsExecutors.numberOfProcessors(settings),
-                1000,
-                null
-            )
-        );
+        return Arrays.stream(WorkloadClass.values()).
+            map(workloadClass -> workloadClass.executorBuilder(settings)).
+            collect(Collectors.toList());
 	}
 
 }
@@ -182,6 +182,7 @@ public class AggregationQueryAction extends QueryAction {
         }
 
         setLimitFromHint(this.select.getHints());
+        setRequestCacheFromHint(this.select.getHints());
 
         request.setSearchType(SearchType.DEFAULT);
         updateRequestWithIndexAndRoutingOptions(select, request);
@@ -399,4 +400,20 @@ public class AggregationQueryAction extends QueryAction {
         request.setFrom(from);
         request.setSize(size);
     }
+
+    /**
+     * Enable shard request cache and node result cache for aggregation only request,
+     * unless both are bypassed by hint NO_RESULT_CACHE.
+     */
+    private void setRequestCacheFromHint(List<Hint> hints) {
+        for (Hint hint : hints) {
+            if (hint.getType() == HintType.NO_RESULT_CACHE) {
+                request.setRequestCache(false);
+                return;
+            }
+        }
+        if (request.request().source().size() == 0) {
+            request.setRequestCache(true);
+        }
+    }
 }
@@ -31,6 +31,8 @@ import com.amazon.opendistroforelasticsearch.sql.rewriter.nestedfield.NestedFiel
 import com.amazon.opendistroforelasticsearch.sql.query.join.ESJoinQueryActionFactory;
 import com.amazon.opendistroforelasticsearch.sql.query.multi.MultiQueryAction;
 import com.amazon.opendistroforelasticsearch.sql.query.multi.MultiQuerySelect;
+import com.amazon.opendistroforelasticsearch.sql.request.PreparedStatementRequest;
+import com.amazon.opendistroforelasticsearch.sql.request.SqlRequest;
 import org.elasticsearch.client.Client;
 import com.amazon.opendistroforelasticsearch.sql.executor.ElasticResultHandler;
 import com.amazon.opendistroforelasticsearch.sql.executor.QueryActionElasticExecutor;
@@ -52,6 +54,23 @@ import com.amazon.opendistroforelasticsearch.sql.rewriter.matchtoterm.TermFieldR
 
 public class ESActionFactory {
 
+    /**
+     * Create the compatible Query object based on the SQL request.
+     * Parameters of prepared statement are bound into Select prepared from its template if possible.
+     *
+     * @param sqlRequest The SQL request.
+     * @return Query object.
+     */
+    public static QueryAction create(Client client, SqlRequest sqlRequest) throws Exception {
+        if (sqlRequest instanceof PreparedStatementRequest) {
+            QueryAction queryAction = PreparedStatementCache.getInstance().bind(client, (PreparedStatementRequest) sqlRequest);
+            if (queryAction != null) {
+                return queryAction;
+            }
+        }
+        return create(client, sqlRequest.getSql());
+    }
+
     /**
      * Create the compatible Query object
      * based on the SQL query.
@@ -64,6 +83,11 @@ public class ESActionFactory {
         String firstWord = sql.substring(0, sql.indexOf(' '));
         switch (firstWord.toUpperCase()) {
             case "SELECT":
+                Select cachedSelect = ParsedQueryCache.getInstance().get(sql);
+                if (cachedSelect != null) {
+                    return handleSelect(client, cachedSelect);
+                }
+
                 SQLQueryExpr sqlExpr = (SQLQueryExpr) toSqlExpr(sql);
                 sqlExpr.accept(new NestedFieldRewriter());
                 if(isMulti(sqlExpr)){
@@ -84,6 +108,7 @@ public class ESActionFactory {
                     sqlExpr.accept(new TermFieldRewriter(client));
                     Select select = new SqlParser().parseSelect(sqlExpr);
                     handleSubQueries(client, select);
+                    ParsedQueryCache.getInstance().put(sql, select);
                     return handleSelect(client, select);
                 }
             case "DELETE":
@@ -138,7 +163,7 @@ public class ESActionFactory {
         subQueryExpression.setValues(values.toArray());
     }
 
-    private static QueryAction handleSelect(Client client, Select select) {
+    static QueryAction handleSelect(Client client, Select select) {
         if (select.isAgg) {
             return new AggregationQueryAction(client, select);
         } else {
@@ -0,0 +1,138 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.query;
+
+import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of Select parsed and rewritten from SQL, which saves Druid parsing, rewriting by mappings
+ * and parsing into Select for query sent repeatedly. Key is SQL normalized plus metadata version that
+ * Select was rewritten against, and the cache is also invalidated once metadata in cluster state changed.
+ *
+ * Only single table query without sub-query is cached, because join and multi-query executors modify
+ * Select during execution and sub-query results are filled into Select on parsing.
+ */
+public class ParsedQueryCache {
+
+    /** Max number of parsed queries cached on the node. 0 disables the cache */
+    public static final Setting<Integer> QUERY_CACHE_SIZE =
+        Setting.intSetting("opendistro.sql.query.cache.size", 1000, 0, Property.NodeScope);
+
+    private static final ParsedQueryCache INSTANCE = new ParsedQueryCache();
+
+    /** Null until configured on node start, so that cache is disabled by default */
+    private volatile Cache<String, Select> cache;
+
+    private ParsedQueryCache() {
+    }
+
+    public static ParsedQueryCache getInstance() {
+        return INSTANCE;
+    }
+
+    public void configure(Settings settings) {
+        int size = QUERY_CACHE_SIZE.get(settings);
+        cache = (size > 0) ? CacheBuilder.newBuilder().maximumSize(size).recordStats().build() : null;
+        LocalClusterState.state().addMetadataChangeListener(this::invalidateAll);
+    }
+
+    /**
+     * @param sql   SQL query
+     * @return      copy of Select cached for the SQL which is free to modify, or null if not found
+     */
+    public Select get(String sql) {
+        Cache<String, Select> current = cache;
+        Select select = (current == null) ? null : current.getIfPresent(key(sql));
+        return (select == null) ? null : select.copy();
+    }
+
+    /**
+     * Cache a copy of the Select so that execution of the Select passed in doesn't affect the cached one.
+     * @param sql       SQL query
+     * @param select    Select parsed and rewritten from the SQL
+     */
+    public void put(String sql, Select select) {
+        Cache<String, Select> current = cache;
+        if (current != null && !select.containsSubQueries()) {
+            current.put(key(sql), select.copy());
+        }
+    }
+
+    public void invalidateAll() {
+        Cache<String, Select> current = cache;
+        if (current != null) {
+            current.invalidateAll();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Cache<String, Select> current = cache;
+        if (current != null) {
+            CacheStats cacheStats = current.stats();
+            stats.put("size", current.size());
+            stats.put("hit_count", cacheStats.hitCount());
+            stats.put("miss_count", cacheStats.missCount());
+            stats.put("eviction_count", cacheStats.evictionCount());
+        }
+        return stats;
+    }
+
+    private String key(String sql) {
+        return LocalClusterState.state().getMetadataVersion() + ":" + normalize(sql);
+    }
+
+    /**
+     * Collapse consecutive whitespaces out of quotes into single space and trim.
+     * @param sql   SQL query
+     * @return      normalized SQL
+     */
+    public static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean isLastSpace = false;
+        for (char c : sql.trim().toCharArray()) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (Character.isWhitespace(c)) {
+                if (!isLastSpace) {
+                    normalized.append(' ');
+                    isLastSpace = true;
+                }
+                continue;
+            }
+            normalized.append(c);
+            isLastSpace = false;
+        }
+        return normalized.toString();
+    }
+
+}
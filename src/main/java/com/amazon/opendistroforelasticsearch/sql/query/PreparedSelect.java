@@ -0,0 +1,202 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.query;
+
+import com.amazon.opendistroforelasticsearch.sql.domain.Condition;
+import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.domain.Where;
+import com.amazon.opendistroforelasticsearch.sql.request.PreparedStatementRequest.PreparedStatementParameter;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Select parsed and rewritten once from a prepared statement template. Each placeholder in the template
+ * is parsed as a marker string literal, so that parameters can be bound into values of conditions in WHERE
+ * on each execution without parsing and rewriting the SQL again.
+ */
+public class PreparedSelect {
+
+    private static final String MARKER_PREFIX = "__opendistro_sql_param_";
+    private static final String MARKER_SUFFIX = "__";
+
+    /** Returned by bindValue for parameter which has no equivalent value without parsing its substitution */
+    private static final Object UNBINDABLE = new Object();
+
+    private final Select select;
+    private final int numOfPlaceholders;
+
+    private PreparedSelect(Select select, int numOfPlaceholders) {
+        this.select = select;
+        this.numOfPlaceholders = numOfPlaceholders;
+    }
+
+    /**
+     * @param index index of placeholder
+     * @return      marker value parsed from string literal substituted for the placeholder
+     */
+    public static String marker(int index) {
+        return MARKER_PREFIX + index + MARKER_SUFFIX;
+    }
+
+    /**
+     * @param select            Select parsed from template with placeholders substituted by markers
+     * @param numOfPlaceholders number of placeholders in the template
+     * @return                  prepared Select, or null if any placeholder is not a value of condition in WHERE
+     *                          (ex. in LIMIT, HAVING or script) and thus cannot be bound on execution
+     */
+    public static PreparedSelect of(Select select, int numOfPlaceholders) {
+        BitSet found = new BitSet(numOfPlaceholders);
+        if (select.containsSubQueries() || !collectMarkers(select.getWhere(), found)
+                || found.cardinality() != numOfPlaceholders || found.length() != numOfPlaceholders) {
+            return null;
+        }
+        return new PreparedSelect(select, numOfPlaceholders);
+    }
+
+    public int getNumOfPlaceholders() {
+        return numOfPlaceholders;
+    }
+
+    /**
+     * Bind parameters into a copy of the Select, the Select prepared is shared and left unchanged.
+     * @param parameters    parameters in order of placeholders
+     * @return              Select with parameters bound, or null if any parameter cannot be bound as the value
+     *                      parsed from its SQL substitution (ex. NULL or boolean) and thus SQL must be parsed again
+     */
+    public Select bind(List<PreparedStatementParameter> parameters) {
+        if (parameters.size() < numOfPlaceholders) {
+            throw new IllegalStateException("Placeholder count is greater than parameter number "
+                    + parameters.size() + " . Cannot convert PreparedStatement to sql query");
+        }
+        Select bound = select.copy();
+        if (bound.getWhere() != null && !bindRecursive(bound.getWhere(), parameters)) {
+            return null;
+        }
+        return bound;
+    }
+
+    private static boolean collectMarkers(Where where, BitSet found) {
+        if (where == null) {
+            return true;
+        }
+        if (where instanceof Condition) {
+            Object value = ((Condition) where).getValue();
+            if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    if (!collectMarker(element, found)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return collectMarker(value, found);
+        }
+        for (Where innerWhere : where.getWheres()) {
+            if (!collectMarkers(innerWhere, found)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return false if the same placeholder is found twice which should never happen */
+    private static boolean collectMarker(Object value, BitSet found) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return true;
+        }
+        if (found.get(index)) {
+            return false;
+        }
+        found.set(index);
+        return true;
+    }
+
+    private static boolean bindRecursive(Where where, List<PreparedStatementParameter> parameters) {
+        if (where instanceof Condition) {
+            Condition condition = (Condition) where;
+            Object value = condition.getValue();
+            if (value instanceof Object[]) {
+                Object[] values = ((Object[]) value).clone();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = bindValue(values[i], parameters);
+                    if (values[i] == UNBINDABLE) {
+                        return false;
+                    }
+                }
+                condition.setValue(values);
+            } else {
+                Object boundValue = bindValue(value, parameters);
+                if (boundValue == UNBINDABLE) {
+                    return false;
+                }
+                condition.setValue(boundValue);
+            }
+            return true;
+        }
+        for (Where innerWhere : where.getWheres()) {
+            if (!bindRecursive(innerWhere, parameters)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bind parameter as the same type WhereParser produces from the literal substituted for it:
+     * integer literal within int range is parsed as Integer, otherwise as Long, and decimal as Double.
+     */
+    private static Object bindValue(Object value, List<PreparedStatementParameter> parameters) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return value;
+        }
+        Object paramValue = parameters.get(index).getValue();
+        if (paramValue instanceof Long) {
+            long longValue = (Long) paramValue;
+            if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                return (int) longValue;
+            }
+            return paramValue;
+        }
+        if (paramValue instanceof Double && Double.isFinite((Double) paramValue)) {
+            return paramValue;
+        }
+        if (paramValue instanceof String) {
+            return paramValue;
+        }
+        return UNBINDABLE;
+    }
+
+    private static int indexOf(Object value) {
+        if (!(value instanceof String)) {
+            return -1;
+        }
+        String str = (String) value;
+        if (!str.startsWith(MARKER_PREFIX) || !str.endsWith(MARKER_SUFFIX)
+                || str.length() <= MARKER_PREFIX.length() + MARKER_SUFFIX.length()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(str.substring(MARKER_PREFIX.length(), str.length() - MARKER_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.query;
+
+import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.request.PreparedStatementRequest;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server side prepared statements. Template of prepared statement is parsed and rewritten once and
+ * parameters are bound into the Select prepared on each execution. Prepared Select is cached by template
+ * normalized plus metadata version, so both statement prepared explicitly and request with query and
+ * parameters in the same template share it. Template which cannot be bound into WHERE falls back to
+ * substituting parameters into SQL text and parsing on each execution.
+ */
+public class PreparedStatementCache {
+
+    private static final Logger LOG = LogManager.getLogger(PreparedStatementCache.class);
+
+    /** Max number of statement ids kept and idle time before a statement id expires */
+    private static final int MAX_STATEMENTS = 10_000;
+    private static final long STATEMENT_EXPIRE_MINUTES = 60;
+
+    private static final PreparedStatementCache INSTANCE = new PreparedStatementCache();
+
+    /** Statement id to template which is small and kept even if prepared Select is evicted */
+    private final Cache<String, String> statements = CacheBuilder.newBuilder()
+        .maximumSize(MAX_STATEMENTS)
+        .expireAfterAccess(STATEMENT_EXPIRE_MINUTES, TimeUnit.MINUTES)
+        .build();
+
+    /** Null until configured on node start, so that templates are parsed on each execution by default */
+    private volatile Cache<String, Optional<PreparedSelect>> templates;
+
+    private PreparedStatementCache() {
+    }
+
+    public static PreparedStatementCache getInstance() {
+        return INSTANCE;
+    }
+
+    public void configure(Settings settings) {
+        int size = ParsedQueryCache.QUERY_CACHE_SIZE.get(settings);
+        templates = (size > 0) ? CacheBuilder.newBuilder().maximumSize(size).recordStats().build() : null;
+        LocalClusterState.state().addMetadataChangeListener(this::invalidateAll);
+    }
+
+    /**
+     * Parse and rewrite the template into prepared Select if bindable and register a statement for it.
+     * @param client        ES client
+     * @param sqlTemplate   SQL template with placeholders
+     * @return              statement id
+     */
+    public String prepare(Client client, String sqlTemplate) throws Exception {
+        getPrepared(client, sqlTemplate, countPlaceholders(sqlTemplate));
+
+        String statementId = UUIDs.base64UUID();
+        statements.put(statementId, sqlTemplate);
+        return statementId;
+    }
+
+    /**
+     * @param statementId   statement id returned on prepare
+     * @return              SQL template of the statement
+     */
+    public String getStatement(String statementId) {
+        String sqlTemplate = statements.getIfPresent(statementId);
+        if (sqlTemplate == null) {
+            throw new IllegalArgumentException(
+                "Prepared statement [" + statementId + "] not found, it may have expired and need to be prepared again");
+        }
+        return sqlTemplate;
+    }
+
+    /**
+     * @param client    ES client
+     * @param request   prepared statement request
+     * @return          query action with parameters bound into prepared Select, or null if not bindable
+     */
+    public QueryAction bind(Client client, PreparedStatementRequest request) throws Exception {
+        String sqlTemplate = request.getPreparedStatement();
+        PreparedSelect prepared = getPrepared(client, sqlTemplate, countPlaceholders(sqlTemplate));
+        if (prepared == null) {
+            return null;
+        }
+        Select bound = prepared.bind(request.getParameters());
+        if (bound == null) {
+            return null;
+        }
+        return ESActionFactory.handleSelect(client, bound);
+    }
+
+    public void invalidateAll() {
+        Cache<String, Optional<PreparedSelect>> current = templates;
+        if (current != null) {
+            current.invalidateAll();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("statements", statements.size());
+        Cache<String, Optional<PreparedSelect>> current = templates;
+        if (current != null) {
+            CacheStats cacheStats = current.stats();
+            stats.put("size", current.size());
+            stats.put("hit_count", cacheStats.hitCount());
+            stats.put("miss_count", cacheStats.missCount());
+            stats.put("eviction_count", cacheStats.evictionCount());
+        }
+        return stats;
+    }
+
+    private PreparedSelect getPrepared(Client client, String sqlTemplate, int numOfPlaceholders) throws Exception {
+        Cache<String, Optional<PreparedSelect>> current = templates;
+        if (current == null) {
+            return null;
+        }
+
+        String key = LocalClusterState.state().getMetadataVersion() + ":" + ParsedQueryCache.normalize(sqlTemplate);
+        try {
+            return current.get(key, () -> Optional.ofNullable(parse(client, sqlTemplate, numOfPlaceholders))).orElse(null);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private PreparedSelect parse(Client client, String sqlTemplate, int numOfPlaceholders) throws Exception {
+        String sql = PreparedStatementRequest.substituteParameters(
+            sqlTemplate, index -> "'" + PreparedSelect.marker(index) + "'");
+        if (!sql.trim().toUpperCase().startsWith("SELECT")) {
+            return null;
+        }
+
+        QueryAction queryAction;
+        try {
+            queryAction = ESActionFactory.create(client, sql);
+        } catch (Exception e) {
+            // Placeholder at somewhere a string literal is not allowed (ex. LIMIT ?) fails parsing
+            LOG.debug("Failed to prepare template, fall back to parse on each execution: " + sqlTemplate, e);
+            return null;
+        }
+
+        Select select = queryAction.getQueryStatement() instanceof Select
+            ? (Select) queryAction.getQueryStatement() : null;
+        if (select == null || !(queryAction instanceof DefaultQueryAction || queryAction instanceof AggregationQueryAction)) {
+            return null;
+        }
+        return PreparedSelect.of(select, numOfPlaceholders);
+    }
+
+    private static int countPlaceholders(String sqlTemplate) {
+        int[] count = {0};
+        PreparedStatementRequest.substituteParameters(sqlTemplate, index -> {
+            count[0] = index + 1;
+            return "?";
+        });
+        return count[0];
+    }
+
+}
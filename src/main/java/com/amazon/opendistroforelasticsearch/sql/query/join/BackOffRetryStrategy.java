@@ -17,62 +17,42 @@ package com.amazon.opendistroforelasticsearch.sql.query.join;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.elasticsearch.common.collect.Tuple;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.IdentityHashMap;
-import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Predicate;
 
 public class BackOffRetryStrategy {
 
     private final static Logger LOG = LogManager.getLogger();
 
-    /** Interval (ms) between each retry */
-    private final static long[] intervals = milliseconds(new double[]{4, 8+4, 16+4});
+    /**
+     * Interval (ms) between each retry
+     */
+    private final static long[] intervals = milliseconds(new double[]{4, 8 + 4, 16 + 4});
 
     /** Delta to randomize interval (ms) */
     private final static long delta = 4 * 1000;
 
     private final static int threshold = 85;
 
-    private static IdentityHashMap<Object, Tuple<Long, Long>> memUse = new IdentityHashMap<>();
-
-    private static AtomicLong mem = new AtomicLong(0L);
-
-    private static long lastTimeoutCleanTime = System.currentTimeMillis();
-
-    private final static long RELTIMEOUT = 1000 * 60 * 30;
-
-    private final static int MAXRETRIES = 999;
-
-    private final static Object obj = new Object();
-
     private BackOffRetryStrategy() {
 
     }
 
-    private static boolean isMemoryHealthy() {
-        final long freeMemory = Runtime.getRuntime().freeMemory();
-        final long totalMemory = Runtime.getRuntime().totalMemory();
-        final int memoryUsage = (int) Math.round((double) (totalMemory - freeMemory + mem.get()) / (double) totalMemory * 100);
-
-        LOG.debug("[MCB1] Memory total, free, allocate: {}, {}, {}", totalMemory, freeMemory, mem.get());
-        LOG.debug("[MCB1] Memory usage and limit: {}%, {}%", memoryUsage, threshold);
-
-        return memoryUsage < threshold;
-    }
-
+    /**
+     * Check memory usage of JVM with back off retry, for queries already running which
+     * should survive transient spike of memory usage.
+     *
+     * @return  true if memory usage is below threshold within retries
+     */
     public static boolean isHealthy() {
         for (int i = 0; i < intervals.length; i++) {
             if (isMemoryHealthy()) {
                 return true;
             }
 
-            LOG.warn("[MCB1] Memory monitor is unhealthy now, back off retrying: {} attempt, thread id = {}", i, Thread.currentThread().getId());
+            LOG.warn("[MCB1] Memory monitor is unhealthy now, back off retrying: {} attempt, thread id = {}",
+                     i, Thread.currentThread().getId());
             if (ThreadLocalRandom.current().nextBoolean()) {
                 LOG.warn("[MCB1] Directly abort on idx {}.", i);
                 return false;
@@ -82,55 +62,21 @@ public class BackOffRetryStrategy {
         return isMemoryHealthy();
     }
 
-    private static boolean isMemoryHealthy(long allocateMemory, int idx, Object key) {
-        long logMem = mem.get();
-
-        releaseTimeoutMemory();
-        if (idx == 0 && allocateMemory > 0) {
-            logMem = mem.addAndGet(allocateMemory);
-            synchronized (BackOffRetryStrategy.class) {
-                if (memUse.containsKey(key)) {
-                    memUse.put(key, Tuple.tuple(memUse.get(key).v1(), memUse.get(key).v2() + allocateMemory));
-                } else {
-                    memUse.put(key, Tuple.tuple(System.currentTimeMillis(), allocateMemory));
-                }
-            }
-        }
-
+    /**
+     * Check memory usage of JVM without blocking, for admission control which parks queries
+     * instead of sleeping the caller thread.
+     *
+     * @return  true if memory usage is below threshold
+     */
+    public static boolean isMemoryHealthy() {
         final long freeMemory = Runtime.getRuntime().freeMemory();
         final long totalMemory = Runtime.getRuntime().totalMemory();
-        final int memoryUsage = (int) Math.round((double) (totalMemory - freeMemory + logMem) / (double) totalMemory * 100);
+        final int memoryUsage = (int) Math.round((double) (totalMemory - freeMemory) / (double) totalMemory * 100);
 
-        LOG.debug("[MCB] Idx is {}", idx);
-        LOG.debug("[MCB] Memory total, free, allocate: {}, {}, {}, {}", totalMemory, freeMemory, allocateMemory, logMem);
-        LOG.debug("[MCB] Memory usage and limit: {}%, {}%", memoryUsage, threshold);
+        LOG.debug("[MCB1] Memory total, free: {}, {}", totalMemory, freeMemory);
+        LOG.debug("[MCB1] Memory usage and limit: {}%, {}%", memoryUsage, threshold);
 
         return memoryUsage < threshold;
-
-    }
-
-    private static boolean isHealthy(Object key) {
-        return isHealthy(0L, key);
-    }
-
-    public static boolean isHealthy(long allocateMemory, Object key) {
-        if (key == null) {
-            key = obj;
-        }
-
-        for (int i = 0; i < intervals.length; i++) {
-            if (isMemoryHealthy(allocateMemory, i, key)) {
-                return true;
-            }
-
-            LOG.warn("[MCB] Memory monitor is unhealthy now, back off retrying: {} attempt, executor = {}, thread id = {}", i, key, Thread.currentThread().getId());
-            if (ThreadLocalRandom.current().nextBoolean()) {
-                LOG.warn("[MCB] Directly abort on idx {}, executor is {}.", i, key);
-                return false;
-            }
-            backOffSleep(intervals[i]);
-        }
-        return isMemoryHealthy(allocateMemory, MAXRETRIES, key);
     }
 
     public static void backOffSleep(long interval) {
@@ -166,44 +112,4 @@ public class BackOffRetryStrategy {
                 mapToLong((second) -> (long) (1000 * second)).
                 toArray();
     }
-
-    public static void releaseMem(Object key) {
-        LOG.debug("[MCB] mem is {} before release", mem);
-        long v = 0L;
-        synchronized (BackOffRetryStrategy.class) {
-            if (memUse.containsKey(key)) {
-                v = memUse.get(key).v2();
-                memUse.remove(key);
-            }
-        }
-        if (v > 0) {
-            atomicMinusLowBoundZero(mem, v);
-        }
-        LOG.debug("[MCB] mem is {} after release", mem);
-    }
-
-    private static void releaseTimeoutMemory() {
-        long cur = System.currentTimeMillis();
-        if (cur - lastTimeoutCleanTime < RELTIMEOUT) {
-            return;
-        }
-
-        List<Long> bulks = new ArrayList<>();
-        Predicate<Tuple<Long, Long>> isTimeout = t -> cur - t.v1() > RELTIMEOUT;
-        synchronized (BackOffRetryStrategy.class) {
-            memUse.values().stream().filter(isTimeout).forEach(v -> bulks.add(v.v2()));
-            memUse.values().removeIf(isTimeout);
-        }
-
-        for (long v : bulks) {
-            atomicMinusLowBoundZero(mem, v);
-        }
-
-        lastTimeoutCleanTime = cur;
-    }
-
-    private static void atomicMinusLowBoundZero(AtomicLong x, Long y) {
-        long memRes = x.addAndGet(-y);
-        if (memRes < 0) x.compareAndSet(memRes, 0L);
-    }
 }
@@ -102,6 +102,31 @@ public abstract class ESJoinQueryAction extends QueryAction {
                         queryPlannerConfig(requestBuilder).configureTimeOut(hint.getParams());
                     }
                     break;
+                case JOIN_SCROLL_SLICES:
+                    if (requestBuilder instanceof HashJoinQueryPlanRequestBuilder) {
+                        queryPlannerConfig(requestBuilder).configureScrollSlices(hint.getParams());
+                    }
+                    break;
+                case JOIN_ASYNC_PREFETCH:
+                    if (requestBuilder instanceof HashJoinQueryPlanRequestBuilder) {
+                        queryPlannerConfig(requestBuilder).configureAsyncPrefetch(true);
+                    }
+                    break;
+                case JOIN_SPILL_TO_DISK:
+                    if (requestBuilder instanceof HashJoinQueryPlanRequestBuilder) {
+                        queryPlannerConfig(requestBuilder).configureSpillToDisk(true);
+                    }
+                    break;
+                case JOIN_SORT_BUFFER_SIZE:
+                    if (requestBuilder instanceof HashJoinQueryPlanRequestBuilder) {
+                        queryPlannerConfig(requestBuilder).configureSortBufferSize(hint.getParams());
+                    }
+                    break;
+                case JOIN_PARALLEL_PROBE:
+                    if (requestBuilder instanceof HashJoinQueryPlanRequestBuilder) {
+                        queryPlannerConfig(requestBuilder).configureProbeParallelism(hint.getParams());
+                    }
+                    break;
             }
         }
     }
@@ -16,6 +16,7 @@
 package com.amazon.opendistroforelasticsearch.sql.query.planner;
 
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.QueryPlanner;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
 import org.elasticsearch.client.Client;
 import com.amazon.opendistroforelasticsearch.sql.request.SqlRequest;
 import com.amazon.opendistroforelasticsearch.sql.query.join.HashJoinElasticRequestBuilder;
@@ -44,17 +45,25 @@ public class HashJoinQueryPlanRequestBuilder extends HashJoinElasticRequestBuild
         this.config = new Config();
     }
 
+    /**
+     * Explain is called in network thread, so the plan is built without index statistics
+     * which would otherwise block the thread on round trips to cluster.
+     */
     @Override
     public String explain() {
-        return plan().explain();
+        return plan(new Stats(client, false)).explain();
     }
 
     /**
-     * Planning for the query and create planner for explain/execute later.
+     * Planning for the query and create planner for execute later.
      *
      * @return  query planner
      */
     public QueryPlanner plan() {
+        return plan(new Stats(client));
+    }
+
+    private QueryPlanner plan(Stats stats) {
         config.configureLimit(
             getTotalLimit(),
             getFirstTable().getHintLimit(),
@@ -70,7 +79,8 @@ public class HashJoinQueryPlanRequestBuilder extends HashJoinElasticRequestBuild
                 getSecondTable(),
                 getJoinType(),
                 getT1ToT2FieldsComparison()
-            )
+            ),
+            stats
         );
     }
 
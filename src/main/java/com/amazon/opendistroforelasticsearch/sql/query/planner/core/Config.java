@@ -15,7 +15,6 @@
 
 package com.amazon.opendistroforelasticsearch.sql.query.planner.core;
 
-import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.AdaptiveBlockSize;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize.FixedBlockSize;
 
@@ -30,12 +29,24 @@ public class Config {
     public static final double[] DEFAULT_BACK_OFF_RETRY_INTERVALS = {4, 8+4, 16+4};
     public static final int DEFAULT_TIME_OUT = 60;
 
-    /** Block size for join algorithm */
+    /** Number of slices for scroll. 0 means using number of primary shards of the index if it is large enough */
+    public static final int DEFAULT_SCROLL_SLICES = 0;
+
+    /** Max number of rows sorted in memory. Larger input is sorted externally with runs spilled to disk */
+    public static final int DEFAULT_SORT_BUFFER_SIZE = 100000;
+
+    /** Block size for join algorithm, also used as initial size if adaptive */
     private BlockSize blockSize = new FixedBlockSize(DEFAULT_BLOCK_SIZE);
 
+    /** Calculate block size by memory available and row size at runtime */
+    private boolean isAdaptiveBlockSize = false;
+
     /** Page size for scroll on each index */
     private Integer[] scrollPageSizes = {DEFAULT_SCROLL_PAGE_SIZE, DEFAULT_SCROLL_PAGE_SIZE};
 
+    /** Number of slices for sliced scroll on each index */
+    private Integer[] scrollSlices = {DEFAULT_SCROLL_SLICES, DEFAULT_SCROLL_SLICES};
+
     /** Circuit breaker trigger limit (percentage) */
     private Integer circuitBreakLimit = DEFAULT_CIRCUIT_BREAK_LIMIT;
 
@@ -55,6 +66,18 @@ public class Config {
     /** Total time out (seconds) for the execution */
     private int timeout = DEFAULT_TIME_OUT;
 
+    /** Max number of rows sorted in memory */
+    private int sortBufferSize = DEFAULT_SORT_BUFFER_SIZE;
+
+    /** Prefetch next batch asynchronously while current batch being consumed */
+    private boolean isAsyncPrefetch = false;
+
+    /** Spill both sides to local disk and join partition by partition */
+    private boolean isSpillToDisk = false;
+
+    /** Number of threads to probe hash table in parallel. Non-positive value means probing in current thread */
+    private int probeParallelism = 0;
+
 
     public BlockSize blockSize() {
         return blockSize;
@@ -65,13 +88,18 @@ public class Config {
             Integer size = (Integer) params[0];
             if (size > 0) {
                 blockSize = new FixedBlockSize(size);
+                isAdaptiveBlockSize = false;
             }
             else {
-                blockSize = new AdaptiveBlockSize(0);
+                isAdaptiveBlockSize = true;
             }
         }
     }
 
+    public boolean isAdaptiveBlockSize() {
+        return isAdaptiveBlockSize;
+    }
+
     public Integer[] scrollPageSize() {
         return scrollPageSizes;
     }
@@ -88,6 +116,22 @@ public class Config {
         }
     }
 
+    public Integer[] scrollSlices() {
+        return scrollSlices;
+    }
+
+    public void configureScrollSlices(Object[] params) {
+        if (params.length == 1) {
+            scrollSlices = new Integer[]{
+                (Integer) params[0],
+                (Integer) params[0]
+            };
+        }
+        else if (params.length >= 2) {
+            scrollSlices = (Integer[]) params;
+        }
+    }
+
     public int circuitBreakLimit() {
         return circuitBreakLimit;
     }
@@ -150,4 +194,40 @@ public class Config {
     public int timeout() {
         return timeout;
     }
+
+    public void configureSortBufferSize(Object[] params) {
+        if (params.length > 0) {
+            sortBufferSize = (Integer) params[0];
+        }
+    }
+
+    public int sortBufferSize() {
+        return sortBufferSize;
+    }
+
+    public void configureAsyncPrefetch(boolean isAsyncPrefetch) {
+        this.isAsyncPrefetch = isAsyncPrefetch;
+    }
+
+    public boolean isAsyncPrefetch() {
+        return isAsyncPrefetch;
+    }
+
+    public void configureProbeParallelism(Object[] params) {
+        if (params.length > 0) {
+            probeParallelism = (Integer) params[0];
+        }
+    }
+
+    public int probeParallelism() {
+        return probeParallelism;
+    }
+
+    public void configureSpillToDisk(boolean isSpillToDisk) {
+        this.isSpillToDisk = isSpillToDisk;
+    }
+
+    public boolean isSpillToDisk() {
+        return isSpillToDisk;
+    }
 }
@@ -16,6 +16,7 @@
 package com.amazon.opendistroforelasticsearch.sql.query.planner.core;
 
 import org.elasticsearch.client.Client;
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
 import com.amazon.opendistroforelasticsearch.sql.executor.join.MetaSearchResult;
 import org.elasticsearch.search.SearchHit;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.explain.Explanation;
@@ -25,9 +26,16 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Physical
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.ResourceManager;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.CLIENT;
+import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.MEMORY_ACCOUNT;
+import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.PREFETCH_EXECUTOR;
+import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.PROBE_EXECUTOR;
+import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.PROBE_PARALLELISM;
 import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.RESOURCE_MANAGER;
 import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.TIMEOUT;
 
@@ -36,6 +44,9 @@ import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.Execu
  */
 public class QueryPlanner {
 
+    /** Number of processors which bounds both the shared probe pool and parallelism hint of each query */
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
     /** Connection to ElasticSearch */
     private final Client client;
 
@@ -56,12 +67,16 @@ public class QueryPlanner {
 
 
     public QueryPlanner(Client client, Config config, QueryParams params) {
+        this(client, config, params, new Stats(client));
+    }
+
+    public QueryPlanner(Client client, Config config, QueryParams params, Stats stats) {
         this.client = client;
         this.config =  config;
-        this.stats = new Stats(client);
+        this.stats = stats;
         this.resourceMgr = new ResourceManager(stats, config);
 
-        logicalPlan = new LogicalPlan(config, params);
+        logicalPlan = new LogicalPlan(config, params, stats);
         logicalPlan.optimize();
 
         physicalPlan = new PhysicalPlan(logicalPlan);
@@ -73,11 +88,40 @@ public class QueryPlanner {
      * @return  response of the execution
      */
     public List<SearchHit> execute() {
+        List<SearchHit> hits = new ArrayList<>();
+        execute(hits::add);
+        return hits;
+    }
+
+    /**
+     * Execute query plan and pass each result hit to consumer as soon as it is yielded
+     * @param consumer  consumer of result hits
+     */
+    public void execute(Consumer<SearchHit> consumer) {
         ExecuteParams params = new ExecuteParams();
         params.add(CLIENT, client);
         params.add(TIMEOUT, config.timeout());
         params.add(RESOURCE_MANAGER, resourceMgr);
-        return physicalPlan.execute(params);
+        params.add(MEMORY_ACCOUNT, QueryMemoryAccount.current());
+        if (config.isAsyncPrefetch()) {
+            params.add(PREFETCH_EXECUTOR, client.threadPool().generic());
+        }
+
+        int probeParallelism = Math.min(config.probeParallelism(), PROCESSORS);
+        if (probeParallelism > 1) {
+            params.add(PROBE_EXECUTOR, ProbePoolHolder.POOL);
+            params.add(PROBE_PARALLELISM, probeParallelism);
+        }
+
+        physicalPlan.execute(params, consumer);
+    }
+
+    /**
+     * Pool shared by all queries on the node to probe hash table in parallel, created on first use.
+     * Bounded by number of processors so concurrent queries with parallel probe hint cannot oversubscribe CPU.
+     */
+    private static class ProbePoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(PROCESSORS);
     }
 
     /**
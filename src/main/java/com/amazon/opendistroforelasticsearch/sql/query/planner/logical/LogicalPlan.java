@@ -17,11 +17,13 @@ package com.amazon.opendistroforelasticsearch.sql.query.planner.logical;
 
 import com.amazon.opendistroforelasticsearch.sql.domain.Field;
 import com.amazon.opendistroforelasticsearch.sql.domain.Order;
+import com.amazon.opendistroforelasticsearch.sql.domain.Where;
 import com.amazon.opendistroforelasticsearch.sql.query.join.TableInJoinRequestBuilder;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.Plan;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Sort;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Top;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.rule.SelectionPushDown;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.rule.TopNSortPushDown;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.Config;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.QueryParams;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Filter;
@@ -31,6 +33,12 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Join
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Project;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.TableScan;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.rule.ProjectionPushDown;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.IndexStats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.AdaptiveBlockSize;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,18 +61,23 @@ public class LogicalPlan implements Plan {
     /** Parameters */
     private final QueryParams params;
 
+    /** Statistics collector for index statistics used in cost estimation */
+    private final Stats stats;
+
     /** Root node of logical query plan tree */
     private final LogicalOperator root;
 
     /** Transformation rule */
     private final List<LogicalPlanVisitor> rules = Arrays.asList(
         new SelectionPushDown(), //Enforce this run first to simplify Group. Avoid this order dependency in future.
-        new ProjectionPushDown()
+        new ProjectionPushDown(),
+        new TopNSortPushDown()
     );
 
-    public LogicalPlan(Config config, QueryParams params) {
+    public LogicalPlan(Config config, QueryParams params, Stats stats) {
         this.config = config;
         this.params = params;
+        this.stats = stats;
         this.root = buildPlanTree();
     }
 
@@ -88,11 +101,13 @@ public class LogicalPlan implements Plan {
                     filter(
                         join(
                             top(
-                                group(params.firstRequest(), config.scrollPageSize()[0]),
+                                group(params.firstRequest(), config.scrollPageSize()[0],
+                                      config.scrollSlices()[0], joinKeyNames(true)),
                                 config.tableLimit1()
                             ),
                             top(
-                                group(params.secondRequest(), config.scrollPageSize()[1]),
+                                group(params.secondRequest(), config.scrollPageSize()[1],
+                                      config.scrollSlices()[1], joinKeyNames(false)),
                                 config.tableLimit2()
                             )
                         )
@@ -140,7 +155,7 @@ public class LogicalPlan implements Plan {
         if (orderByColNames.isEmpty()) {
             return next;
         }
-        return new Sort(next, orderByColNames, orderByType);
+        return new Sort(next, orderByColNames, orderByType, config.sortBufferSize());
     }
 
     private LogicalOperator filter(LogicalOperator next) {
@@ -156,11 +171,20 @@ public class LogicalPlan implements Plan {
             left, right,
             params.joinType(),
             groupJoinConditionByOr(),
-            config.blockSize(),
-            config.isUseTermsFilterOptimization()
+            blockSize(),
+            config.isUseTermsFilterOptimization(),
+            config.isSpillToDisk()
         );
     }
 
+    /** Adaptive block size keeps track of rows measured so it is created for each query plan */
+    private BlockSize blockSize() {
+        if (config.isAdaptiveBlockSize()) {
+            return new AdaptiveBlockSize(config.blockSize().size(), config.circuitBreakLimit(), stats);
+        }
+        return config.blockSize();
+    }
+
     /** Group conditions in ON by OR because it makes hash table group be required too */
     private JoinCondition groupJoinConditionByOr() {
         String leftTableAlias = params.firstRequest().getAlias();
@@ -190,8 +214,36 @@ public class LogicalPlan implements Plan {
         return orCond;
     }
 
-    private LogicalOperator group(TableInJoinRequestBuilder request, int pageSize) {
-        return new Group(new TableScan(request, pageSize));
+    private LogicalOperator group(TableInJoinRequestBuilder request, int pageSize,
+                                  int numOfSlices, String[] joinKeyNames) {
+        String indexName = request.getOriginalSelect().getFrom().get(0).getIndex();
+        IndexStats indexStats = stats.collectIndexStats(indexName, joinKeyNames);
+        // Doc count of index is exact already if no WHERE on the table, so no need to count again
+        if (indexStats.isKnown() && hasWhere(request)) {
+            indexStats = indexStats.filteredBy(stats.countHits(indexName, queryOf(request)));
+        }
+        return new Group(new TableScan(request, pageSize, numOfSlices, indexStats));
+    }
+
+    private boolean hasWhere(TableInJoinRequestBuilder request) {
+        Where where = request.getOriginalSelect().getWhere();
+        return where != null && !where.getWheres().isEmpty();
+    }
+
+    /** Query of table including WHERE conditions on it only, or null if none */
+    private QueryBuilder queryOf(TableInJoinRequestBuilder request) {
+        SearchSourceBuilder source = request.getRequestBuilder().request().source();
+        return (source == null) ? null : source.query();
+    }
+
+    /** Column names of first group of conditions in ON on either side which are used to estimate join size */
+    private String[] joinKeyNames(boolean isFirstTable) {
+        if (params.joinConditions().isEmpty()) {
+            return new String[0];
+        }
+        return params.joinConditions().get(0).stream().
+                                       map(cond -> (isFirstTable ? cond.getKey() : cond.getValue()).getName()).
+                                       toArray(String[]::new);
     }
 
     private List<TableInJoinRequestBuilder> getRequests() {
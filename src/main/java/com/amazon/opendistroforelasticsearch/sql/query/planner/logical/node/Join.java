@@ -18,9 +18,16 @@ package com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.LogicalOperator;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join.BlockHashJoin;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join.GraceHashJoin;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join.SortMergeJoin;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.Scroll;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.SearchHitRowCodec;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import static com.alibaba.druid.sql.ast.statement.SQLJoinTableSource.JoinType;
@@ -45,19 +52,24 @@ public class Join implements LogicalOperator {
     /** Use terms filter optimization or not */
     private final boolean isUseTermsFilterOptimization;
 
+    /** Spill both sides to local disk by grace hash join or not */
+    private final boolean isSpillToDisk;
+
 
     public Join(LogicalOperator left,
                 LogicalOperator right,
                 JoinType joinType,
                 JoinCondition condition,
                 BlockSize blockSize,
-                boolean isUseTermsFilterOptimization) {
+                boolean isUseTermsFilterOptimization,
+                boolean isSpillToDisk) {
         this.left = left;
         this.right = right;
         this.type = joinType;
         this.condition = condition;
         this.blockSize = blockSize;
         this.isUseTermsFilterOptimization = isUseTermsFilterOptimization;
+        this.isSpillToDisk = isSpillToDisk;
     }
 
     @Override
@@ -69,12 +81,65 @@ public class Join implements LogicalOperator {
     public <T> PhysicalOperator[] toPhysical(Map<LogicalOperator, PhysicalOperator<T>> optimalOps) {
         PhysicalOperator<T> optimalLeft = optimalOps.get(left);
         PhysicalOperator<T> optimalRight = optimalOps.get(right);
-        return new PhysicalOperator[]{
-            new BlockHashJoin<>(
-                optimalLeft, optimalRight, type, condition,
-                blockSize, isUseTermsFilterOptimization
-            )
-        };
+        if (isSpillToDisk && isPartitionedJoinApplicable(optimalLeft, optimalRight)) {
+            return new PhysicalOperator[]{
+                new GraceHashJoin<>(optimalLeft, optimalRight, type, condition, blockSize, SearchHitRowCodec.instance())
+            };
+        }
+
+        List<PhysicalOperator<T>> candidates = new ArrayList<>();
+
+        // Hash join in original order comes first and thus wins if estimated cost is the same, ex. unknown
+        candidates.add(new BlockHashJoin<>(
+            optimalLeft, optimalRight, type, condition,
+            blockSize, isUseTermsFilterOptimization
+        ));
+
+        if (isSwapApplicable()) {
+            candidates.add(new BlockHashJoin<>(
+                optimalRight, optimalLeft, type, condition.swap(),
+                blockSize, isUseTermsFilterOptimization, true
+            ));
+        }
+
+        if (isMergeJoinApplicable(optimalLeft, optimalRight)) {
+            candidates.add(new SortMergeJoin<>(optimalLeft, optimalRight, type, condition, blockSize));
+        }
+        return candidates.toArray(new PhysicalOperator[0]);
+    }
+
+    /**
+     * Build hash table from right side if smaller is only applicable to inner join. Because for left join,
+     * a row from left is known mismatched only after probing all blocks, which is not possible if it's on probe side.
+     */
+    private boolean isSwapApplicable() {
+        return type == JoinType.JOIN || type == JoinType.INNER_JOIN;
+    }
+
+    /**
+     * Merge join and grace hash join are applicable to inner or left join on equality of single AND group,
+     * when both sides are scrolled directly and no terms filter is required to push down from left.
+     */
+    private <T> boolean isPartitionedJoinApplicable(PhysicalOperator<T> optimalLeft, PhysicalOperator<T> optimalRight) {
+        boolean isSupportedType = (type == JoinType.JOIN || type == JoinType.INNER_JOIN || type == JoinType.LEFT_OUTER_JOIN);
+        return isSupportedType
+            && condition.groupSize() == 1
+            && !isUseTermsFilterOptimization
+            && optimalLeft instanceof Scroll
+            && optimalRight instanceof Scroll;
+    }
+
+    /**
+     * Merge join additionally requires join keys of both sides sortable, ex. text field without doc value is not,
+     * and of the same type on both sides. Otherwise, ex. keyword and long, both sides are sorted in different order.
+     */
+    private <T> boolean isMergeJoinApplicable(PhysicalOperator<T> optimalLeft, PhysicalOperator<T> optimalRight) {
+        if (!isPartitionedJoinApplicable(optimalLeft, optimalRight)) {
+            return false;
+        }
+        String[] leftTypes = ((Scroll) optimalLeft).sortTypesOf(condition.leftColumnNames(0));
+        String[] rightTypes = ((Scroll) optimalRight).sortTypesOf(condition.rightColumnNames(0));
+        return leftTypes != null && Arrays.equals(leftTypes, rightTypes);
     }
 
     public JoinCondition conditions() {
@@ -145,6 +210,16 @@ public class Join implements LogicalOperator {
             return rightColumnNames[groupNum];
         }
 
+        /** @return new join condition with left and right swapped */
+        public JoinCondition swap() {
+            JoinCondition swapped = new JoinCondition(rightTableAlias, leftTableAlias, groupSize());
+            for (int i = 0; i < groupSize(); i++) {
+                swapped.addLeftColumnNames(i, rightColumnNames[i]);
+                swapped.addRightColumnNames(i, leftColumnNames[i]);
+            }
+            return swapped;
+        }
+
         @Override
         public String toString() {
             StringBuilder str = new StringBuilder();
@@ -18,7 +18,11 @@ package com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.LogicalOperator;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.SearchHitRowCodec;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.sort.ExternalMergeSort;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.sort.QuickSort;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.sort.TopNSort;
 
 import java.util.List;
 import java.util.Map;
@@ -36,11 +40,18 @@ public class Sort implements LogicalOperator {
     /** Order by type, ex. ASC, DESC */
     private final String orderByType;
 
+    /** Max number of rows sorted in memory */
+    private final int bufferSize;
 
-    public Sort(LogicalOperator next, List<String> orderByColNames, String orderByType) {
+    /** Number of rows to keep if Top pushed down, otherwise 0 means all rows */
+    private int count = 0;
+
+
+    public Sort(LogicalOperator next, List<String> orderByColNames, String orderByType, int bufferSize) {
         this.next = next;
         this.orderByColNames = orderByColNames;
         this.orderByType = orderByType.toUpperCase();
+        this.bufferSize = bufferSize;
     }
 
     @Override
@@ -50,14 +61,39 @@ public class Sort implements LogicalOperator {
 
     @Override
     public <T> PhysicalOperator[] toPhysical(Map<LogicalOperator, PhysicalOperator<T>> optimalOps) {
+        PhysicalOperator<T> optimalNext = optimalOps.get(next);
+        if (count > 0) {
+            return new PhysicalOperator[]{
+                new TopNSort<>(optimalNext, orderByColNames, orderByType, count)
+            };
+        }
+
+        if (isExternalSortRequired(optimalNext)) {
+            return new PhysicalOperator[]{
+                new ExternalMergeSort<>(optimalNext, orderByColNames, orderByType, bufferSize,
+                                        SearchHitRowCodec.instance())
+            };
+        }
         return new PhysicalOperator[]{
-            new QuickSort<>(optimalOps.get(next), orderByColNames, orderByType)
+            new QuickSort<>(optimalNext, orderByColNames, orderByType)
         };
     }
 
+    /** Sort externally only if input estimated exceeds the buffer */
+    private <T> boolean isExternalSortRequired(PhysicalOperator<T> optimalNext) {
+        Cost cost = optimalNext.estimate();
+        return !cost.isInfinite() && cost.inputSize() > bufferSize;
+    }
+
+    /** Keep top N rows only */
+    public void pushDown(Top<?> top) {
+        this.count = top.count();
+    }
+
     @Override
     public String toString() {
-        return "Sort [ columns=" + orderByColNames + " order=" + orderByType + " ]";
+        return "Sort [ columns=" + orderByColNames + " order=" + orderByType
+            + (count > 0 ? " count=" + count : "") + " ]";
     }
 
 }
@@ -20,6 +20,7 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.LogicalOp
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.Scroll;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.IndexStats;
 
 import java.util.Map;
 
@@ -34,9 +35,17 @@ public class TableScan implements LogicalOperator {
     /** Page size for physical operator */
     private final int pageSize;
 
-    public TableScan(TableInJoinRequestBuilder request, int pageSize) {
+    /** Number of slices for physical operator */
+    private final int numOfSlices;
+
+    /** Statistics of the index collected at plan time for cost estimation */
+    private final IndexStats indexStats;
+
+    public TableScan(TableInJoinRequestBuilder request, int pageSize, int numOfSlices, IndexStats indexStats) {
         this.request = request;
         this.pageSize = pageSize;
+        this.numOfSlices = numOfSlices;
+        this.indexStats = indexStats;
     }
 
     @Override
@@ -47,7 +56,7 @@ public class TableScan implements LogicalOperator {
     @Override
     public <T> PhysicalOperator[] toPhysical(Map<LogicalOperator, PhysicalOperator<T>> optimalOps) {
         return new PhysicalOperator[]{
-            new Scroll(request, pageSize)
+            new Scroll(request, pageSize, numOfSlices, indexStats)
         };
     }
 
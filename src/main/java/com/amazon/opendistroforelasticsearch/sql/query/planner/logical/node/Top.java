@@ -67,9 +67,19 @@ public class Top<T> implements LogicalOperator, PhysicalOperator<T> {
         return new PhysicalOperator[]{ new Top<>(optimalOps.get(next), count) };
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public Cost estimate() {
-        return new Cost();
+        Cost cost = ((PhysicalOperator<T>) next).estimate();
+        return new Cost(
+            Math.min(cost.inputSize(), count),
+            Math.min(cost.time(), count) // Stop reading once count reached
+        );
+    }
+
+    /** Number of rows remained to return */
+    public int count() {
+        return count;
     }
 
     @Override
@@ -0,0 +1,51 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.logical.rule;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.LogicalPlanVisitor;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Group;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Sort;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Top;
+
+/**
+ * Push down limit of Top right above Sort so that Sort and Top are fused into top-N sort
+ * which keeps only N rows in memory.
+ */
+public class TopNSortPushDown implements LogicalPlanVisitor {
+
+    /** Top visited most recently which is parent of Sort if any */
+    private Top top;
+
+    @Override
+    public boolean visit(Top top) {
+        this.top = top;
+        return true;
+    }
+
+    @Override
+    public boolean visit(Sort sort) {
+        if (top != null && top.children()[0] == sort) {
+            sort.pushDown(top);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean visit(Group group) {
+        return false; // avoid iterating operators in virtual Group
+    }
+
+}
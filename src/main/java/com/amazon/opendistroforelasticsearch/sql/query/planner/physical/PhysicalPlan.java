@@ -22,11 +22,13 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimati
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.ResourceManager;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.search.SearchHit;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode.Visitor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Physical plan
@@ -61,12 +63,25 @@ public class PhysicalPlan implements Plan {
 
     /** Execute physical plan after verifying if system is healthy at the moment */
     public List<SearchHit> execute(ExecuteParams params) {
+        List<SearchHit> hits = new ArrayList<>();
+        execute(params, hits::add);
+        return hits;
+    }
+
+    /**
+     * Execute physical plan and pass result hit to consumer one by one. Next hit is not pulled from
+     * the operator tree until consumer returns, so no more than one batch of rows is held at a time.
+     */
+    public void execute(ExecuteParams params, Consumer<SearchHit> consumer) {
         if (shouldReject(params)) {
             throw new IllegalStateException("Query request rejected due to insufficient resource");
         }
 
         try (PhysicalOperator<SearchHit> op = root) {
-            return doExecutePlan(op, params);
+            doExecutePlan(op, params, consumer);
+        }
+        catch (CircuitBreakingException e) {
+            throw e;
         }
         catch (Exception e) {
             LOG.error("Error happened during execution", e); // Runtime error or circuit break. Should we return partial result to customer?
@@ -80,19 +95,18 @@ public class PhysicalPlan implements Plan {
     }
 
     /** Execute physical plan in order: open, fetch result, close */
-    private List<SearchHit> doExecutePlan(PhysicalOperator<SearchHit> op,
-                                          ExecuteParams params) throws Exception {
-        List<SearchHit> hits = new ArrayList<>();
+    private void doExecutePlan(PhysicalOperator<SearchHit> op,
+                               ExecuteParams params,
+                               Consumer<SearchHit> consumer) throws Exception {
         op.open(params);
 
         while (op.hasNext()) {
-            hits.add(op.next().data());
-        }
-
-        if (LOG.isTraceEnabled()) {
-            hits.forEach(hit -> LOG.trace("Final result row: {}", hit.getSourceAsMap()));
+            SearchHit hit = op.next().data();
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Final result row: {}", hit.getSourceAsMap());
+            }
+            consumer.accept(hit);
         }
-        return hits;
     }
 
 }
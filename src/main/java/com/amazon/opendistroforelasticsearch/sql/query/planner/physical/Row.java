@@ -60,15 +60,36 @@ public interface Row<T> {
     T data();
 
 
+    /**
+     * Estimate memory footprint of the row for resource planning, such as block size calculation.
+     *
+     * @return  size in bytes or negative value if unknown
+     */
+    default long estimatedSize() {
+        return -1;
+    }
+
+
+    /**
+     * Values the row was sorted by in data source, ex. sort values of SearchHit scrolled in sorted order.
+     *
+     * @return  sort values or empty array if not sorted
+     */
+    default Object[] sortValues() {
+        return new Object[0];
+    }
+
+
     /**
      * Key that help Row be sorted or hashed.
+     * Use factory method of() to create specialized key without array allocation for single or two columns.
      */
     class RowKey implements Comparable<RowKey> {
 
         /** Represent null key if any joined column value is NULL */
         public static final RowKey NULL = null;
 
-        /** Values of row key */
+        /** Values of row key. Null for specialized key which holds values in its own fields */
         private final Object[] keys;
 
         /** Cached hash code since this class is intended to be used by hash table */
@@ -79,6 +100,54 @@ public interface Row<T> {
             this.hashCode = Objects.hash(keys);
         }
 
+        private RowKey(int hashCode) {
+            this.keys = null;
+            this.hashCode = hashCode;
+        }
+
+        /**
+         * Create key for single column value. Integral and floating point numbers are normalized to long and double
+         * so that the same number parsed into different boxed types, ex. Integer and Long, is still equal.
+         */
+        public static RowKey of(Object key) {
+            if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+                return new LongKey(((Number) key).longValue());
+            }
+            if (key instanceof Double || key instanceof Float) {
+                return new DoubleKey(((Number) key).doubleValue());
+            }
+            if (key instanceof String) {
+                return new StringKey((String) key);
+            }
+            return new RowKey(key);
+        }
+
+        /** Create key for two column values, each of which is normalized the same way as single column key */
+        public static RowKey of(Object key1, Object key2) {
+            return new PairKey(normalize(key1), normalize(key2));
+        }
+
+        /** Create key for three or more column values, each of which is normalized the same way as single column key */
+        public static RowKey of(Object... keys) {
+            Object[] normalized = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                normalized[i] = normalize(keys[i]);
+            }
+            return new RowKey(normalized);
+        }
+
+        /** Normalize integral number to long and floating point number to double */
+        private static Object normalize(Object key) {
+            if (key instanceof Integer || key instanceof Short || key instanceof Byte) {
+                return ((Number) key).longValue();
+            }
+            if (key instanceof Float) {
+                return ((Number) key).doubleValue();
+            }
+            return key;
+        }
+
+        /** Note that array is allocated on each call for specialized key */
         public Object[] keys() {
             return keys;
         }
@@ -91,24 +160,34 @@ public interface Row<T> {
         @Override
         public boolean equals(Object other) {
             return other instanceof RowKey &&
+                other.getClass() == getClass() &&
                 Arrays.deepEquals(this.keys, ((RowKey) other).keys);
         }
 
         @SuppressWarnings("unchecked")
         @Override
         public int compareTo(RowKey other) {
+            Object[] keys = keys();
+            Object[] otherKeys = other.keys();
             for (int i = 0; i < keys.length; i++) {
 
                 /*
                  * Only one is null, otherwise (both null or non-null) go ahead.
                  * Always consider NULL is smaller value which means NULL comes last in ASC and first in DESC
                  */
-                if (keys[i] == null ^ other.keys[i] == null) {
+                if (keys[i] == null ^ otherKeys[i] == null) {
                     return keys[i] == null ? 1 : -1;
                 }
 
-                if (keys[i] instanceof Comparable) {
-                    int result = ((Comparable) keys[i]).compareTo(other.keys[i]);
+                if (keys[i] instanceof Number && otherKeys[i] instanceof Number
+                        && keys[i].getClass() != otherKeys[i].getClass()) {
+                    int result = Double.compare(((Number) keys[i]).doubleValue(), ((Number) otherKeys[i]).doubleValue());
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                else if (keys[i] instanceof Comparable) {
+                    int result = ((Comparable) keys[i]).compareTo(otherKeys[i]);
                     if (result != 0) {
                         return result;
                     }
@@ -119,7 +198,141 @@ public interface Row<T> {
 
         @Override
         public String toString() {
-            return "RowKey: " + Arrays.toString(keys);
+            return "RowKey: " + Arrays.toString(keys());
+        }
+
+        /**
+         * Key of single integral value
+         */
+        public static final class LongKey extends RowKey {
+
+            private final long value;
+
+            private LongKey(long value) {
+                super(Long.hashCode(value));
+                this.value = value;
+            }
+
+            public long value() {
+                return value;
+            }
+
+            @Override
+            public Object[] keys() {
+                return new Object[]{ value };
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof LongKey && ((LongKey) other).value == value;
+            }
+
+            @Override
+            public int compareTo(RowKey other) {
+                if (other instanceof LongKey) {
+                    return Long.compare(value, ((LongKey) other).value);
+                }
+                return super.compareTo(other);
+            }
+        }
+
+        /**
+         * Key of single floating point value
+         */
+        public static final class DoubleKey extends RowKey {
+
+            private final double value;
+
+            private DoubleKey(double value) {
+                super(Double.hashCode(value));
+                this.value = value;
+            }
+
+            public double value() {
+                return value;
+            }
+
+            @Override
+            public Object[] keys() {
+                return new Object[]{ value };
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof DoubleKey && Double.compare(((DoubleKey) other).value, value) == 0;
+            }
+
+            @Override
+            public int compareTo(RowKey other) {
+                if (other instanceof DoubleKey) {
+                    return Double.compare(value, ((DoubleKey) other).value);
+                }
+                return super.compareTo(other);
+            }
+        }
+
+        /**
+         * Key of single string value
+         */
+        public static final class StringKey extends RowKey {
+
+            private final String value;
+
+            private StringKey(String value) {
+                super(value.hashCode());
+                this.value = value;
+            }
+
+            public String value() {
+                return value;
+            }
+
+            @Override
+            public Object[] keys() {
+                return new Object[]{ value };
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof StringKey && ((StringKey) other).value.equals(value);
+            }
+
+            @Override
+            public int compareTo(RowKey other) {
+                if (other instanceof StringKey) {
+                    return value.compareTo(((StringKey) other).value);
+                }
+                return super.compareTo(other);
+            }
+        }
+
+        /**
+         * Key of two column values
+         */
+        public static final class PairKey extends RowKey {
+
+            private final Object first;
+            private final Object second;
+
+            private PairKey(Object first, Object second) {
+                super(31 * Objects.hashCode(first) + Objects.hashCode(second));
+                this.first = first;
+                this.second = second;
+            }
+
+            @Override
+            public Object[] keys() {
+                return new Object[]{ first, second };
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                if (!(other instanceof PairKey)) {
+                    return false;
+                }
+                PairKey otherKey = (PairKey) other;
+                return Objects.deepEquals(first, otherKey.first) && Objects.deepEquals(second, otherKey.second);
+            }
         }
 
     }
@@ -0,0 +1,47 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * Binary encoding of row which is required by operators that spill rows out of memory, ex. to local disk.
+ *
+ * @param <T>   data object underlying
+ */
+public interface RowCodec<T> {
+
+    /**
+     * Write row to the output stream
+     *
+     * @param row   row to write
+     * @param out   output stream
+     */
+    void write(Row<T> row, StreamOutput out) throws IOException;
+
+
+    /**
+     * Read next row from input stream
+     *
+     * @param in    input stream
+     * @return      row read
+     */
+    Row<T> read(StreamInput in) throws IOException;
+
+}
@@ -15,19 +15,70 @@
 
 package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation;
 
+/**
+ * Estimated cost of physical operator (including all its children).
+ *
+ *  1) Input size: estimated number of rows produced by the operator
+ *  2) Time: estimated number of rows being read or processed until the operator is exhausted
+ *
+ * Both are saturated at Long.MAX_VALUE which means unknown, ex. no statistics available for table scan.
+ */
 public class Cost implements Comparable<Cost> {
 
-    public static final Cost INFINITY = new Cost();
+    public static final Cost INFINITY = new Cost(Long.MAX_VALUE, Long.MAX_VALUE);
 
-    private long inputSize;
+    private final long inputSize;
 
-    private long time;
+    private final long time;
 
     public Cost() {
+        this(0, 0);
+    }
+
+    public Cost(long inputSize, long time) {
+        this.inputSize = inputSize;
+        this.time = time;
+    }
+
+    public long inputSize() {
+        return inputSize;
+    }
+
+    public long time() {
+        return time;
     }
 
+    public boolean isInfinite() {
+        return inputSize == Long.MAX_VALUE || time == Long.MAX_VALUE;
+    }
+
+    /** Lower time wins. Use input size as tie breaker because smaller intermediate result is preferred */
     @Override
     public int compareTo(Cost o) {
-        return 0;
+        int result = Long.compare(time, o.time);
+        if (result == 0) {
+            result = Long.compare(inputSize, o.inputSize);
+        }
+        return result;
+    }
+
+    /** Saturated addition to avoid overflow when unknown (infinite) cost involved */
+    public static long plus(long a, long b) {
+        long result = a + b;
+        return (result < 0 || a == Long.MAX_VALUE || b == Long.MAX_VALUE) ? Long.MAX_VALUE : result;
+    }
+
+    /** Saturated multiplication to avoid overflow when unknown (infinite) cost involved */
+    public static long times(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        return (a > Long.MAX_VALUE / b) ? Long.MAX_VALUE : a * b;
+    }
+
+    @Override
+    public String toString() {
+        return "Cost [ inputSize=" + (inputSize == Long.MAX_VALUE ? "unknown" : inputSize)
+            + ", time=" + (time == Long.MAX_VALUE ? "unknown" : time) + " ]";
     }
 }
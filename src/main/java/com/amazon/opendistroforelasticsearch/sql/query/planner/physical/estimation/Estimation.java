@@ -20,6 +20,8 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.LogicalOp
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.LogicalPlanVisitor;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Group;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.util.Arrays;
 import java.util.IdentityHashMap;
@@ -33,6 +35,8 @@ import static java.util.Comparator.comparing;
  */
 public class Estimation<T> implements LogicalPlanVisitor {
 
+    private static final Logger LOG = LogManager.getLogger();
+
     /** Optimal physical operator for logical operator based on completed estimation */
     private Map<LogicalOperator, PhysicalOperator<T>> optimalOps = new IdentityHashMap<>();
 
@@ -48,7 +52,14 @@ public class Estimation<T> implements LogicalPlanVisitor {
     @Override
     public void endVisit(PlanNode node) {
         LogicalOperator op = (LogicalOperator) node;
-        PhysicalOperator<T> optimal = Arrays.stream(op.toPhysical(optimalOps)).
+        PhysicalOperator[] candidates = op.toPhysical(optimalOps);
+        if (LOG.isDebugEnabled()) {
+            for (PhysicalOperator candidate : candidates) {
+                LOG.debug("Estimated cost of candidate {}: {}", candidate, candidate.estimate());
+            }
+        }
+
+        PhysicalOperator<T> optimal = Arrays.stream(candidates).
                                              min(comparing(PhysicalOperator::estimate)).
                                              orElseThrow(() -> new IllegalStateException("No optimal operator found: " + op));
         optimalOps.put(op, optimal);
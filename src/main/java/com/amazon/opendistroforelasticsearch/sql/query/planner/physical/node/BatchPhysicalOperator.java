@@ -15,8 +15,10 @@
 
 package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node;
 
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
@@ -25,34 +27,60 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Resource
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.MEMORY_ACCOUNT;
+import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.PREFETCH_EXECUTOR;
 import static com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams.ExecuteParamType.RESOURCE_MANAGER;
 
 /**
  * Abstraction for physical operators that load large volume of data and generally prefetch for efficiency.
+ * If an executor is present in execute params, next batch is prefetched in background while current batch
+ * is being consumed (double buffering).
  * @param <T>
  */
 public abstract class BatchPhysicalOperator<T> implements PhysicalOperator<T> {
 
     protected static final Logger LOG = LogManager.getLogger();
 
+    /** Estimated bytes of a row whose size is unknown */
+    private static final long DEFAULT_ROW_SIZE = 1024;
+
     /** Resource monitor to avoid consuming too much resource */
     private ResourceManager resourceMgr;
 
     /** Current batch of data */
     private Iterator<Row<T>> curBatch;
 
+    /** Executor to prefetch next batch in background. Null means prefetch synchronously */
+    private ExecutorService executor;
+
+    /** Next batch being prefetched in background */
+    private Future<Collection<Row<T>>> nextBatchFuture;
+
+    /** Memory account of the query to charge rows buffered by this operator */
+    private QueryMemoryAccount memoryAccount = QueryMemoryAccount.NOOP;
+
+    /** Bytes charged to memory account by this operator and not released yet */
+    private long chargedBytes;
+
     @Override
     public void open(ExecuteParams params) throws Exception {
         //PhysicalOperator.super.open(params); // Child needs to call this super.open() and open its next node too
         resourceMgr = params.get(RESOURCE_MANAGER);
+        executor = params.get(PREFETCH_EXECUTOR);
+
+        QueryMemoryAccount account = params.get(MEMORY_ACCOUNT);
+        memoryAccount = (account == null) ? QueryMemoryAccount.NOOP : account;
     }
 
     @Override
     public boolean hasNext() {
         if (isNoMoreDataInCurrentBatch()) {
             LOG.debug("{} No more data in current batch, pre-fetching next batch", this);
-            Collection<Row<T>> nextBatch = prefetchSafely();
+            Collection<Row<T>> nextBatch = (executor == null) ? prefetchSafely() : prefetchAsync();
 
             LOG.debug("{} Pre-fetched {} rows", this, nextBatch.size());
             if (LOG.isTraceEnabled()) {
@@ -69,6 +97,99 @@ public abstract class BatchPhysicalOperator<T> implements PhysicalOperator<T> {
         return curBatch.next();
     }
 
+    /**
+     * Wait for background prefetch to complete before releasing resource, otherwise it may
+     * race with close() of subclass and its children. Batch prefetched but not consumed is discarded.
+     */
+    @Override
+    public void close() {
+        if (nextBatchFuture != null) {
+            try {
+                nextBatchFuture.get();
+            }
+            catch (Exception e) {
+                LOG.debug("{} Discard failure of background prefetch on close: {}", this, e.getMessage());
+            }
+            nextBatchFuture = null;
+        }
+        curBatch = null;
+        releaseMemory();
+        PhysicalOperator.super.close();
+    }
+
+    /**
+     * Charge estimated memory of rows buffered by this operator to the memory account of the query.
+     *
+     * @param rows  rows buffered
+     * @return      bytes charged
+     * @throws CircuitBreakingException if memory limit would be exceeded
+     */
+    protected long chargeMemory(Collection<? extends Row<T>> rows) {
+        long bytes = 0;
+        for (Row<T> row : rows) {
+            long size = row.estimatedSize();
+            bytes += (size > 0) ? size : DEFAULT_ROW_SIZE;
+        }
+        memoryAccount.charge(bytes, toString());
+        chargedBytes += bytes;
+        return bytes;
+    }
+
+    /** Release all memory charged by this operator once rows buffered are discarded */
+    protected void releaseMemory() {
+        memoryAccount.release(chargedBytes);
+        chargedBytes = 0;
+    }
+
+    /**
+     * Release part of memory charged by this operator, for operator that discards one of its buffers
+     * while others are still in use.
+     *
+     * @param bytes bytes returned by chargeMemory() for the rows discarded
+     */
+    protected void releaseMemory(long bytes) {
+        long released = Math.min(bytes, chargedBytes);
+        memoryAccount.release(released);
+        chargedBytes -= released;
+    }
+
+    /**
+     * Take the batch prefetched in background (or fetch it now if none) and start fetching
+     * the one after it. Resource and timeout check is still performed by each prefetch.
+     */
+    private Collection<Row<T>> prefetchAsync() {
+        Collection<Row<T>> nextBatch;
+        if (nextBatchFuture == null) {
+            nextBatch = prefetchSafely();
+        } else {
+            nextBatch = awaitNextBatch();
+        }
+
+        if (!nextBatch.isEmpty()) {
+            nextBatchFuture = executor.submit(this::prefetchSafely);
+        }
+        return nextBatch;
+    }
+
+    private Collection<Row<T>> awaitNextBatch() {
+        try {
+            return nextBatchFuture.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for next batch", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to prefetch next batch", e.getCause());
+        }
+        finally {
+            nextBatchFuture = null;
+        }
+    }
+
     /** Prefetch next batch safely by checking resource monitor */
     private Collection<Row<T>> prefetchSafely() {
         Objects.requireNonNull(resourceMgr, "ResourceManager is not set so unable to do sanity check");
@@ -79,6 +200,9 @@ public abstract class BatchPhysicalOperator<T> implements PhysicalOperator<T> {
             try {
                 return prefetch();
             }
+            catch (CircuitBreakingException e) {
+                throw e;
+            }
             catch (Exception e) {
                 throw new IllegalStateException("Failed to prefetch next batch", e);
             }
@@ -0,0 +1,144 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.RowCodec;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Local temp file that rows spilled to. Rows are appended first and then read back (possibly many times)
+ * after writing finished.
+ */
+public class SpillFile<T> {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private final Path path;
+    private final RowCodec<T> codec;
+
+    /** Output stream opened lazily on first write so that no file created for empty partition */
+    private StreamOutput out;
+
+    /** Number of rows written */
+    private long numOfRows = 0;
+
+    public SpillFile(Path path, RowCodec<T> codec) {
+        this.path = path;
+        this.codec = codec;
+    }
+
+    public void write(Row<T> row) throws IOException {
+        if (out == null) {
+            out = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(path)));
+        }
+        codec.write(row, out);
+        numOfRows++;
+    }
+
+    public void finishWrite() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    public boolean isEmpty() {
+        return numOfRows == 0;
+    }
+
+    public Reader<T> openReader() throws IOException {
+        if (isEmpty()) {
+            return new Reader<>(null, codec, 0);
+        }
+        return new Reader<>(
+            new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(path))), codec, numOfRows);
+    }
+
+    public void delete() throws IOException {
+        closeQuietly();
+        Files.deleteIfExists(path);
+    }
+
+    public void closeQuietly() {
+        try {
+            finishWrite();
+        }
+        catch (IOException e) {
+            LOG.debug("Failed to close spill file: " + path, e);
+            out = null;
+        }
+    }
+
+    /**
+     * Iterator over rows in spill file.
+     */
+    public static class Reader<T> implements Iterator<Row<T>>, AutoCloseable {
+
+        private final StreamInput in;
+        private final RowCodec<T> codec;
+        private long remaining;
+
+        private Reader(StreamInput in, RowCodec<T> codec, long numOfRows) {
+            this.in = in;
+            this.codec = codec;
+            this.remaining = numOfRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Row<T> next() {
+            try {
+                Row<T> row = codec.read(in);
+                remaining--;
+                return row;
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("Failed to read row from spill file", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (IOException e) {
+                    LOG.debug("Failed to close reader of spill file", e);
+                }
+            }
+        }
+    }
+
+}
@@ -17,6 +17,7 @@ package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.jo
 
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.Scroll;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.index.query.BoolQueryBuilder;
@@ -25,13 +26,17 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
 
 import static com.alibaba.druid.sql.ast.statement.SQLJoinTableSource.JoinType;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
-import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
 import static com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Join.JoinCondition;
 
 /**
@@ -39,53 +44,258 @@ import static com.amazon.opendistroforelasticsearch.sql.query.planner.logical.no
  */
 public class BlockHashJoin<T> extends JoinAlgorithm<T> {
 
+    /** Max number of right rows read and probed in parallel at a time */
+    private static final int PARALLEL_PROBE_BATCH_SIZE = 1024;
+
+    /** Number of right rows cached before charging them to memory account together */
+    private static final int CHARGE_BATCH_SIZE = 1000;
+
     /** Use terms filter optimization or not */
     private final boolean isUseTermsFilterOptimization;
 
+    /** Is left and right swapped to build hash table from the smaller side */
+    private final boolean isSwapped;
+
+    /**
+     * Rows cached during the first scan of right side. Cache is given up (null) if right turns out
+     * to be larger than a block, or not applicable at all because right is filtered by each block.
+     */
+    private List<Row<T>> rightCache;
+
+    /** Number of right rows cached and charged to memory account so far, and bytes charged for them */
+    private int numOfRightRowsCharged;
+    private long rightCacheBytes;
+
+    /** Is right side cached completely so that it can be replayed without re-scrolling */
+    private boolean isRightCached;
+
+    /** Iterator to replay cached right rows for current block */
+    private Iterator<Row<T>> cachedRight;
+
+    /** Pool shared by queries to probe and combine right rows in parallel, or null if probing in current thread */
+    private ForkJoinPool probeExecutor;
+
+    /** Number of tasks each batch of right rows is split into */
+    private int probeParallelism;
+
     public BlockHashJoin(PhysicalOperator<T> left,
                          PhysicalOperator<T> right,
                          JoinType type,
                          JoinCondition condition,
                          BlockSize blockSize,
                          boolean isUseTermsFilterOptimization) {
+        this(left, right, type, condition, blockSize, isUseTermsFilterOptimization, false);
+    }
+
+    /**
+     * @param isSwapped     true if left and right (and condition) passed in are swapped from the original
+     *                      order in SQL, so that combined rows are flipped back to keep original order
+     */
+    public BlockHashJoin(PhysicalOperator<T> left,
+                         PhysicalOperator<T> right,
+                         JoinType type,
+                         JoinCondition condition,
+                         BlockSize blockSize,
+                         boolean isUseTermsFilterOptimization,
+                         boolean isSwapped) {
         super(left, right, type, condition, blockSize);
 
         this.isUseTermsFilterOptimization = isUseTermsFilterOptimization;
+        this.isSwapped = isSwapped;
     }
 
+    /**
+     * Right side is re-opened and scanned once per block from left:
+     *  time = time(left) + blocks * (time(right) + size(right)), where blocks = ceil(size(left) / block size)
+     * unless right is no larger than a block and thus cached after first scan:
+     *  time = time(left) + time(right) + blocks * size(right)
+     */
     @Override
     public Cost estimate() {
-        return new Cost();
+        Cost leftCost = left.estimate();
+        Cost rightCost = right.estimate();
+        if (leftCost.isInfinite() || rightCost.isInfinite()) {
+            return Cost.INFINITY;
+        }
+
+        long size = Math.max(blockSize.size(), 1);
+        long numOfBlocks = Math.max((leftCost.inputSize() + size - 1) / size, 1);
+        long rightScanTime;
+        if (!isUseTermsFilterOptimization && rightCost.inputSize() <= size) {
+            rightScanTime = Cost.plus(rightCost.time(), Cost.times(numOfBlocks, rightCost.inputSize()));
+        } else {
+            rightScanTime = Cost.times(numOfBlocks, Cost.plus(rightCost.time(), rightCost.inputSize()));
+        }
+        return new Cost(
+            estimateJoinedSize(left, leftCost, right, rightCost, condition),
+            Cost.plus(leftCost.time(), rightScanTime)
+        );
+    }
+
+    @Override
+    public void open(ExecuteParams params) throws Exception {
+        super.open(params);
+        probeExecutor = params.get(ExecuteParams.ExecuteParamType.PROBE_EXECUTOR);
+        if (probeExecutor != null) {
+            probeParallelism = params.get(ExecuteParams.ExecuteParamType.PROBE_PARALLELISM);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        probeExecutor = null;
+        rightCache = null;
+        numOfRightRowsCharged = 0;
+        rightCacheBytes = 0;
+        isRightCached = false;
+        cachedRight = null;
     }
 
+    /**
+     * Replay right rows cached if any. Otherwise re-open right side and start caching its rows
+     * if right is not filtered differently by each block.
+     */
     @Override
     protected void reopenRight() throws Exception {
         Objects.requireNonNull(params, "Execute params is not set so unable to add extra filter");
 
+        if (isRightCached) {
+            LOG.debug("Replay {} right rows cached instead of re-scrolling right", rightCache.size());
+            cachedRight = rightCache.iterator();
+            return;
+        }
+
         if (isUseTermsFilterOptimization) {
             params.add(ExecuteParams.ExecuteParamType.EXTRA_QUERY_FILTER, queryForPushedDownOnConds());
+        } else {
+            rightCache = new ArrayList<>();
         }
         right.open(params);
     }
 
+    @Override
+    protected boolean isAnyMoreDataFromRight() {
+        return (cachedRight != null) ? cachedRight.hasNext() : right.hasNext();
+    }
+
+    @Override
+    protected void closeRight() {
+        if (cachedRight != null) {
+            cachedRight = null;
+            return;
+        }
+
+        right.close();
+        if (rightCache != null) {
+            chargeRightCache();
+            isRightCached = true;
+            LOG.debug("Cached all {} rows from right for subsequent blocks", rightCache.size());
+        }
+    }
+
     @Override
     protected List<CombinedRow<T>> probe() {
+        if (probeExecutor != null) {
+            return probeInParallel();
+        }
+
         List<CombinedRow<T>> combinedRows = new ArrayList<>();
         int totalSize = 0;
 
         /* Return if already found enough matched rows to give ResourceMgr a chance to check resource usage */
-        while (right.hasNext() && totalSize < hashTable.size()) {
-            Row<T> rightRow = right.next();
+        while (isAnyMoreDataFromRight() && totalSize < hashTable.size()) {
+            Row<T> rightRow = nextRowFromRight();
             Collection<Row<T>> matchedLeftRows = hashTable.match(rightRow);
 
             if (!matchedLeftRows.isEmpty()) {
-                combinedRows.add(new CombinedRow<>(rightRow, matchedLeftRows));
+                combinedRows.add(new CombinedRow<>(rightRow, matchedLeftRows, isSwapped));
                 totalSize += matchedLeftRows.size();
             }
         }
         return combinedRows;
     }
 
+    /**
+     * Read a batch of right rows in current thread because right side is not thread safe, then split the batch
+     * into tasks as many as parallelism of the query to probe and combine in the shared pool. The combined rows
+     * are merged in original order and returned to caller which bookkeeps mismatch for outer join in current
+     * thread as usual.
+     */
+    private List<CombinedRow<T>> probeInParallel() {
+        List<Row<T>> batch = new ArrayList<>();
+        while (isAnyMoreDataFromRight() && batch.size() < PARALLEL_PROBE_BATCH_SIZE) {
+            batch.add(nextRowFromRight());
+        }
+
+        int chunkSize = (batch.size() + probeParallelism - 1) / probeParallelism;
+        List<ForkJoinTask<List<CombinedRow<T>>>> tasks = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            List<Row<T>> chunk = batch.subList(from, Math.min(from + chunkSize, batch.size()));
+            tasks.add(probeExecutor.submit(() -> chunk.stream().
+                                                      map(this::probeAndCombine).
+                                                      filter(Objects::nonNull).
+                                                      collect(Collectors.toList())));
+        }
+
+        try {
+            List<CombinedRow<T>> combinedRows = new ArrayList<>();
+            for (ForkJoinTask<List<CombinedRow<T>>> task : tasks) {
+                combinedRows.addAll(task.get());
+            }
+            return combinedRows;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while probing hash table in parallel", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to probe hash table in parallel", e.getCause());
+        }
+    }
+
+    /** Probe hash table which is read-only now and combine matched rows ahead in pool thread */
+    private CombinedRow<T> probeAndCombine(Row<T> rightRow) {
+        Collection<Row<T>> matchedLeftRows = hashTable.match(rightRow);
+        if (matchedLeftRows.isEmpty()) {
+            return null;
+        }
+
+        CombinedRow<T> combinedRow = new CombinedRow<>(rightRow, matchedLeftRows, isSwapped);
+        combinedRow.combine();
+        return combinedRow;
+    }
+
+    /** Read next row from cache or right side. Give up caching once more rows than a block read */
+    private Row<T> nextRowFromRight() {
+        if (cachedRight != null) {
+            return cachedRight.next();
+        }
+
+        Row<T> row = right.next();
+        if (rightCache != null) {
+            if (rightCache.size() < blockSize.size()) {
+                rightCache.add(row);
+                if (rightCache.size() - numOfRightRowsCharged >= CHARGE_BATCH_SIZE) {
+                    chargeRightCache();
+                }
+            } else {
+                LOG.debug("Right is larger than block size {}, give up caching it", blockSize.size());
+                rightCache = null;
+                releaseMemory(rightCacheBytes);
+                numOfRightRowsCharged = 0;
+                rightCacheBytes = 0;
+            }
+        }
+        return row;
+    }
+
+    /** Charge right rows cached since last charge. Cache is kept across blocks so released on give-up or close only */
+    private void chargeRightCache() {
+        rightCacheBytes += chargeMemory(rightCache.subList(numOfRightRowsCharged, rightCache.size()));
+        numOfRightRowsCharged = rightCache.size();
+    }
+
     /** Build query for pushed down conditions in ON */
     private BoolQueryBuilder queryForPushedDownOnConds() {
         BoolQueryBuilder orQuery = boolQuery();
@@ -99,17 +309,22 @@ public class BlockHashJoin<T> extends JoinAlgorithm<T> {
 
             BoolQueryBuilder andQuery = boolQuery();
             rightNameToLeftValues.forEach(
-                (rightName, leftValues) -> andQuery.must(termsQuery(rightName, leftValues))
+                (rightName, leftValues) -> andQuery.must(
+                    RuntimeFilter.filterOf(rightName, leftValues, isKeywordField(right, rightName)))
             );
 
             if (LOG.isTraceEnabled()) {
-                LOG.trace("Terms filter optimization: {}", Strings.toString(andQuery));
+                LOG.trace("Runtime filter optimization: {}", Strings.toString(andQuery));
             }
             orQuery.should(andQuery);
         }
         return orQuery;
     }
 
+    private boolean isKeywordField(PhysicalOperator<T> op, String fieldName) {
+        return op instanceof Scroll && ((Scroll) op).isKeywordField(fieldName);
+    }
+
     /*********************************************
      *          Getters for Explain
      *********************************************/
@@ -117,4 +332,8 @@ public class BlockHashJoin<T> extends JoinAlgorithm<T> {
     public boolean isUseTermsFilterOptimization() {
         return isUseTermsFilterOptimization;
     }
+
+    public boolean isSwapped() {
+        return isSwapped;
+    }
 }
@@ -32,15 +32,29 @@ public class CombinedRow<T> {
     private Row<T> rightRow;
     private Collection<Row<T>> leftRows;
 
+    /** Rows combined, cached once combined because it may be done ahead in probing thread */
+    private List<Row<T>> combinedRows;
+
+    /** Is left and right swapped in join so that right row should be combined first to keep original order */
+    private boolean isSwapped;
+
     public CombinedRow(Row<T> rightRow, Collection<Row<T>> leftRows) {
+        this(rightRow, leftRows, false);
+    }
+
+    public CombinedRow(Row<T> rightRow, Collection<Row<T>> leftRows, boolean isSwapped) {
         this.rightRow = rightRow;
         this.leftRows = leftRows;
+        this.isSwapped = isSwapped;
     }
 
     public List<Row<T>> combine() {
-        List<Row<T>> combinedRows = new ArrayList<>();
-        for (Row<T> leftRow : leftRows) {
-            combinedRows.add(leftRow.combine(rightRow));
+        if (combinedRows == null) {
+            List<Row<T>> rows = new ArrayList<>();
+            for (Row<T> leftRow : leftRows) {
+                rows.add(isSwapped ? rightRow.combine(leftRow) : leftRow.combine(rightRow));
+            }
+            combinedRows = rows;
         }
         return combinedRows;
     }
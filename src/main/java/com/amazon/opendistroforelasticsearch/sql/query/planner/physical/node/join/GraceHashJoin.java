@@ -0,0 +1,325 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Join.JoinCondition;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.RowCodec;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.SpillFile;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.alibaba.druid.sql.ast.statement.SQLJoinTableSource.JoinType;
+import static java.util.Collections.emptyList;
+
+/**
+ * Grace hash join that spills both sides to local temp files partitioned by hash of join key,
+ * and then joins one partition at a time in memory. So rows from both index are scanned exactly once
+ * and memory is bounded by partition size instead of the entire left table.
+ *
+ * If a partition of left is still larger than block size (ex. skewed key), it is joined block by block
+ * with its right partition re-read from local disk only.
+ */
+public class GraceHashJoin<T> extends JoinAlgorithm<T> {
+
+    /** Upper bound of partitions to limit open files and write buffers during partitioning */
+    static final int MAX_NUM_OF_PARTITIONS = 256;
+
+    /** Number of partitions if size of left is unknown */
+    static final int DEFAULT_NUM_OF_PARTITIONS = 16;
+
+    /** Each row is encoded, written to and read from local disk */
+    private static final int SPILL_COST_FACTOR = 3;
+
+    /** Binary encoding of row spilled */
+    private final RowCodec<T> codec;
+
+    /** Temp directory with all partition files */
+    private Path spillDir;
+
+    /** Partition files of left and right */
+    private SpillFile<T>[] leftPartitions;
+    private SpillFile<T>[] rightPartitions;
+
+    /** Index of partition being joined */
+    private int curPartition = -1;
+
+    /** Readers of current partition */
+    private SpillFile.Reader<T> leftReader;
+    private SpillFile.Reader<T> rightReader;
+
+    public GraceHashJoin(PhysicalOperator<T> left,
+                         PhysicalOperator<T> right,
+                         JoinType type,
+                         JoinCondition condition,
+                         BlockSize blockSize,
+                         RowCodec<T> codec) {
+        super(left, right, type, condition, blockSize);
+
+        if (condition.groupSize() != 1) {
+            throw new IllegalArgumentException(
+                "Grace hash join only supports single group of AND conditions: " + condition);
+        }
+        this.codec = codec;
+    }
+
+    /**
+     * Both sides are scanned once, then spilled and read back from local disk:
+     *  time = time(left) + time(right) + SPILL_COST_FACTOR * (size(left) + size(right))
+     */
+    @Override
+    public Cost estimate() {
+        Cost leftCost = left.estimate();
+        Cost rightCost = right.estimate();
+        if (leftCost.isInfinite() || rightCost.isInfinite()) {
+            return Cost.INFINITY;
+        }
+
+        return new Cost(
+            estimateJoinedSize(left, leftCost, right, rightCost, condition),
+            Cost.plus(
+                Cost.plus(leftCost.time(), rightCost.time()),
+                Cost.times(SPILL_COST_FACTOR, Cost.plus(leftCost.inputSize(), rightCost.inputSize()))
+            )
+        );
+    }
+
+    @Override
+    public void open(ExecuteParams params) throws Exception {
+        super.open(params);
+        right.open(params);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        closeReaders();
+        closeWriters(leftPartitions);
+        closeWriters(rightPartitions);
+
+        if (spillDir != null) {
+            try {
+                IOUtils.rm(spillDir);
+            }
+            catch (IOException e) {
+                LOG.warn("Failed to delete spill directory of join: " + spillDir, e);
+            }
+            spillDir = null;
+        }
+        leftPartitions = null;
+        rightPartitions = null;
+        curPartition = -1;
+        LOG.debug("Cleared all spill files used by grace hash join");
+    }
+
+    /**
+     * Partition both sides to local disk on first call. Then for each partition:
+     *  1) Build hash table by next block from left partition and open right partition.
+     *  2) Keep probing right partition to find matched rows (meanwhile update mismatched set)
+     *  3) Return mismatched rows if any in the case of outer join.
+     *  4) Move on to next block of the partition or next partition. Go back to step 1.
+     */
+    @Override
+    protected Collection<Row<T>> prefetch() throws Exception {
+        if (leftPartitions == null) {
+            partitionBothSides();
+        }
+
+        while (true) {
+            if (isNewRun()) {
+                List<Row<T>> block = loadNextBlockFromPartitions();
+                if (block.isEmpty()) {
+                    return emptyList();
+                }
+                buildHashTable(block);
+                reopenRight();
+            }
+
+            while (rightReader.hasNext()) {
+                Collection<Row<T>> matched = probeMatchAndBookkeepMismatch();
+                if (!matched.isEmpty()) {
+                    return matched;
+                }
+            }
+
+            if (isAnyMismatchForOuterJoin()) {
+                return returnAndClearMismatch();
+            }
+
+            cleanUp();
+            rightReader.close();
+        }
+    }
+
+    /** Re-read right partition from local disk */
+    @Override
+    protected void reopenRight() throws Exception {
+        if (rightReader != null) {
+            rightReader.close();
+        }
+        rightReader = rightPartitions[curPartition].openReader();
+    }
+
+    @Override
+    protected List<CombinedRow<T>> probe() {
+        List<CombinedRow<T>> combinedRows = new ArrayList<>();
+        int totalSize = 0;
+
+        /* Return if already found enough matched rows to give ResourceMgr a chance to check resource usage */
+        while (rightReader.hasNext() && totalSize < hashTable.size()) {
+            Row<T> rightRow = rightReader.next();
+            Collection<Row<T>> matchedLeftRows = hashTable.match(rightRow);
+
+            if (!matchedLeftRows.isEmpty()) {
+                combinedRows.add(new CombinedRow<>(rightRow, matchedLeftRows));
+                totalSize += matchedLeftRows.size();
+            }
+        }
+        return combinedRows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void partitionBothSides() throws IOException {
+        int numOfPartitions = numOfPartitions();
+        spillDir = Files.createTempDirectory("sql-join-");
+        leftPartitions = new SpillFile[numOfPartitions];
+        rightPartitions = new SpillFile[numOfPartitions];
+        for (int i = 0; i < numOfPartitions; i++) {
+            leftPartitions[i] = new SpillFile<>(spillDir.resolve("left-" + i), codec);
+            rightPartitions[i] = new SpillFile<>(spillDir.resolve("right-" + i), codec);
+        }
+
+        long leftSize = partition(left, condition.leftColumnNames(0), leftPartitions, true);
+        long rightSize = partition(right, condition.rightColumnNames(0), rightPartitions, false);
+        LOG.debug("Spilled {} rows from left and {} rows from right to {} partitions in {}",
+                  leftSize, rightSize, numOfPartitions, spillDir);
+    }
+
+    /**
+     * Write all rows to partition by hash of join key.
+     * Row with NULL key never matches. Keep it from left only for outer join.
+     */
+    private long partition(PhysicalOperator<T> side, String[] colNames,
+                           SpillFile<T>[] partitions, boolean isKeepNullKey) throws IOException {
+        long total = 0;
+        while (side.hasNext()) {
+            Row<T> row = side.next();
+            RowKey key = row.key(colNames);
+            if (key == RowKey.NULL && !isKeepNullKey) {
+                continue;
+            }
+            partitions[partitionOf(key, partitions.length)].write(row);
+            total++;
+        }
+
+        for (SpillFile<T> partition : partitions) {
+            partition.finishWrite();
+        }
+        return total;
+    }
+
+    /** One partition per block of left estimated, with default and upper bound */
+    private int numOfPartitions() {
+        Cost leftCost = left.estimate();
+        if (leftCost.isInfinite()) {
+            return DEFAULT_NUM_OF_PARTITIONS;
+        }
+
+        long size = Math.max(blockSize.size(), 1);
+        long numOfBlocks = (leftCost.inputSize() + size - 1) / size;
+        return (int) Math.max(1, Math.min(numOfBlocks, MAX_NUM_OF_PARTITIONS));
+    }
+
+    /**
+     * Mix bits of hash code before modulo. Otherwise all keys in the same partition share the same
+     * low bits and collide in the bucket of hash table built by the partition later.
+     */
+    static int partitionOf(RowKey key, int numOfPartitions) {
+        if (key == RowKey.NULL) {
+            return 0;
+        }
+
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, numOfPartitions);
+    }
+
+    /** Load next block from current partition, or from next non-empty partition if exhausted */
+    private List<Row<T>> loadNextBlockFromPartitions() throws IOException {
+        List<Row<T>> block = new ArrayList<>();
+        int size = Math.max(blockSize.size(), 1);
+        while (block.size() < size) {
+            if (leftReader != null && leftReader.hasNext()) {
+                block.add(leftReader.next());
+            }
+            else if (!block.isEmpty() || !moveToNextPartition()) {
+                break; // Never mix rows from different partitions in one block
+            }
+        }
+        return block;
+    }
+
+    private boolean moveToNextPartition() throws IOException {
+        closeReaders();
+        if (curPartition >= 0) {
+            leftPartitions[curPartition].delete();
+            rightPartitions[curPartition].delete();
+        }
+
+        while (++curPartition < leftPartitions.length) {
+            if (!leftPartitions[curPartition].isEmpty()) {
+                leftReader = leftPartitions[curPartition].openReader();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closeReaders() {
+        if (leftReader != null) {
+            leftReader.close();
+            leftReader = null;
+        }
+        if (rightReader != null) {
+            rightReader.close();
+            rightReader = null;
+        }
+    }
+
+    private void closeWriters(SpillFile<T>[] partitions) {
+        if (partitions != null) {
+            for (SpillFile<T> partition : partitions) {
+                partition.closeQuietly();
+            }
+        }
+    }
+
+}
@@ -45,14 +45,22 @@ public class HashTableGroup<T> implements HashTable<T> {
         else {
             hashTables = new HashTable[groupSize];
             for (int i = 0; i < groupSize; i++) {
-                hashTables[i] = new DefaultHashTable<>(
-                    condition.leftColumnNames(i),
-                    condition.rightColumnNames(i)
-                );
+                hashTables[i] = newHashTable(condition.leftColumnNames(i), condition.rightColumnNames(i));
             }
         }
     }
 
+    /**
+     * Single join column is very likely to be numeric ID which benefits from primitive hash table.
+     * Otherwise use open addressing hash table which is much more compact than Multimap.
+     */
+    private HashTable<T> newHashTable(String[] leftColumnNames, String[] rightColumnNames) {
+        if (leftColumnNames.length == 1) {
+            return new LongKeyHashTable<>(leftColumnNames, rightColumnNames);
+        }
+        return new OpenAddressingHashTable<>(leftColumnNames, rightColumnNames);
+    }
+
     @Override
     public void add(Row<T> row) {
         for (HashTable<T> hashTable : hashTables) {
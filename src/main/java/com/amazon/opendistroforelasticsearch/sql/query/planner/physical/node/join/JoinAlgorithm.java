@@ -24,7 +24,9 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Join.JoinCondition;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.BatchPhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.Scroll;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize;
 
 import java.util.ArrayList;
@@ -43,7 +45,7 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
     protected static final Logger LOG = LogManager.getLogger();
 
     /** Left child operator */
-    private final PhysicalOperator<T> left;
+    protected final PhysicalOperator<T> left;
 
     /** Right child operator handled by concrete join algorithm subclass */
     protected final PhysicalOperator<T> right;
@@ -52,10 +54,10 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
     private final JoinType type;
 
     /** Joined columns in ON conditions */
-    private final JoinCondition condition;
+    protected final JoinCondition condition;
 
     /** Block size calculator */
-    private final BlockSize blockSize;
+    protected final BlockSize blockSize;
 
     /** Bookkeeping unmatched rows in current block from left */
     private final Set<Row<T>> leftMismatch;
@@ -63,6 +65,9 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
     /** Hash table for right table probing */
     protected HashTable<T> hashTable;
 
+    /** Bytes charged for rows in hash table, released block by block apart from other buffers of subclass */
+    private long hashTableBytes;
+
     /** Execute params to reset right side for each left block */
     protected ExecuteParams params;
 
@@ -97,6 +102,7 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
         super.close();
         hashTable.clear();
         leftMismatch.clear();
+        hashTableBytes = 0;
         LOG.debug("Cleared all resources used by join");
     }
 
@@ -140,7 +146,7 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
     }
 
     /** Probe right by hash table built from left. Handle matched and mismatched rows. */
-    private Collection<Row<T>> probeMatchAndBookkeepMismatch() {
+    protected Collection<Row<T>> probeMatchAndBookkeepMismatch() {
         if (hashTable.isEmpty()) {
             throw new IllegalStateException("Hash table is NOT supposed to be empty");
         }
@@ -173,7 +179,7 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
         return isNewRun() && !isAnyMoreBlockFromLeft();
     }
 
-    private boolean isNewRun() {
+    protected boolean isNewRun() {
         return hashTable.isEmpty();
     }
 
@@ -181,17 +187,17 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
         return left.hasNext();
     }
 
-    private boolean isAnyMoreDataFromRight() {
+    protected boolean isAnyMoreDataFromRight() {
         return right.hasNext();
     }
 
-    private boolean isAnyMismatchForOuterJoin() {
+    protected boolean isAnyMismatchForOuterJoin() {
         return !leftMismatch.isEmpty();
     }
 
     /** Clone mismatch list and clear it so that we won't return it forever */
     @SuppressWarnings("unchecked")
-    private Collection<Row<T>> returnAndClearMismatch() {
+    protected Collection<Row<T>> returnAndClearMismatch() {
         if (LOG.isTraceEnabled()) {
             leftMismatch.forEach(row -> LOG.trace("Mismatched rows before combined: {}", row));
         }
@@ -214,10 +220,17 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
      */
     private void buildHashTableByNextBlock() {
         List<Row<T>> block = loadNextBlockFromLeft(blockSize.size());
+        blockSize.measure(block);
+        buildHashTable(block);
+    }
+
+    /** Build hash table from data block and bookkeep all rows as mismatch in the case of outer join */
+    protected void buildHashTable(List<Row<T>> block) {
         if (LOG.isTraceEnabled()) {
             LOG.trace("Build hash table on conditions with block: {}, {}", condition, block);
         }
 
+        hashTableBytes += chargeMemory(block);
         for (Row<T> data : block) {
             hashTable.add(data);
         }
@@ -229,9 +242,20 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
 
     private void cleanUpAndCloseRight() {
         LOG.debug("No more data from right. Clean up and close right.");
+        cleanUp();
+        closeRight();
+    }
+
+    /** Close right side after all its data consumed for current block */
+    protected void closeRight() {
+        right.close();
+    }
+
+    protected void cleanUp() {
         hashTable.clear();
         leftMismatch.clear();
-        right.close();
+        releaseMemory(hashTableBytes);
+        hashTableBytes = 0;
     }
 
     private List<Row<T>> loadNextBlockFromLeft(int blockSize) {
@@ -250,6 +274,36 @@ public abstract class JoinAlgorithm<T> extends BatchPhysicalOperator<T> {
         }
     }
 
+    /**
+     * Estimate number of joined rows by the classic formula: size(left) * size(right) / max(NDV(left key), NDV(right key)).
+     * Without cardinality of join keys, assume equi-join on key of one side (typical foreign key
+     * to primary key) which produces rows as many as the larger input.
+     */
+    static <T> long estimateJoinedSize(PhysicalOperator<T> left, Cost leftCost,
+                                       PhysicalOperator<T> right, Cost rightCost,
+                                       JoinCondition condition) {
+        if (condition.groupSize() == 0) {
+            return Cost.times(leftCost.inputSize(), rightCost.inputSize()); // Cross join
+        }
+
+        long cardinality = Math.max(
+            cardinality(left, condition.leftColumnNames(0)),
+            cardinality(right, condition.rightColumnNames(0))
+        );
+        if (cardinality > 0) {
+            return Cost.times(leftCost.inputSize(), rightCost.inputSize()) / cardinality;
+        }
+        return Math.max(leftCost.inputSize(), rightCost.inputSize());
+    }
+
+    /** Cardinality of single join key column only available when scrolling index directly */
+    private static <T> long cardinality(PhysicalOperator<T> op, String[] colNames) {
+        if (op instanceof Scroll && colNames.length == 1) {
+            return ((Scroll) op).stats().getCardinality(colNames[0]);
+        }
+        return -1;
+    }
+
     /**
      * (Re-)open right side by params.
      */
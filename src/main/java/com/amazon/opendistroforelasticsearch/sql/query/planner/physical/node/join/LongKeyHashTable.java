@@ -0,0 +1,211 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey.LongKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Hash table for single join column whose values are mostly integral, ex. numeric ID.
+ * Long keys are stored in open-addressed primitive arrays (linear probing) without boxing,
+ * and rows of the same key are chained by index in insertion order.
+ * Rows with key of other type are delegated to open addressing hash table.
+ *
+ * @param <T>   Row data type
+ */
+public class LongKeyHashTable<T> implements HashTable<T> {
+
+    private static final int INITIAL_CAPACITY = 64; // Must be power of 2
+
+    private static final int EMPTY = -1;
+
+    /** Left join condition to generate key to build hash table by left rows from block */
+    private final String[] leftJoinFields;
+
+    /** Right join condition to generate key to probe hash table by right rows */
+    private final String[] rightJoinFields;
+
+    /** Open-addressed slots: key, and index of first and last row of the key. First row EMPTY means free slot */
+    private long[] slotKeys;
+    private int[] slotHeads;
+    private int[] slotTails;
+
+    /** Number of distinct long keys */
+    private int numOfKeys;
+
+    /** Rows with long key and index of next row with the same key */
+    private List<Row<T>> rows;
+    private int[] nextRows;
+
+    /** Rows with key of other type, ex. string */
+    private final OpenAddressingHashTable<T> otherTable;
+
+    public LongKeyHashTable(String[] leftJoinFields, String[] rightJoinFields) {
+        this.leftJoinFields = leftJoinFields;
+        this.rightJoinFields = rightJoinFields;
+        this.otherTable = new OpenAddressingHashTable<>(leftJoinFields, rightJoinFields);
+        init();
+    }
+
+    @Override
+    public void add(Row<T> row) {
+        RowKey key = row.key(leftJoinFields);
+        if (!(key instanceof LongKey)) {
+            otherTable.add(key, row);
+            return;
+        }
+
+        int rowIndex = rows.size();
+        rows.add(row);
+        if (rowIndex == nextRows.length) {
+            nextRows = Arrays.copyOf(nextRows, rowIndex * 2);
+        }
+        nextRows[rowIndex] = EMPTY;
+
+        long value = ((LongKey) key).value();
+        int slot = findSlot(value);
+        if (slotHeads[slot] == EMPTY) {
+            slotKeys[slot] = value;
+            slotHeads[slot] = rowIndex;
+            slotTails[slot] = rowIndex;
+            if (++numOfKeys * 2 > slotKeys.length) { // Keep load factor under 0.5
+                resize();
+            }
+        }
+        else {
+            nextRows[slotTails[slot]] = rowIndex;
+            slotTails[slot] = rowIndex;
+        }
+    }
+
+    @Override
+    public Collection<Row<T>> match(Row<T> row) {
+        RowKey key = row.key(rightJoinFields);
+        if (!(key instanceof LongKey)) {
+            return otherTable.match(key, row);
+        }
+
+        int slot = findSlot(((LongKey) key).value());
+        if (slotHeads[slot] == EMPTY) {
+            return emptyList();
+        }
+
+        List<Row<T>> matched = new ArrayList<>();
+        for (int i = slotHeads[slot]; i != EMPTY; i = nextRows[i]) {
+            matched.add(rows.get(i));
+        }
+        return matched;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<String, Collection<Object>>[] rightFieldWithLeftValues() {
+        Map<String, Collection<Object>> result = otherTable.rightFieldWithLeftValues()[0];
+        if (numOfKeys > 0) {
+            Set<Object> values = new HashSet<>();
+            Collection<Object> otherValues = result.get(rightJoinFields[0]);
+            if (otherValues != null) {
+                values.addAll(otherValues);
+            }
+            for (int slot = 0; slot < slotKeys.length; slot++) {
+                if (slotHeads[slot] != EMPTY) {
+                    values.add(slotKeys[slot]);
+                }
+            }
+            result.put(rightJoinFields[0], new ArrayList<>(values));
+        }
+        return new Map[]{ result };
+    }
+
+    @Override
+    public int size() {
+        return rows.size() + otherTable.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Shrink back to initial capacity to release memory held by previous block */
+    @Override
+    public void clear() {
+        init();
+        otherTable.clear();
+    }
+
+    private void init() {
+        slotKeys = new long[INITIAL_CAPACITY];
+        slotHeads = newEmptySlots(INITIAL_CAPACITY);
+        slotTails = new int[INITIAL_CAPACITY];
+        numOfKeys = 0;
+        rows = new ArrayList<>();
+        nextRows = new int[INITIAL_CAPACITY];
+    }
+
+    /** Linear probing till the key or a free slot found */
+    private int findSlot(long value) {
+        int mask = slotKeys.length - 1;
+        int slot = mix(value) & mask;
+        while (slotHeads[slot] != EMPTY && slotKeys[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldKeys = slotKeys;
+        int[] oldHeads = slotHeads;
+        int[] oldTails = slotTails;
+
+        int capacity = oldKeys.length * 2;
+        slotKeys = new long[capacity];
+        slotHeads = newEmptySlots(capacity);
+        slotTails = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                slotKeys[slot] = oldKeys[i];
+                slotHeads[slot] = oldHeads[i];
+                slotTails[slot] = oldTails[i];
+            }
+        }
+    }
+
+    private static int[] newEmptySlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    /** Spread bits of key because sequential IDs are common */
+    private static int mix(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Hash table implementation by open addressing (linear probing) on parallel arrays:
+ * hash code and key per slot, plus index of first and last row of the key. Rows of the same key are chained
+ * by index array in insertion order. No entry, list or boxed object is created per row as Multimap does.
+ *
+ * @param <T>   Row data type
+ */
+public class OpenAddressingHashTable<T> implements HashTable<T> {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final int INITIAL_CAPACITY = 64; // Must be power of 2
+
+    private static final int EMPTY = -1;
+
+    /** Estimated bytes per slot: hash, key reference, head and tail index */
+    private static final int BYTES_PER_SLOT = 16;
+
+    /** Estimated bytes per row: row reference and next index */
+    private static final int BYTES_PER_ROW = 8;
+
+    /** Estimated bytes per key object: header, cached hash and value reference */
+    private static final int BYTES_PER_KEY = 32;
+
+    /** Left join conditions to generate key to build hash table by left rows from block */
+    private final String[] leftJoinFields;
+
+    /** Right join conditions to generate key to probe hash table by right rows */
+    private final String[] rightJoinFields;
+
+    /** Open-addressed slots. First row EMPTY means free slot */
+    private int[] slotHashes;
+    private RowKey[] slotKeys;
+    private int[] slotHeads;
+    private int[] slotTails;
+
+    /** Number of distinct keys */
+    private int numOfKeys;
+
+    /** Rows and index of next row with the same key */
+    private Object[] rows;
+    private int[] nextRows;
+    private int numOfRows;
+
+    public OpenAddressingHashTable(String[] leftJoinFields, String[] rightJoinFields) {
+        this.leftJoinFields = leftJoinFields;
+        this.rightJoinFields = rightJoinFields;
+        init();
+    }
+
+    @Override
+    public void add(Row<T> row) {
+        add(row.key(leftJoinFields), row);
+    }
+
+    void add(RowKey key, Row<T> row) {
+        if (key == RowKey.NULL) {
+            LOG.debug("Skip rows with NULL column value during build: row={}, conditions={}", row, leftJoinFields);
+            return;
+        }
+
+        int rowIndex = numOfRows++;
+        if (rowIndex == rows.length) {
+            rows = Arrays.copyOf(rows, rowIndex * 2);
+            nextRows = Arrays.copyOf(nextRows, rowIndex * 2);
+        }
+        rows[rowIndex] = row;
+        nextRows[rowIndex] = EMPTY;
+
+        int hash = key.hashCode();
+        int slot = findSlot(hash, key);
+        if (slotHeads[slot] == EMPTY) {
+            slotHashes[slot] = hash;
+            slotKeys[slot] = key;
+            slotHeads[slot] = rowIndex;
+            slotTails[slot] = rowIndex;
+            if (++numOfKeys * 2 > slotKeys.length) { // Keep load factor under 0.5
+                resize();
+            }
+        }
+        else {
+            nextRows[slotTails[slot]] = rowIndex;
+            slotTails[slot] = rowIndex;
+        }
+    }
+
+    @Override
+    public Collection<Row<T>> match(Row<T> row) {
+        return match(row.key(rightJoinFields), row);
+    }
+
+    @SuppressWarnings("unchecked")
+    Collection<Row<T>> match(RowKey key, Row<T> row) {
+        if (key == RowKey.NULL) {
+            LOG.debug("Skip rows with NULL column value during probing: row={}, conditions={}", row, rightJoinFields);
+            return emptyList();
+        }
+
+        int slot = findSlot(key.hashCode(), key);
+        if (slotHeads[slot] == EMPTY) {
+            return emptyList();
+        }
+
+        List<Row<T>> matched = new ArrayList<>();
+        for (int i = slotHeads[slot]; i != EMPTY; i = nextRows[i]) {
+            matched.add((Row<T>) rows[i]);
+        }
+        return matched;
+    }
+
+    /** Right joined field name with according column value list to push down */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<String, Collection<Object>>[] rightFieldWithLeftValues() {
+        Map<String, Collection<Object>> result = new HashMap<>(); // Eliminate potential duplicate in values
+        for (int slot = 0; slot < slotKeys.length; slot++) {
+            if (slotHeads[slot] == EMPTY) {
+                continue;
+            }
+
+            Object[] keys = slotKeys[slot].keys();
+            for (int i = 0; i < keys.length; i++) {
+                result.computeIfAbsent(rightJoinFields[i], (k -> new HashSet<>())).
+                       add(lowercaseIfStr(keys[i])); // Terms stored in lower case in ES
+            }
+        }
+
+        // Convert value of Map from Set to JDK list which is expected by ES writer
+        for (Entry<String, Collection<Object>> entry : result.entrySet()) {
+            entry.setValue(new ArrayList<>(entry.getValue()));
+        }
+        return new Map[]{ result };
+    }
+
+    @Override
+    public int size() {
+        return numOfRows;
+    }
+
+    /**
+     * @return  estimated memory in bytes of the hash table structure, not including rows
+     */
+    public long memoryInBytes() {
+        return (long) BYTES_PER_SLOT * slotKeys.length
+             + (long) BYTES_PER_ROW * rows.length
+             + (long) BYTES_PER_KEY * numOfKeys;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numOfRows == 0;
+    }
+
+    /** Shrink back to initial capacity to release memory held by previous block */
+    @Override
+    public void clear() {
+        init();
+    }
+
+    private void init() {
+        slotHashes = new int[INITIAL_CAPACITY];
+        slotKeys = new RowKey[INITIAL_CAPACITY];
+        slotHeads = newEmptySlots(INITIAL_CAPACITY);
+        slotTails = new int[INITIAL_CAPACITY];
+        numOfKeys = 0;
+        rows = new Object[INITIAL_CAPACITY];
+        nextRows = new int[INITIAL_CAPACITY];
+        numOfRows = 0;
+    }
+
+    /** Linear probing till the key or a free slot found. Compare stored hash first to avoid equals() call */
+    private int findSlot(int hash, RowKey key) {
+        int mask = slotKeys.length - 1;
+        int slot = spread(hash) & mask;
+        while (slotHeads[slot] != EMPTY
+                && (slotHashes[slot] != hash || !slotKeys[slot].equals(key))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        int[] oldHashes = slotHashes;
+        RowKey[] oldKeys = slotKeys;
+        int[] oldHeads = slotHeads;
+        int[] oldTails = slotTails;
+
+        int capacity = oldKeys.length * 2;
+        slotHashes = new int[capacity];
+        slotKeys = new RowKey[capacity];
+        slotHeads = newEmptySlots(capacity);
+        slotTails = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != EMPTY) {
+                int slot = spread(oldHashes[i]) & mask;
+                while (slotHeads[slot] != EMPTY) { // Keys are distinct already
+                    slot = (slot + 1) & mask;
+                }
+                slotHashes[slot] = oldHashes[i];
+                slotKeys[slot] = oldKeys[i];
+                slotHeads[slot] = oldHeads[i];
+                slotTails[slot] = oldTails[i];
+            }
+        }
+    }
+
+    private static int[] newEmptySlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    /** Hash code of string and small number is poorly distributed in low bits */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Object lowercaseIfStr(Object key) {
+        return key instanceof String ? ((String) key).toLowerCase() : key;
+    }
+
+}
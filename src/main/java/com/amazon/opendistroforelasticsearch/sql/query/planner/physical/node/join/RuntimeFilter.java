@@ -0,0 +1,173 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.QueryBuilders.scriptQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
+
+/**
+ * Runtime filter built from join keys in hash table and pushed down to the other side of join.
+ * Kind of filter is chosen by number of distinct keys:
+ *  1) Terms query if only a few keys which is the most selective
+ *  2) Min/max range query if too many keys and all of them are numeric (including date in epoch)
+ *  3) Bloom filter evaluated by script if too many keys of string on keyword field. Other fields, ex. date
+ *     field whose keys in source are string but doc values are not, are not filtered because the script
+ *     has no way to hash their doc values the same way as keys.
+ * Note that all filters here may let through false positives which will be eliminated by join itself later.
+ */
+public final class RuntimeFilter {
+
+    /** Max number of distinct keys for which terms query is still used */
+    public static final int MAX_TERMS_SIZE = 1024;
+
+    /** Expected false positive rate of bloom filter */
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    /** Max number of hash functions for bloom filter */
+    private static final int MAX_NUM_OF_HASHES = 8;
+
+    /**
+     * Script testing membership of doc value against bloom filter. It must hash the same way as
+     * {@link #bloomIndexOf(int, int, int)}. Only used on keyword field, so non-string doc value or error
+     * in accessing doc value is unexpected and lets the document through to be safe.
+     */
+    private static final String BLOOM_FILTER_SCRIPT =
+        "try {"
+      + "  def values = doc[params.field];"
+      + "  for (def value : values) {"
+      + "    if (!(value instanceof String)) { return true; }"
+      + "    int h1 = value.toLowerCase().hashCode();"
+      + "    int h2 = (h1 >>> 16) | (h1 << 16);"
+      + "    boolean isAllSet = true;"
+      + "    for (int i = 0; i < params.numOfHashes && isAllSet; i++) {"
+      + "      int index = ((h1 + i * h2) & 0x7fffffff) % params.numOfBits;"
+      + "      long word = params.bits[index >>> 6];"
+      + "      isAllSet = (word & (1L << (index & 63))) != 0;"
+      + "    }"
+      + "    if (isAllSet) { return true; }"
+      + "  }"
+      + "  return false;"
+      + "} catch (Exception e) {"
+      + "  return true;"
+      + "}";
+
+    private RuntimeFilter() {
+    }
+
+    /**
+     * Build filter on the field for the given join key values (in lower case if string).
+     *
+     * @param fieldName         field name on the side to be filtered
+     * @param values            distinct key values from hash table
+     * @param isKeywordField    true if the field is mapped as keyword in all indices on the side to be filtered
+     * @return filter query
+     */
+    public static QueryBuilder filterOf(String fieldName, Collection<Object> values, boolean isKeywordField) {
+        Set<Object> distinctValues = new LinkedHashSet<>(values);
+        if (distinctValues.size() <= MAX_TERMS_SIZE) {
+            return termsQuery(fieldName, new ArrayList<>(distinctValues));
+        }
+
+        if (distinctValues.stream().allMatch(value -> value instanceof Number)) {
+            return rangeFilterOf(fieldName, distinctValues);
+        }
+
+        if (isKeywordField && distinctValues.stream().allMatch(value -> value instanceof String)) {
+            return bloomFilterOf(fieldName, distinctValues);
+        }
+
+        // Mixed types, or string keys on non-keyword field, are impossible to filter safely
+        return matchAllQuery();
+    }
+
+    private static QueryBuilder rangeFilterOf(String fieldName, Set<Object> values) {
+        boolean isIntegral = values.stream().allMatch(value ->
+            value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte);
+
+        if (isIntegral) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (Object value : values) {
+                long num = ((Number) value).longValue();
+                min = Math.min(min, num);
+                max = Math.max(max, num);
+            }
+            return rangeQuery(fieldName).gte(min).lte(max);
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Object value : values) {
+            double num = ((Number) value).doubleValue();
+            min = Math.min(min, num);
+            max = Math.max(max, num);
+        }
+        return rangeQuery(fieldName).gte(min).lte(max);
+    }
+
+    private static QueryBuilder bloomFilterOf(String fieldName, Set<Object> values) {
+        int n = values.size();
+        int numOfBits = (int) Math.min(Integer.MAX_VALUE - 63,
+            Math.ceil(-n * Math.log(BLOOM_FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2))));
+        int numOfHashes = Math.max(1, Math.min(MAX_NUM_OF_HASHES, (int) Math.round((double) numOfBits / n * Math.log(2))));
+
+        long[] bits = new long[(numOfBits + 63) >>> 6];
+        for (Object value : values) {
+            int h1 = ((String) value).toLowerCase().hashCode();
+            for (int i = 0; i < numOfHashes; i++) {
+                int index = bloomIndexOf(h1, i, numOfBits);
+                bits[index >>> 6] |= 1L << (index & 63);
+            }
+        }
+
+        List<Long> bitList = new ArrayList<>(bits.length);
+        for (long word : bits) {
+            bitList.add(word);
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("field", fieldName);
+        params.put("numOfBits", numOfBits);
+        params.put("numOfHashes", numOfHashes);
+        params.put("bits", bitList);
+        return scriptQuery(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, BLOOM_FILTER_SCRIPT, params));
+    }
+
+    /**
+     * Double hashing: index_i = (h1 + i * h2) mod m where h2 is derived from h1 by rotating.
+     * Public for the test to verify parity with the hashing in bloom filter script.
+     */
+    public static int bloomIndexOf(int h1, int i, int numOfBits) {
+        int h2 = (h1 >>> 16) | (h1 << 16);
+        return ((h1 + i * h2) & 0x7fffffff) % numOfBits;
+    }
+
+}
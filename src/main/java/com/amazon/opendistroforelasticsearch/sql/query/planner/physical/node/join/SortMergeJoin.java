@@ -0,0 +1,315 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join;
+
+import com.alibaba.druid.sql.ast.statement.SQLJoinTableSource.JoinType;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.logical.node.Join.JoinCondition;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.BatchPhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.Scroll;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.BlockSize;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sort-merge join implementation. Both sides are scrolled in ascending order of join keys
+ * and merged in one streaming pass so that each index is read exactly once.
+ *
+ * Rows are merged by sort values returned by Elasticsearch rather than values in _source, because only the
+ * former is guaranteed in the same order as scrolled, ex. multi-valued field is sorted by its min value.
+ * Rows with the same sort values are then matched by key in _source in the same way as hash join.
+ *
+ * Only rows of one distinct sort value from right are buffered at a time. NULL key never matches anything:
+ * left row with NULL key is returned as mismatch in LEFT JOIN and right row with NULL key is skipped.
+ *
+ * @param <T>   data object underlying, ex. SearchHit
+ */
+public class SortMergeJoin<T> extends BatchPhysicalOperator<T> {
+
+    /** Scroll in sorted order costs more than by _doc due to sorting and no early termination on shard */
+    private static final long SORTED_SCAN_FACTOR = 2;
+
+    /** Number of right rows buffered before charging them to memory account together */
+    private static final int CHARGE_BATCH_SIZE = 1000;
+
+    private final PhysicalOperator<T> left;
+    private final PhysicalOperator<T> right;
+
+    /** Join type ex. inner join, left join */
+    private final JoinType type;
+
+    /** Joined columns in ON conditions which must be single group of AND conditions */
+    private final JoinCondition condition;
+
+    /** Max number of rows returned in each batch */
+    private final BlockSize blockSize;
+
+    /** Current row from left and its key and sort values */
+    private Row<T> leftRow;
+    private RowKey leftKey;
+    private Object[] leftSortValues;
+
+    /** Look-ahead row from right and its key and sort values */
+    private Row<T> rightRow;
+    private RowKey rightKey;
+    private Object[] rightSortValues;
+
+    /** Right rows and their keys with the same sort values as last left row probed */
+    private final List<Row<T>> rightGroup = new ArrayList<>();
+    private final List<RowKey> rightGroupKeys = new ArrayList<>();
+    private Object[] rightGroupSortValues;
+
+    public SortMergeJoin(PhysicalOperator<T> left,
+                         PhysicalOperator<T> right,
+                         JoinType type,
+                         JoinCondition condition,
+                         BlockSize blockSize) {
+        if (condition.groupSize() != 1) {
+            throw new IllegalArgumentException("Merge join requires exactly one group of AND conditions: " + condition);
+        }
+
+        this.left = left;
+        this.right = right;
+        this.type = type;
+        this.condition = condition;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public PlanNode[] children() {
+        return new PlanNode[]{ left, right };
+    }
+
+    /**
+     * Each side is scanned exactly once in sorted order and merged:
+     *  time = factor * (time(left) + time(right)) + size(left) + size(right)
+     */
+    @Override
+    public Cost estimate() {
+        Cost leftCost = left.estimate();
+        Cost rightCost = right.estimate();
+        if (leftCost.isInfinite() || rightCost.isInfinite()) {
+            return Cost.INFINITY;
+        }
+
+        return new Cost(
+            JoinAlgorithm.estimateJoinedSize(left, leftCost, right, rightCost, condition),
+            Cost.plus(
+                Cost.times(SORTED_SCAN_FACTOR, Cost.plus(leftCost.time(), rightCost.time())),
+                Cost.plus(leftCost.inputSize(), rightCost.inputSize())
+            )
+        );
+    }
+
+    @Override
+    public void open(ExecuteParams params) throws Exception {
+        super.open(params);
+        orderBy(left, condition.leftColumnNames(0));
+        orderBy(right, condition.rightColumnNames(0));
+        left.open(params);
+        right.open(params);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        rightGroup.clear();
+        rightGroupKeys.clear();
+        LOG.debug("Cleared all resources used by merge join");
+    }
+
+    /**
+     * Merge left and right until enough joined rows found for a batch or left is exhausted.
+     * Note that the batch may exceed block size by the rows generated from last left row.
+     */
+    @Override
+    protected Collection<Row<T>> prefetch() {
+        List<Row<T>> batch = new ArrayList<>();
+        int size = Math.max(blockSize.size(), 1);
+
+        while (batch.size() < size && nextLeft()) {
+            if (leftKey == RowKey.NULL) {
+                addIfMismatch(batch, leftRow);
+                continue;
+            }
+
+            if (rightGroupSortValues == null || compare(leftSortValues, rightGroupSortValues) != 0) {
+                loadRightGroup(leftSortValues);
+            }
+
+            boolean isMatched = false;
+            for (int i = 0; i < rightGroup.size(); i++) {
+                if (leftKey.equals(rightGroupKeys.get(i))) {
+                    batch.add(leftRow.combine(rightGroup.get(i)));
+                    isMatched = true;
+                }
+            }
+
+            if (!isMatched) {
+                addIfMismatch(batch, leftRow);
+            }
+        }
+        return batch;
+    }
+
+    /** Move to next left row. Stop early in inner join if no more right rows to match */
+    private boolean nextLeft() {
+        if (!isLeftJoin() && rightRow == null && rightGroup.isEmpty() && isRightExhausted()) {
+            return false;
+        }
+
+        if (!left.hasNext()) {
+            return false;
+        }
+        leftRow = left.next();
+        leftKey = leftRow.key(condition.leftColumnNames(0));
+        leftSortValues = sortValuesOf(leftRow);
+        return true;
+    }
+
+    /** Skip right rows with smaller sort values and buffer all right rows with non-NULL key and sort values given */
+    private void loadRightGroup(Object[] sortValues) {
+        rightGroup.clear();
+        rightGroupKeys.clear();
+        releaseMemory();
+        rightGroupSortValues = sortValues;
+
+        while (peekRight() && compare(rightSortValues, sortValues) < 0) {
+            rightRow = null;
+        }
+
+        List<Row<T>> rowsToCharge = new ArrayList<>();
+        while (peekRight() && compare(rightSortValues, sortValues) == 0) {
+            if (rightKey != RowKey.NULL) {
+                rightGroup.add(rightRow);
+                rightGroupKeys.add(rightKey);
+                rowsToCharge.add(rightRow);
+                if (rowsToCharge.size() >= CHARGE_BATCH_SIZE) {
+                    chargeMemory(rowsToCharge);
+                    rowsToCharge.clear();
+                }
+            }
+            rightRow = null;
+        }
+        chargeMemory(rowsToCharge);
+    }
+
+    /** Fetch next right row as look-ahead if not yet */
+    private boolean peekRight() {
+        if (rightRow == null) {
+            if (isRightExhausted()) {
+                return false;
+            }
+            rightRow = right.next();
+            rightKey = rightRow.key(condition.rightColumnNames(0));
+            rightSortValues = sortValuesOf(rightRow);
+        }
+        return true;
+    }
+
+    private boolean isRightExhausted() {
+        return rightRow == null && !right.hasNext();
+    }
+
+    private void addIfMismatch(List<Row<T>> batch, Row<T> row) {
+        if (isLeftJoin()) {
+            batch.add(row.combine(Row.NULL));
+        }
+    }
+
+    private boolean isLeftJoin() {
+        return type == JoinType.LEFT_OUTER_JOIN;
+    }
+
+    private Object[] sortValuesOf(Row<T> row) {
+        Object[] sortValues = row.sortValues();
+        if (sortValues.length < condition.leftColumnNames(0).length) {
+            throw new IllegalStateException("Merge join requires rows sorted by join keys but found: " + row);
+        }
+        return sortValues;
+    }
+
+    /**
+     * Compare sort values of join keys in the same order as sorted by Elasticsearch. Sort values
+     * after join keys, ex. _doc as tie breaker, are ignored.
+     */
+    private int compare(Object[] sortValues1, Object[] sortValues2) {
+        for (int i = 0; i < condition.leftColumnNames(0).length; i++) {
+            int result = compareValue(sortValues1[i], sortValues2[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Missing keyword sorts last with null sort value. Missing number sorts last with max value which
+     * compares equal to the real max value, so its row is only skipped later for its NULL key.
+     */
+    private static int compareValue(Object value1, Object value2) {
+        if (value1 == null || value2 == null) {
+            return (value1 == null) ? (value2 == null ? 0 : 1) : -1;
+        }
+        if (value1 instanceof String && value2 instanceof String) {
+            return compareByCodePoint((String) value1, (String) value2);
+        }
+        if (value1 instanceof Long && value2 instanceof Long) {
+            return Long.compare((Long) value1, (Long) value2);
+        }
+        if (value1 instanceof Number && value2 instanceof Number) {
+            return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+        }
+        throw new IllegalStateException(String.format(
+            "Merge join found sort values of different types: [%s] and [%s]", value1, value2));
+    }
+
+    /** Keyword is sorted by UTF-8 bytes in Elasticsearch which is the same as Unicode code point order */
+    private static int compareByCodePoint(String str1, String str2) {
+        int i = 0;
+        int j = 0;
+        while (i < str1.length() && j < str2.length()) {
+            int c1 = str1.codePointAt(i);
+            int c2 = str2.codePointAt(j);
+            if (c1 != c2) {
+                return Integer.compare(c1, c2);
+            }
+            i += Character.charCount(c1);
+            j += Character.charCount(c2);
+        }
+        return Integer.compare(str1.length() - i, str2.length() - j);
+    }
+
+    private void orderBy(PhysicalOperator<T> op, String[] colNames) {
+        if (!(op instanceof Scroll)) {
+            throw new IllegalStateException("Merge join requires sorted scroll as input but found: " + op);
+        }
+        ((Scroll) op).orderBy(colNames);
+    }
+
+    @Override
+    public String toString() {
+        return "SortMergeJoin [ conditions=" + condition + ", type=" + type + " ]";
+    }
+
+}
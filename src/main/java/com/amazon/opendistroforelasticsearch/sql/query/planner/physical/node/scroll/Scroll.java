@@ -16,6 +16,11 @@
 package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll;
 
 import com.amazon.opendistroforelasticsearch.sql.domain.Where;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.FieldPathIndex.FieldInfo;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.FieldMappings;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.IndexMappings;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.TypeMappings;
 import com.amazon.opendistroforelasticsearch.sql.exception.SqlParseException;
 import com.amazon.opendistroforelasticsearch.sql.query.join.TableInJoinRequestBuilder;
 import com.amazon.opendistroforelasticsearch.sql.query.maker.QueryMaker;
@@ -23,7 +28,9 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParam
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.BatchPhysicalOperator;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.ResourceManager;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.IndexStats;
 import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.Strings;
@@ -38,35 +45,73 @@ import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
+import static java.util.Collections.emptyList;
+
 /**
  * ES Scroll API as physical implementation of TableScan
  */
 public class Scroll extends BatchPhysicalOperator<SearchHit> {
 
+    /**
+     * Field types merge join can sort by. Text field has no doc value. Half float and scaled float are excluded
+     * because doc values are rounded so the same value in _source may sort differently between indices.
+     */
+    private static final List<String> SORTABLE_TYPES = Arrays.asList(
+        "keyword", "long", "integer", "short", "byte", "double", "float", "date"
+    );
+
+    /** Integral field types whose doc values are all exact long values */
+    private static final List<String> INTEGRAL_TYPES = Arrays.asList("long", "integer", "short", "byte");
+
+    /**
+     * Min number of pages each slice should scroll for sliced scroll by default. Index smaller than this
+     * is scrolled sequentially because extra scroll contexts and round trips cost more than they save.
+     */
+    public static final int MIN_PAGES_PER_SLICE = 10;
+
+    /** Field types with doc value of string */
+    private static final List<String> KEYWORD_TYPES = Collections.singletonList("keyword");
+
     /** Request to submit to ES to scroll over */
     private final TableInJoinRequestBuilder request;
 
     /** Page size to scroll over index */
     private final int pageSize;
 
+    /** Number of slices configured by hint. Non-positive value means number of primary shards if index is large */
+    private final int numOfSlices;
+
+    /** Statistics of the index for cost estimation */
+    private final IndexStats indexStats;
+
     /** Client connection to ElasticSearch */
     private Client client;
 
     /** Currently undergoing Scroll */
     private SearchResponse scrollResponse;
 
+    /** Currently undergoing sliced scroll if more than one slice */
+    private SlicedScroll slicedScroll;
+
     /** Time out */
     private Integer timeout;
 
     /** Resource monitor manager */
     private ResourceManager resourceMgr;
 
+    /** Fields to sort by in ascending order before _doc, ex. join keys required by merge join */
+    private String[] orderByFields = new String[0];
+
 
-    public Scroll(TableInJoinRequestBuilder request, int pageSize) {
+    public Scroll(TableInJoinRequestBuilder request, int pageSize, int numOfSlices, IndexStats indexStats) {
         this.request = request;
         this.pageSize = pageSize;
+        this.numOfSlices = numOfSlices;
+        this.indexStats = indexStats;
     }
 
     @Override
@@ -74,9 +119,23 @@ public class Scroll extends BatchPhysicalOperator<SearchHit> {
         return new PlanNode[0];
     }
 
+    /**
+     * Estimate by number of documents matched by WHERE if counted at plan time, otherwise doc count
+     * of the index which is upper bound. Number of rows is unknown without statistics.
+     */
     @Override
     public Cost estimate() {
-        return new Cost();
+        if (!indexStats.isKnown()) {
+            return Cost.INFINITY;
+        }
+        return new Cost(indexStats.getDocNum(), indexStats.getDocNum());
+    }
+
+    /**
+     * @return  statistics of the index scrolled
+     */
+    public IndexStats stats() {
+        return indexStats;
     }
 
     @Override
@@ -101,7 +160,12 @@ public class Scroll extends BatchPhysicalOperator<SearchHit> {
 
     @Override
     public void close() {
-        if (scrollResponse != null) {
+        super.close();
+        if (slicedScroll != null) {
+            LOG.debug("Closing all sliced scroll resources");
+            slicedScroll.close();
+            slicedScroll = null;
+        } else if (scrollResponse != null) {
             LOG.debug("Closing all scroll resources");
             ClearScrollResponse clearScrollResponse = client.prepareClearScroll().
                                                              addScrollId(scrollResponse.getScrollId()).
@@ -116,11 +180,15 @@ public class Scroll extends BatchPhysicalOperator<SearchHit> {
     }
 
     @Override
-    protected Collection<Row<SearchHit>> prefetch() {
+    protected Collection<Row<SearchHit>> prefetch() throws Exception {
         Objects.requireNonNull(client, "Client connection is not ready");
         Objects.requireNonNull(resourceMgr, "ResourceManager is not set");
         Objects.requireNonNull(timeout, "Time out is not set");
 
+        if (isSliced()) {
+            return prefetchFromSlices();
+        }
+
         if (scrollResponse == null) {
             loadFirstBatch();
             updateMetaResult();
@@ -130,6 +198,20 @@ public class Scroll extends BatchPhysicalOperator<SearchHit> {
         return wrapRowForCurrentBatch();
     }
 
+    /** Load next page from any slice which arrives first */
+    private Collection<Row<SearchHit>> prefetchFromSlices() throws InterruptedException {
+        if (slicedScroll == null) {
+            slicedScroll = new SlicedScroll(client, numOfSlices(), TimeValue.timeValueSeconds(timeout));
+            slicedScroll.open(prepareRequest().request());
+        }
+
+        SearchResponse response = slicedScroll.next(this::updateMetaResult);
+        if (response == null) {
+            return emptyList();
+        }
+        return wrapRow(response.getHits().getHits());
+    }
+
     /**
      * Extra filter pushed down from upstream. Re-parse WHERE clause with extra filter
      * because ES RequestBuilder doesn't allow QueryBuilder inside be changed after added.
@@ -146,19 +228,155 @@ public class Scroll extends BatchPhysicalOperator<SearchHit> {
         return newQuery;
     }
 
+    /**
+     * Scroll in order of the fields given rather than index order.
+     * Note that missing value sorts last which is consistent with NULL key handling in merge join.
+     *
+     * @param fieldNames    field names to sort by
+     */
+    public void orderBy(String[] fieldNames) {
+        this.orderByFields = fieldNames;
+    }
+
+    /**
+     * Types of the fields to sort by for merge join. Integral types are all returned as long because their doc
+     * values are exact long values and thus sorted and compared the same way.
+     *
+     * @param fieldNames    field names to sort by
+     * @return              types of fields, or null if any field is not of sortable type, mapped to different types
+     *                      in indices scrolled or mapping is unavailable
+     */
+    public String[] sortTypesOf(String[] fieldNames) {
+        String[] types = new String[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            String type = typeOf(indices(), fieldNames[i]);
+            if (type == null || !SORTABLE_TYPES.contains(type)) {
+                return null;
+            }
+            types[i] = INTEGRAL_TYPES.contains(type) ? "long" : type;
+        }
+        return types;
+    }
+
+    /**
+     * Check if the field is mapped as keyword in all indices scrolled.
+     *
+     * @param fieldName     field name
+     * @return              true if keyword, false if not or mapping is unavailable
+     */
+    public boolean isKeywordField(String fieldName) {
+        return isKeywordField(indices(), fieldName);
+    }
+
+    /**
+     * Check if the field is mapped as keyword in all indices given.
+     *
+     * @param indices       index names or patterns
+     * @param fieldName     field name
+     * @return              true if keyword, false if not or mapping is unavailable
+     */
+    public static boolean isKeywordField(String[] indices, String fieldName) {
+        return isOfTypes(indices, new String[]{ fieldName }, KEYWORD_TYPES);
+    }
+
+    private static boolean isOfTypes(String[] indices, String[] fieldNames, List<String> types) {
+        try {
+            IndexMappings mappings = LocalClusterState.state().getFieldMappings(indices);
+            if (mappings.isEmpty()) {
+                return false;
+            }
+
+            for (TypeMappings typeMappings : mappings.allMappings()) {
+                for (FieldMappings fieldMappings : typeMappings.allMappings()) {
+                    for (String fieldName : fieldNames) {
+                        FieldInfo field = fieldMappings.pathIndex().get(fieldName);
+                        if (field == null || !types.contains(field.getType())) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            LOG.debug("Failed to read mapping to check if fields are of types " + types + ": "
+                + Arrays.toString(fieldNames), e);
+            return false;
+        }
+    }
+
+    /** Type of the field if mapped to the same type in all indices given, otherwise null */
+    private static String typeOf(String[] indices, String fieldName) {
+        try {
+            String type = null;
+            for (TypeMappings typeMappings : LocalClusterState.state().getFieldMappings(indices).allMappings()) {
+                for (FieldMappings fieldMappings : typeMappings.allMappings()) {
+                    FieldInfo field = fieldMappings.pathIndex().get(fieldName);
+                    if (field == null || (type != null && !type.equals(field.getType()))) {
+                        return null;
+                    }
+                    type = field.getType();
+                }
+            }
+            return type;
+        } catch (RuntimeException e) {
+            LOG.debug("Failed to read mapping to find type of field: " + fieldName, e);
+            return null;
+        }
+    }
+
+    private String[] indices() {
+        return request.getRequestBuilder().request().indices();
+    }
+
+    /**
+     * Slice scroll only if more than one slice. Sorted scroll is always sequential
+     * because each slice is only sorted locally.
+     */
+    private boolean isSliced() {
+        return numOfSlices() > 1 && orderByFields.length == 0;
+    }
+
+    /**
+     * Number of slices configured by hint, or number of primary shards by default only if documents matched
+     * are known to fill at least MIN_PAGES_PER_SLICE pages in each slice.
+     */
+    private int numOfSlices() {
+        if (numOfSlices > 0) {
+            return numOfSlices;
+        }
+
+        int numOfShards = Math.max(indexStats.getNumOfShards(), 1);
+        if (indexStats.isKnown() && indexStats.getDocNum() >= (long) numOfShards * pageSize * MIN_PAGES_PER_SLICE) {
+            return numOfShards;
+        }
+        return 1;
+    }
+
+    private SearchRequestBuilder prepareRequest() {
+        SearchRequestBuilder requestBuilder = request.getRequestBuilder();
+        for (String fieldName : orderByFields) {
+            requestBuilder.addSort(fieldName, SortOrder.ASC);
+        }
+
+        return requestBuilder.
+                   addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC).
+                   setSize(pageSize).
+                   setScroll(TimeValue.timeValueSeconds(timeout));
+    }
+
     private void loadFirstBatch() {
-        scrollResponse = request.getRequestBuilder().
-                                 addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC).
-                                 setSize(pageSize).
-                                 setScroll(TimeValue.timeValueSeconds(timeout)).
-                                 get();
+        scrollResponse = prepareRequest().get();
     }
 
     private void updateMetaResult() {
-        resourceMgr.getMetaResult().addTotalNumOfShards(scrollResponse.getTotalShards());
-        resourceMgr.getMetaResult().addSuccessfulShards(scrollResponse.getSuccessfulShards());
-        resourceMgr.getMetaResult().addFailedShards(scrollResponse.getFailedShards());
-        resourceMgr.getMetaResult().updateTimeOut(scrollResponse.isTimedOut());
+        updateMetaResult(scrollResponse);
+    }
+
+    private void updateMetaResult(SearchResponse response) {
+        resourceMgr.getMetaResult().addTotalNumOfShards(response.getTotalShards());
+        resourceMgr.getMetaResult().addSuccessfulShards(response.getSuccessfulShards());
+        resourceMgr.getMetaResult().addFailedShards(response.getFailedShards());
+        resourceMgr.getMetaResult().updateTimeOut(response.isTimedOut());
     }
 
     private void loadNextBatchByScrollId() {
@@ -167,9 +385,12 @@ public class Scroll extends BatchPhysicalOperator<SearchHit> {
                                 get();
     }
 
-    @SuppressWarnings("unchecked")
     private Collection<Row<SearchHit>> wrapRowForCurrentBatch() {
-        SearchHit[] hits = scrollResponse.getHits().getHits();
+        return wrapRow(scrollResponse.getHits().getHits());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Row<SearchHit>> wrapRow(SearchHit[] hits) {
         Row[] rows = new Row[hits.length];
         for (int i = 0; i < hits.length; i++) {
             rows[i] = new SearchHitRow(hits[i], request.getAlias());
@@ -179,7 +400,8 @@ public class Scroll extends BatchPhysicalOperator<SearchHit> {
 
     @Override
     public String toString() {
-        return "Scroll [ " + describeTable() + ", pageSize=" + pageSize + " ]";
+        return "Scroll [ " + describeTable() + ", pageSize=" + pageSize
+            + (isSliced() ? ", slices=" + numOfSlices() : "") + " ]";
     }
 
     private String describeTable() {
@@ -20,6 +20,7 @@ import org.elasticsearch.common.text.Text;
 import org.elasticsearch.search.SearchHit;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,6 +45,18 @@ import java.util.Map;
  */
 class SearchHitRow implements Row<SearchHit> {
 
+    /** Rough size of map entry including its slot in hash table */
+    private static final int MAP_ENTRY_SIZE = 40;
+
+    /** Rough size of object header plus fields of String, boxed number or collection without its content */
+    private static final int OBJECT_SIZE = 40;
+
+    /** Rough size of reference to element in list */
+    private static final int REFERENCE_SIZE = 8;
+
+    /** Rough size of SearchHit object itself along with its metadata */
+    private static final int SEARCH_HIT_SIZE = 256;
+
     /** Native ES data object for each row */
     private final SearchHit hit;
 
@@ -65,6 +78,17 @@ class SearchHitRow implements Row<SearchHit> {
             return RowKey.NULL;
         }
 
+        // Avoid array allocation for single and two column(s) which are most common in join
+        if (colNames.length == 1) {
+            Object key = getValueOfPath(colNames[0]);
+            return (key == null) ? RowKey.NULL : RowKey.of(key);
+        }
+        if (colNames.length == 2) {
+            Object key1 = getValueOfPath(colNames[0]);
+            Object key2 = getValueOfPath(colNames[1]);
+            return (key1 == null || key2 == null) ? RowKey.NULL : RowKey.of(key1, key2);
+        }
+
         Object[] keys = new Object[colNames.length];
         for (int i = 0; i < colNames.length; i++) {
             keys[i] = getValueOfPath(colNames[i]);
@@ -73,7 +97,7 @@ class SearchHitRow implements Row<SearchHit> {
                 return RowKey.NULL;
             }
         }
-        return new RowKey(keys);
+        return RowKey.of(keys);
     }
 
     /**
@@ -112,6 +136,52 @@ class SearchHitRow implements Row<SearchHit> {
         return hit;
     }
 
+    /**
+     * Estimate from source map rather than _source bytes, because the bytes are stale or even empty
+     * for rows combined, retained or decoded from spill file while the map holds all values on heap.
+     */
+    @Override
+    public long estimatedSize() {
+        if (source == null) {
+            return -1;
+        }
+        return SEARCH_HIT_SIZE + estimatedSizeOf(source);
+    }
+
+    @Override
+    public Object[] sortValues() {
+        return hit.getSortValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long estimatedSizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return OBJECT_SIZE + 2L * ((String) value).length();
+        }
+        if (value instanceof Map) {
+            long size = OBJECT_SIZE;
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                size += MAP_ENTRY_SIZE + estimatedSizeOf(entry.getKey()) + estimatedSizeOf(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = OBJECT_SIZE;
+            for (Object element : (Collection<Object>) value) {
+                size += REFERENCE_SIZE + estimatedSizeOf(element);
+            }
+            return size;
+        }
+        return OBJECT_SIZE;
+    }
+
+    String tableAlias() {
+        return tableAlias;
+    }
+
     @Override
     public String toString() {
         return "SearchHitRow{" + "hit=" + source + '}';
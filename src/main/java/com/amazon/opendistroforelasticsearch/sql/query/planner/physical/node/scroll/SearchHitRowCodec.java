@@ -0,0 +1,100 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.RowCodec;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of search hit row. Only state required by join and sort is kept:
+ * table alias, doc id, _id, _type, source and fields. Others like score, highlight and sort values are dropped.
+ *
+ * Note that source is encoded from the map rather than raw _source bytes, because source map of a row
+ * is rewritten by combine() and retain() while the bytes are still the original ones.
+ */
+public class SearchHitRowCodec implements RowCodec<SearchHit> {
+
+    private static final SearchHitRowCodec INSTANCE = new SearchHitRowCodec();
+
+    /** Empty source parsed to a mutable map which is filled by source decoded */
+    private static final BytesArray EMPTY_SOURCE = new BytesArray("{}");
+
+    /** All rows in query plan are search hit rows for now */
+    @SuppressWarnings("unchecked")
+    public static <T> RowCodec<T> instance() {
+        return (RowCodec<T>) INSTANCE;
+    }
+
+    @Override
+    public void write(Row<SearchHit> row, StreamOutput out) throws IOException {
+        SearchHitRow hitRow = (SearchHitRow) row;
+        SearchHit hit = hitRow.data();
+
+        out.writeString(hitRow.tableAlias());
+        out.writeVInt(hit.docId());
+        out.writeOptionalString(hit.getId());
+        out.writeOptionalString(hit.getType());
+
+        Map<String, Object> source = hit.getSourceAsMap();
+        out.writeBoolean(source != null);
+        if (source != null) {
+            out.writeMap(source);
+        }
+
+        Map<String, DocumentField> fields = hit.getFields();
+        out.writeVInt(fields.size());
+        for (DocumentField field : fields.values()) {
+            field.writeTo(out);
+        }
+    }
+
+    @Override
+    public Row<SearchHit> read(StreamInput in) throws IOException {
+        String tableAlias = in.readString();
+        int docId = in.readVInt();
+        String id = in.readOptionalString();
+        String type = in.readOptionalString();
+        Map<String, Object> source = in.readBoolean() ? in.readMap() : null;
+
+        SearchHit hit = new SearchHit(docId, id, (type == null) ? null : new Text(type), readFields(in));
+        if (source != null) {
+            hit.sourceRef(EMPTY_SOURCE);
+            hit.getSourceAsMap().putAll(source);
+        }
+        return new SearchHitRow(hit, tableAlias);
+    }
+
+    private Map<String, DocumentField> readFields(StreamInput in) throws IOException {
+        int size = in.readVInt();
+        Map<String, DocumentField> fields = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            DocumentField field = DocumentField.readDocumentField(in);
+            fields.put(field.getName(), field);
+        }
+        return fields;
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequestBuilder;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.slice.SliceBuilder;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sliced scroll that scrolls N slices of the same search request concurrently.
+ *
+ * Each slice has at most one request in flight and next page of a slice is requested only after its
+ * current page is taken by consumer. So the response queue is bounded by number of slices naturally
+ * and network round trips of all slices overlap with the consumption of current page.
+ */
+public class SlicedScroll {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Client connection to ElasticSearch */
+    private final Client client;
+
+    /** Number of slices */
+    private final int numOfSlices;
+
+    /** Scroll keep alive and also the max time to wait for response of any slice */
+    private final TimeValue keepAlive;
+
+    /** Responses (or failures) received from all slices but not yet consumed */
+    private final BlockingQueue<SliceResponse> responses = new LinkedBlockingQueue<>();
+
+    /** Latest scroll ID of each slice to clear when closed */
+    private final String[] scrollIds;
+
+    /** Number of slices not exhausted yet */
+    private int numOfActiveSlices;
+
+    /** Closed already so that response arriving late is cleared right away instead of queued */
+    private boolean isClosed = false;
+
+    public SlicedScroll(Client client, int numOfSlices, TimeValue keepAlive) {
+        this.client = client;
+        this.numOfSlices = numOfSlices;
+        this.keepAlive = keepAlive;
+        this.scrollIds = new String[numOfSlices];
+    }
+
+    /**
+     * Open scroll on all slices by copying the request with different slice.
+     *
+     * @param request   search request (with sort and size) to scroll over
+     */
+    public void open(SearchRequest request) {
+        Objects.requireNonNull(request.source(), "Search source is required for sliced scroll");
+
+        numOfActiveSlices = numOfSlices;
+        for (int i = 0; i < numOfSlices; i++) {
+            SearchRequest sliceRequest = new SearchRequest(request.indices()).
+                                             types(request.types()).
+                                             indicesOptions(request.indicesOptions()).
+                                             routing(request.routing()).
+                                             preference(request.preference()).
+                                             scroll(keepAlive).
+                                             source(request.source().copyWithNewSlice(new SliceBuilder(i, numOfSlices)));
+            client.search(sliceRequest, listener(i, true));
+        }
+    }
+
+    /**
+     * Take next non-empty page from any slice and request the following page of that slice.
+     *
+     * @param onFirstPage   callback for first response of each slice
+     * @return              next response or null if all slices exhausted
+     */
+    public SearchResponse next(Consumer<SearchResponse> onFirstPage) throws InterruptedException {
+        while (numOfActiveSlices > 0) {
+            SliceResponse sliceResponse = responses.poll(keepAlive.seconds(), TimeUnit.SECONDS);
+            if (sliceResponse == null) {
+                throw new IllegalStateException("Time out waiting for response of sliced scroll");
+            }
+            if (sliceResponse.failure != null) {
+                throw new IllegalStateException(
+                    "Failed to scroll slice " + sliceResponse.sliceId, sliceResponse.failure);
+            }
+
+            SearchResponse response = sliceResponse.response;
+            scrollIds[sliceResponse.sliceId] = response.getScrollId();
+            if (sliceResponse.isFirstPage) {
+                onFirstPage.accept(response);
+            }
+
+            if (response.getHits().getHits().length == 0) {
+                LOG.debug("Slice {} of {} exhausted", sliceResponse.sliceId, numOfSlices);
+                numOfActiveSlices--;
+            }
+            else {
+                client.prepareSearchScroll(response.getScrollId()).
+                       setScroll(keepAlive).
+                       execute(listener(sliceResponse.sliceId, false));
+                return response;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Clear scroll context of all slices, including those of responses received but not consumed.
+     * Response in flight if any will be cleared once it arrives.
+     */
+    public void close() {
+        ClearScrollRequestBuilder clearScroll = client.prepareClearScroll();
+        boolean isAnyScrollId = false;
+        synchronized (this) {
+            isClosed = true;
+            for (SliceResponse sliceResponse : responses) {
+                if (sliceResponse.response != null && sliceResponse.response.getScrollId() != null) {
+                    scrollIds[sliceResponse.sliceId] = sliceResponse.response.getScrollId();
+                }
+            }
+            responses.clear();
+        }
+
+        for (String scrollId : scrollIds) {
+            if (scrollId != null) {
+                clearScroll.addScrollId(scrollId);
+                isAnyScrollId = true;
+            }
+        }
+
+        if (isAnyScrollId) {
+            ClearScrollResponse clearScrollResponse = clearScroll.get();
+            if (!clearScrollResponse.isSucceeded()) {
+                LOG.warn("Failed to close sliced scroll: {}", clearScrollResponse.status());
+            }
+        }
+    }
+
+    private ActionListener<SearchResponse> listener(int sliceId, boolean isFirstPage) {
+        return new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                synchronized (SlicedScroll.this) {
+                    if (!isClosed) {
+                        responses.offer(new SliceResponse(sliceId, isFirstPage, response, null));
+                        return;
+                    }
+                }
+                clearLateResponse(sliceId, response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                responses.offer(new SliceResponse(sliceId, isFirstPage, null, e));
+            }
+        };
+    }
+
+    /** Clear scroll context opened by response arriving after closed, which is otherwise kept until keep alive */
+    private void clearLateResponse(int sliceId, SearchResponse response) {
+        if (response.getScrollId() == null) {
+            return;
+        }
+
+        LOG.debug("Clear scroll of slice {} whose response arrived after closed", sliceId);
+        client.prepareClearScroll().
+               addScrollId(response.getScrollId()).
+               execute(ActionListener.wrap(
+                   clearScrollResponse -> { },
+                   e -> LOG.warn("Failed to clear scroll of slice " + sliceId + " arrived after closed", e)
+               ));
+    }
+
+    /** Response or failure of a slice */
+    private static class SliceResponse {
+        private final int sliceId;
+        private final boolean isFirstPage;
+        private final SearchResponse response;
+        private final Exception failure;
+
+        private SliceResponse(int sliceId, boolean isFirstPage, SearchResponse response, Exception failure) {
+            this.sliceId = sliceId;
+            this.isFirstPage = isFirstPage;
+            this.response = response;
+            this.failure = failure;
+        }
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.sort;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.RowCodec;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.BatchPhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.SpillFile;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Physical operator to sort by external merge sort for input too large to sort in memory.
+ *
+ *  1) Sort phase: read rows from child into buffer. Whenever buffer is full, sort and spill it
+ *      to a local temp file as a sorted run.
+ *  2) Merge phase: stream k-way merge of all runs back to parent batch by batch.
+ *
+ * If all rows fit in the buffer, no run is spilled and rows are sorted in memory just like QuickSort.
+ *
+ * @param <T>   actual data type, ex.SearchHit
+ */
+public class ExternalMergeSort<T> extends BatchPhysicalOperator<T> {
+
+    private final static Logger LOG = LogManager.getLogger();
+
+    /** Number of rows returned in each batch during merge phase */
+    private static final int MERGE_BATCH_SIZE = 1000;
+
+    /** Number of rows loaded before charging them to memory account together */
+    private static final int CHARGE_BATCH_SIZE = 1000;
+
+    /** Each row is encoded, written to and read from local disk */
+    private static final int SPILL_COST_FACTOR = 3;
+
+    private final PhysicalOperator<T> next;
+
+    /**
+     * Column name list in ORDER BY
+     */
+    private final String[] orderByColNames;
+
+    /**
+     * Order by type, ex. ASC, DESC
+     */
+    private final String orderByType;
+
+    /**
+     * Max number of rows sorted in memory for each run
+     */
+    private final int bufferSize;
+
+    /**
+     * Binary encoding of row spilled
+     */
+    private final RowCodec<T> codec;
+
+    private final Comparator<RowKey> keyComparator;
+
+    /** Temp directory with all run files */
+    private Path spillDir;
+
+    /** Sorted runs spilled */
+    private final List<SpillFile<T>> runs = new ArrayList<>();
+
+    /** Head row of each run being merged */
+    private PriorityQueue<RunHead<T>> mergeHeap;
+
+    private boolean isDone = false;
+
+    public ExternalMergeSort(PhysicalOperator<T> next, List<String> orderByColNames, String orderByType,
+                             int bufferSize, RowCodec<T> codec) {
+        this.next = next;
+        this.orderByColNames = orderByColNames.toArray(new String[0]);
+        this.orderByType = orderByType;
+        this.bufferSize = Math.max(bufferSize, 1);
+        this.codec = codec;
+        this.keyComparator = TopNSort.createKeyComparator(orderByType);
+    }
+
+    @Override
+    public PlanNode[] children() {
+        return new PlanNode[]{next};
+    }
+
+    /**
+     * Sort in memory plus spilling each row once:
+     *  time = time(child) + n * log(n) + SPILL_COST_FACTOR * n
+     */
+    @Override
+    public Cost estimate() {
+        Cost cost = next.estimate();
+        if (cost.isInfinite()) {
+            return Cost.INFINITY;
+        }
+
+        long size = cost.inputSize();
+        long log2 = 64 - Long.numberOfLeadingZeros(Math.max(size, 1));
+        return new Cost(
+            size,
+            Cost.plus(cost.time(), Cost.plus(Cost.times(size, log2), Cost.times(SPILL_COST_FACTOR, size)))
+        );
+    }
+
+    @Override
+    public void open(ExecuteParams params) throws Exception {
+        super.open(params);
+        next.open(params);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (mergeHeap != null) {
+            mergeHeap.forEach(head -> head.reader.close());
+            mergeHeap = null;
+        }
+        runs.forEach(SpillFile::closeQuietly);
+        runs.clear();
+
+        if (spillDir != null) {
+            try {
+                IOUtils.rm(spillDir);
+            }
+            catch (IOException e) {
+                LOG.warn("Failed to delete spill directory of sort: " + spillDir, e);
+            }
+            spillDir = null;
+        }
+    }
+
+    @Override
+    protected Collection<Row<T>> prefetch() throws Exception {
+        if (isDone) {
+            return emptyList();
+        }
+
+        if (mergeHeap == null) {
+            List<Row<T>> lastRun = sortAndSpillRuns();
+            if (runs.isEmpty()) {
+                isDone = true;
+                return lastRun;
+            }
+            startMerge();
+        }
+        return mergeNextBatch();
+    }
+
+    /**
+     * Sort phase. Return rows sorted if all rows fit in buffer. Otherwise all runs are spilled.
+     */
+    private List<Row<T>> sortAndSpillRuns() throws IOException {
+        List<Row<T>> buffer = new ArrayList<>();
+        List<Row<T>> rowsToCharge = new ArrayList<>();
+        long bufferBytes = 0;
+        while (next.hasNext()) {
+            Row<T> row = next.next();
+            buffer.add(row);
+            rowsToCharge.add(row);
+            if (rowsToCharge.size() >= CHARGE_BATCH_SIZE || buffer.size() >= bufferSize) {
+                bufferBytes += chargeMemory(rowsToCharge);
+                rowsToCharge.clear();
+            }
+            if (buffer.size() >= bufferSize) {
+                spill(sort(buffer));
+                buffer = new ArrayList<>();
+                releaseMemory(bufferBytes);
+                bufferBytes = 0;
+            }
+        }
+        bufferBytes += chargeMemory(rowsToCharge);
+
+        List<Row<T>> lastRun = sort(buffer);
+        if (runs.isEmpty()) {
+            LOG.debug("All {} rows sorted in memory without spilling", lastRun.size());
+            return lastRun;
+        }
+
+        if (!lastRun.isEmpty()) {
+            spill(lastRun);
+        }
+        releaseMemory(bufferBytes);
+        LOG.debug("Spilled {} sorted runs to {}", runs.size(), spillDir);
+        return emptyList();
+    }
+
+    /** Stable sort with key of each row computed only once */
+    private List<Row<T>> sort(List<Row<T>> rows) {
+        List<RunHead<T>> keyedRows = new ArrayList<>(rows.size());
+        for (Row<T> row : rows) {
+            keyedRows.add(new RunHead<>(0, null, row, row.key(orderByColNames)));
+        }
+        keyedRows.sort((row1, row2) -> keyComparator.compare(row1.key, row2.key));
+
+        List<Row<T>> sorted = new ArrayList<>(rows.size());
+        for (RunHead<T> keyedRow : keyedRows) {
+            sorted.add(keyedRow.row);
+        }
+        return sorted;
+    }
+
+    private void spill(List<Row<T>> sortedRun) throws IOException {
+        if (spillDir == null) {
+            spillDir = Files.createTempDirectory("sql-sort-");
+        }
+
+        SpillFile<T> run = new SpillFile<>(spillDir.resolve("run-" + runs.size()), codec);
+        runs.add(run);
+        for (Row<T> row : sortedRun) {
+            run.write(row);
+        }
+        run.finishWrite();
+    }
+
+    /** Open all runs and put head row of each run into heap. Tie is broken by run index to keep sort stable */
+    private void startMerge() throws IOException {
+        mergeHeap = new PriorityQueue<>(runs.size(), (head1, head2) -> {
+            int result = keyComparator.compare(head1.key, head2.key);
+            return (result != 0) ? result : Integer.compare(head1.runIndex, head2.runIndex);
+        });
+
+        for (int i = 0; i < runs.size(); i++) {
+            SpillFile.Reader<T> reader = runs.get(i).openReader();
+            if (reader.hasNext()) {
+                Row<T> row = reader.next();
+                mergeHeap.offer(new RunHead<>(i, reader, row, row.key(orderByColNames)));
+            }
+            else {
+                reader.close();
+            }
+        }
+    }
+
+    /** Merge phase. Keep polling the smallest head and replace it by next row in the same run */
+    private List<Row<T>> mergeNextBatch() {
+        List<Row<T>> batch = new ArrayList<>();
+        while (batch.size() < MERGE_BATCH_SIZE && !mergeHeap.isEmpty()) {
+            RunHead<T> head = mergeHeap.poll();
+            batch.add(head.row);
+
+            if (head.reader.hasNext()) {
+                head.row = head.reader.next();
+                head.key = head.row.key(orderByColNames);
+                mergeHeap.offer(head);
+            }
+            else {
+                head.reader.close();
+            }
+        }
+
+        if (mergeHeap.isEmpty()) {
+            isDone = true;
+        }
+        return batch;
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalMergeSort [ columns=" + Arrays.toString(orderByColNames) + ", order=" + orderByType
+            + ", bufferSize=" + bufferSize + " ]";
+    }
+
+    /** Current row of a sorted run with its key computed once */
+    private static class RunHead<T> {
+        private final int runIndex;
+        private final SpillFile.Reader<T> reader;
+        private Row<T> row;
+        private RowKey key;
+
+        RunHead(int runIndex, SpillFile.Reader<T> reader, Row<T> row, RowKey key) {
+            this.runIndex = runIndex;
+            this.reader = reader;
+            this.row = row;
+            this.key = key;
+        }
+    }
+
+}
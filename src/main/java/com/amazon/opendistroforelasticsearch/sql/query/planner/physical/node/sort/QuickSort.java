@@ -42,6 +42,9 @@ public class QuickSort<T> extends BatchPhysicalOperator<T> {
 
     private final static Logger LOG = LogManager.getLogger();
 
+    /** Number of rows loaded before charging them to memory account together */
+    private static final int CHARGE_BATCH_SIZE = 1000;
+
     private final PhysicalOperator<T> next;
 
     /**
@@ -69,7 +72,14 @@ public class QuickSort<T> extends BatchPhysicalOperator<T> {
 
     @Override
     public Cost estimate() {
-        return new Cost();
+        Cost cost = next.estimate();
+        if (cost.isInfinite()) {
+            return Cost.INFINITY;
+        }
+
+        long size = cost.inputSize();
+        long log2 = 64 - Long.numberOfLeadingZeros(Math.max(size, 1));
+        return new Cost(size, Cost.plus(cost.time(), Cost.times(size, log2)));
     }
 
     @Override
@@ -88,7 +98,17 @@ public class QuickSort<T> extends BatchPhysicalOperator<T> {
         }
 
         List<Row<T>> allRowsSorted = new ArrayList<>();
-        next.forEachRemaining(allRowsSorted::add);
+        List<Row<T>> rowsToCharge = new ArrayList<>();
+        while (next.hasNext()) {
+            Row<T> row = next.next();
+            allRowsSorted.add(row);
+            rowsToCharge.add(row);
+            if (rowsToCharge.size() >= CHARGE_BATCH_SIZE) {
+                chargeMemory(rowsToCharge);
+                rowsToCharge.clear();
+            }
+        }
+        chargeMemory(rowsToCharge);
         allRowsSorted.sort(createRowComparator());
 
         if (LOG.isTraceEnabled()) {
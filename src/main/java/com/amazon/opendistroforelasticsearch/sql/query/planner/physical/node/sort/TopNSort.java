@@ -0,0 +1,188 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.sort;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.ExecuteParams;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.PlanNode;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.PhysicalOperator;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.estimation.Cost;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.BatchPhysicalOperator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Physical operator to sort and keep top N rows only by a bounded heap, which is used for ORDER BY with LIMIT.
+ * Only N rows are held in memory no matter how many rows from child.
+ *
+ * @param <T>   actual data type, ex.SearchHit
+ */
+public class TopNSort<T> extends BatchPhysicalOperator<T> {
+
+    private final static Logger LOG = LogManager.getLogger();
+
+    /** Number of rows loaded before charging them to memory account together */
+    private static final int CHARGE_BATCH_SIZE = 1000;
+
+    private final PhysicalOperator<T> next;
+
+    /**
+     * Column name list in ORDER BY
+     */
+    private final String[] orderByColNames;
+
+    /**
+     * Order by type, ex. ASC, DESC
+     */
+    private final String orderByType;
+
+    /**
+     * Number of rows to keep
+     */
+    private final int count;
+
+    private boolean isDone = false;
+
+    public TopNSort(PhysicalOperator<T> next, List<String> orderByColNames, String orderByType, int count) {
+        this.next = next;
+        this.orderByColNames = orderByColNames.toArray(new String[0]);
+        this.orderByType = orderByType;
+        this.count = count;
+    }
+
+    @Override
+    public PlanNode[] children() {
+        return new PlanNode[]{next};
+    }
+
+    @Override
+    public Cost estimate() {
+        Cost cost = next.estimate();
+        if (cost.isInfinite()) {
+            return Cost.INFINITY;
+        }
+
+        long size = cost.inputSize();
+        long log2 = 64 - Long.numberOfLeadingZeros(Math.max(Math.min(size, count), 1));
+        return new Cost(Math.min(size, count), Cost.plus(cost.time(), Cost.times(size, log2)));
+    }
+
+    @Override
+    public void open(ExecuteParams params) throws Exception {
+        super.open(params);
+        next.open(params);
+    }
+
+    /**
+     * Load all data once and return top N rows sorted in one batch
+     */
+    @Override
+    protected Collection<Row<T>> prefetch() {
+        if (isDone) {
+            return emptyList();
+        }
+
+        // Heap head is the worst among rows kept so far
+        Comparator<SortEntry<T>> comparator = createEntryComparator();
+        int initialCapacity = Math.max(Math.min(count, 1024), 1);
+        PriorityQueue<SortEntry<T>> heap = new PriorityQueue<>(initialCapacity, comparator.reversed());
+        List<Row<T>> rowsToCharge = new ArrayList<>();
+        long seq = 0;
+        while (next.hasNext()) {
+            Row<T> row = next.next();
+            SortEntry<T> entry = new SortEntry<>(row, row.key(orderByColNames), seq++);
+            if (heap.size() < count) {
+                heap.offer(entry);
+                rowsToCharge.add(row);
+                if (rowsToCharge.size() >= CHARGE_BATCH_SIZE) {
+                    chargeMemory(rowsToCharge);
+                    rowsToCharge.clear();
+                }
+            }
+            else if (!heap.isEmpty() && comparator.compare(entry, heap.peek()) < 0) {
+                heap.poll(); // Heap no longer grows, so only rows filling it up are charged
+                heap.offer(entry);
+            }
+        }
+        chargeMemory(rowsToCharge);
+
+        List<SortEntry<T>> entries = new ArrayList<>(heap);
+        entries.sort(comparator);
+
+        List<Row<T>> topRowsSorted = new ArrayList<>(entries.size());
+        for (SortEntry<T> entry : entries) {
+            topRowsSorted.add(entry.row);
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Top {} rows sorted out of {} rows: {}", count, seq, topRowsSorted);
+        }
+
+        isDone = true;
+        return topRowsSorted;
+    }
+
+    /**
+     * Order by key (NULL comes last in ASC and first in DESC) and then by arrival order
+     * to be stable as the full sort.
+     */
+    private Comparator<SortEntry<T>> createEntryComparator() {
+        Comparator<RowKey> keyComparator = createKeyComparator(orderByType);
+        return (entry1, entry2) -> {
+            int result = keyComparator.compare(entry1.key, entry2.key);
+            return (result != 0) ? result : Long.compare(entry1.seq, entry2.seq);
+        };
+    }
+
+    /** NULL key comes last in ASC and first in DESC */
+    static Comparator<RowKey> createKeyComparator(String orderByType) {
+        Comparator<RowKey> keyComparator = Comparator.nullsLast(Comparator.<RowKey>naturalOrder());
+        if ("DESC".equals(orderByType)) {
+            keyComparator = keyComparator.reversed();
+        }
+        return keyComparator;
+    }
+
+    @Override
+    public String toString() {
+        return "TopNSort [ columns=" + Arrays.toString(orderByColNames) + ", order=" + orderByType
+            + ", count=" + count + " ]";
+    }
+
+    /** Row with its key computed once and arrival sequence */
+    private static class SortEntry<T> {
+        private final Row<T> row;
+        private final RowKey key;
+        private final long seq;
+
+        SortEntry(Row<T> row, RowKey key, long seq) {
+            this.row = row;
+            this.key = key;
+            this.seq = seq;
+        }
+    }
+
+}
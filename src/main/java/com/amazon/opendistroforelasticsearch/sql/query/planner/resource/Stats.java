@@ -15,7 +15,27 @@
 
 package com.amazon.opendistroforelasticsearch.sql.query.planner.resource;
 
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyMap;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.cardinality;
 
 /**
  * Statistics collector collects from ES stats, JVM etc for other components:
@@ -26,18 +46,243 @@ import org.elasticsearch.client.Client;
  */
 public class Stats {
 
-    /** Client connection to ES cluster (unused now) */
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Time to live of index statistics cached. Stale statistics is acceptable for estimation purpose. */
+    public static final long INDEX_STATS_TTL_SECONDS = 60;
+
+    /**
+     * Index statistics cached across queries because collecting them costs one round trip per index (and field).
+     * Collected at plan time only so no need to be accurate.
+     */
+    private static final Cache<String, IndexStats> INDEX_STATS_CACHE = CacheBuilder.newBuilder().
+        maximumSize(1000).
+        expireAfterWrite(INDEX_STATS_TTL_SECONDS, TimeUnit.SECONDS).
+        build();
+
+    /** Field cardinality cache with key "index/field" */
+    private static final Cache<String, Long> CARDINALITY_CACHE = CacheBuilder.newBuilder().
+        maximumSize(1000).
+        expireAfterWrite(INDEX_STATS_TTL_SECONDS, TimeUnit.SECONDS).
+        build();
+
+    /** Hit count cache with key "index/query" so that same join side in repeated queries counts only once */
+    private static final Cache<String, Long> HIT_COUNT_CACHE = CacheBuilder.newBuilder().
+        maximumSize(1000).
+        expireAfterWrite(INDEX_STATS_TTL_SECONDS, TimeUnit.SECONDS).
+        build();
+
+    /**
+     * Max number of documents sampled per shard to estimate field cardinality. Plan time is bounded by this
+     * rather than index size because the estimate is only used to choose join algorithm.
+     */
+    public static final int CARDINALITY_SAMPLE_SIZE_PER_SHARD = 10_000;
+
+    /** Max time to wait for cardinality estimation before giving up and treating it as unknown */
+    public static final TimeValue CARDINALITY_TIMEOUT = TimeValue.timeValueSeconds(1);
+
+    /**
+     * Max number of documents counted per shard for hit count of a query. Counting stops early beyond this
+     * so that estimation never costs as much as filtering the table again.
+     */
+    public static final int HIT_COUNT_TERMINATE_AFTER_PER_SHARD = 100_000;
+
+    /** Max time to wait for hit count before giving up and treating it as unknown */
+    public static final TimeValue HIT_COUNT_TIMEOUT = TimeValue.timeValueSeconds(1);
+
+    /** Max time to wait for index statistics before giving up and treating them as unknown */
+    public static final TimeValue INDEX_STATS_TIMEOUT = TimeValue.timeValueSeconds(1);
+
+    /** Client connection to ES cluster */
     private Client client;
 
+    /**
+     * Collect index statistics from cluster or not. Disabled when planning for explain only which runs
+     * in network thread and thus must not block on any round trip to cluster.
+     */
+    private final boolean isIndexStatsEnabled;
+
     public Stats(Client client) {
+        this(client, true);
+    }
+
+    public Stats(Client client, boolean isIndexStatsEnabled) {
         this.client = client;
+        this.isIndexStatsEnabled = isIndexStatsEnabled;
     }
 
     public MemStats collectMemStats() {
         return new MemStats(
             Runtime.getRuntime().freeMemory(),
-            Runtime.getRuntime().totalMemory()
+            Runtime.getRuntime().totalMemory(),
+            Runtime.getRuntime().maxMemory()
+        );
+    }
+
+    /**
+     * @return  bytes left before SQL circuit breaker trips, or Long.MAX_VALUE if no limit
+     */
+    public long collectBreakerHeadroom() {
+        return QueryMemoryAccount.headroom();
+    }
+
+    /**
+     * Collect doc count, store size and number of shards of index (pattern) and cardinality of fields given.
+     * Any failure, ex. index not found or field unable to aggregate, is ignored and results in unknown value
+     * because statistics is only used for estimation.
+     *
+     * @param index         index name or pattern
+     * @param fieldNames    field names to estimate cardinality for
+     * @return              index statistics or IndexStats.UNKNOWN if failed to collect or disabled
+     */
+    public IndexStats collectIndexStats(String index, String... fieldNames) {
+        if (!isIndexStatsEnabled) {
+            return IndexStats.UNKNOWN;
+        }
+
+        IndexStats stats;
+        try {
+            stats = INDEX_STATS_CACHE.get(index, () -> loadIndexStats(index));
+        }
+        catch (Exception e) {
+            LOG.debug("Failed to collect statistics of index [{}]: {}", index, e.getMessage());
+            return IndexStats.UNKNOWN;
+        }
+
+        if (fieldNames.length == 0 || !stats.isKnown()) {
+            return stats;
+        }
+
+        long docNum = stats.docNum;
+        Map<String, Long> cardinality = new HashMap<>();
+        for (String fieldName : fieldNames) {
+            try {
+                long value = CARDINALITY_CACHE.get(index + "/" + fieldName,
+                                                   () -> loadCardinality(index, fieldName, docNum));
+                if (value >= 0) {
+                    cardinality.put(fieldName, value);
+                }
+            }
+            catch (Exception e) {
+                LOG.debug("Failed to estimate cardinality of field [{}] in index [{}]: {}",
+                    fieldName, index, e.getMessage());
+            }
+        }
+        return new IndexStats(stats.docNum, stats.size, stats.numOfShards, cardinality);
+    }
+
+    /**
+     * Count documents matched by the query by a size=0 search bounded by terminate_after and timeout.
+     * The count is cached by index and query for the same time as index statistics because it is only
+     * used for estimation too.
+     *
+     * @param index     index name or pattern
+     * @param query     query to count, or null to match all
+     * @return          number of hits or -1 if failed, timed out, terminated early or disabled
+     */
+    public long countHits(String index, QueryBuilder query) {
+        if (!isIndexStatsEnabled) {
+            return -1;
+        }
+
+        String key = index + "/" + (query == null ? "" : Strings.toString(query));
+        try {
+            return HIT_COUNT_CACHE.get(key, () -> loadHitCount(index, query));
+        }
+        catch (Exception e) {
+            LOG.debug("Failed to count hits of query on index [{}]: {}", index, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Count terminated early is only a lower bound of the real one, so it is unknown (-1) as timeout is.
+     * Caller falls back to statistics of whole index which overestimates rather than underestimates.
+     */
+    private Long loadHitCount(String index, QueryBuilder query) {
+        SearchResponse response;
+        try {
+            response = client.prepareSearch(index).
+                              setQuery(query).
+                              setSize(0).
+                              setTerminateAfter(HIT_COUNT_TERMINATE_AFTER_PER_SHARD).
+                              setTimeout(HIT_COUNT_TIMEOUT).
+                              get(HIT_COUNT_TIMEOUT);
+        }
+        catch (ElasticsearchTimeoutException e) {
+            LOG.debug("Timed out counting hits of query on index [{}]", index);
+            return -1L;
+        }
+
+        if (response.isTimedOut() || Boolean.TRUE.equals(response.isTerminatedEarly())) {
+            LOG.debug("Hit count of query on index [{}] is incomplete", index);
+            return -1L;
+        }
+
+        long hitNum = response.getHits().getTotalHits();
+        LOG.debug("Counted hits of query on index [{}]: {}", index, hitNum);
+        return hitNum;
+    }
+
+    /** Timeout is cached as unknown to avoid waiting again within TTL, same as cardinality estimation */
+    private IndexStats loadIndexStats(String index) {
+        IndicesStatsResponse response;
+        try {
+            response = client.admin().indices().
+                              prepareStats(index).
+                              clear().
+                              setDocs(true).
+                              setStore(true).
+                              get(INDEX_STATS_TIMEOUT);
+        }
+        catch (ElasticsearchTimeoutException e) {
+            LOG.debug("Timed out collecting statistics of index [{}]", index);
+            return IndexStats.UNKNOWN;
+        }
+
+        int numOfShards = (int) Arrays.stream(response.getShards()).
+                                       filter(shard -> shard.getShardRouting().primary()).
+                                       count();
+        IndexStats stats = new IndexStats(
+            response.getPrimaries().getDocs().getCount(),
+            response.getPrimaries().getStore().getSizeInBytes(),
+            numOfShards,
+            emptyMap()
         );
+        LOG.debug("Collected statistics of index [{}]: {}", index, stats);
+        return stats;
+    }
+
+    /**
+     * Estimate cardinality on a sample of documents by terminate_after on each shard and with a timeout, instead
+     * of a full-index aggregation at plan time. If sampling stopped early and most sampled values are distinct,
+     * the field is likely unique-ish so the estimate is scaled up to doc number of index. Otherwise the sample has
+     * seen most distinct values already. Timeout is cached as unknown (-1) to avoid waiting again within TTL.
+     */
+    private Long loadCardinality(String index, String fieldName, long docNum) {
+        SearchResponse response;
+        try {
+            response = client.prepareSearch(index).
+                              setSize(0).
+                              setTerminateAfter(CARDINALITY_SAMPLE_SIZE_PER_SHARD).
+                              setTimeout(CARDINALITY_TIMEOUT).
+                              addAggregation(cardinality(fieldName).field(fieldName)).
+                              get(CARDINALITY_TIMEOUT);
+        }
+        catch (ElasticsearchTimeoutException e) {
+            LOG.debug("Timed out estimating cardinality of field [{}] in index [{}]", fieldName, index);
+            return -1L;
+        }
+
+        long sampled = response.getHits().getTotalHits();
+        long value = ((Cardinality) response.getAggregations().get(fieldName)).getValue();
+        if (Boolean.TRUE.equals(response.isTerminatedEarly()) && sampled > 0 && docNum > sampled
+                && value * 2 > sampled) {
+            value = value * docNum / sampled;
+        }
+        LOG.debug("Estimated cardinality of field [{}] in index [{}] on {} docs sampled: {}",
+            fieldName, index, sampled, value);
+        return value;
     }
 
     /** Statistics data class for memory usage */
@@ -45,9 +290,17 @@ public class Stats {
         private long free;
         private long total;
 
+        /** Max heap the JVM can grow to, which total memory committed currently may be far below */
+        private long max;
+
         public MemStats(long free, long total) {
+            this(free, total, total);
+        }
+
+        public MemStats(long free, long total, long max) {
             this.free = free;
             this.total = total;
+            this.max = max;
         }
 
         public long getFree() {
@@ -57,18 +310,99 @@ public class Stats {
         public long getTotal() {
             return total;
         }
+
+        public long getMax() {
+            return max;
+        }
+
+        /** @return  memory used currently, which is committed memory not free */
+        public long getUsed() {
+            return total - free;
+        }
     }
 
-    /*
-    public class IndexStats {
-        private long size;
-        private long docNum;
+    /** Statistics data class for index. Negative value means unknown. */
+    public static class IndexStats {
 
-        public IndexStats(long size, long docNum) {
-            this.size = size;
+        public static final IndexStats UNKNOWN = new IndexStats(-1, -1, 0, emptyMap());
+
+        /** Number of documents in primary shards */
+        private final long docNum;
+
+        /** Store size in bytes of primary shards */
+        private final long size;
+
+        /** Number of primary shards */
+        private final int numOfShards;
+
+        /** Estimated number of distinct values of each field */
+        private final Map<String, Long> cardinality;
+
+        public IndexStats(long docNum, long size, int numOfShards, Map<String, Long> cardinality) {
             this.docNum = docNum;
+            this.size = size;
+            this.numOfShards = numOfShards;
+            this.cardinality = cardinality;
+        }
+
+        public boolean isKnown() {
+            return docNum >= 0;
+        }
+
+        public long getDocNum() {
+            return docNum;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public int getNumOfShards() {
+            return numOfShards;
+        }
+
+        /** Average document size in bytes or -1 if unknown */
+        public long getAvgDocSize() {
+            return (docNum > 0 && size >= 0) ? size / docNum : -1;
+        }
+
+        /** Estimated number of distinct values of field or -1 if unknown */
+        public long getCardinality(String fieldName) {
+            return cardinality.getOrDefault(fieldName, -1L);
+        }
+
+        /**
+         * Narrow down statistics to the documents matched by query only.
+         *
+         * @param hitNum    number of documents matched, ignored if negative (unknown)
+         * @return          new statistics with doc number, size and cardinality scaled down
+         */
+        public IndexStats filteredBy(long hitNum) {
+            if (hitNum < 0 || !isKnown()) {
+                return this;
+            }
+
+            Map<String, Long> filteredCardinality = new HashMap<>();
+            cardinality.forEach((fieldName, value) -> filteredCardinality.put(fieldName, Math.min(value, hitNum)));
+
+            long avgDocSize = getAvgDocSize();
+            return new IndexStats(
+                hitNum,
+                avgDocSize >= 0 ? avgDocSize * hitNum : size,
+                numOfShards,
+                filteredCardinality
+            );
+        }
+
+        @Override
+        public String toString() {
+            return "IndexStats{" +
+                "docNum=" + docNum +
+                ", size=" + size +
+                ", numOfShards=" + numOfShards +
+                ", cardinality=" + cardinality +
+                '}';
         }
     }
-    */
 
 }
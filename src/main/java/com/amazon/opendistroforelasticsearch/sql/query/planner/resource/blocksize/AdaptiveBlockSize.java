@@ -15,25 +15,98 @@
 
 package com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize;
 
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.MemStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+
 /**
  * Adaptive block size calculator based on resource usage dynamically.
+ * Next block size is recalculated each time a block is loaded, by average row size measured from the block
+ * and memory headroom, which is the smaller of heap left below circuit break limit of max heap and
+ * SQL circuit breaker headroom. Initial size is used until the first block measured, and each later size
+ * moves only part of the way to the new target so that a transient spike or GC doesn't swing it.
  */
 public class AdaptiveBlockSize implements BlockSize {
 
-    private int upperLimit;
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Lower bound to avoid too many re-scans of right side */
+    public static final int MIN_BLOCK_SIZE = 100;
+
+    /** Upper bound to avoid single huge hash table regardless of memory available */
+    public static final int MAX_BLOCK_SIZE = 1_000_000;
+
+    /** Fraction of headroom given to a block. The rest is left for right rows, combined rows etc. */
+    private static final double HEADROOM_RATIO = 0.5;
+
+    /** Weight of new target size in exponential moving average with previous size */
+    private static final double SMOOTHING_FACTOR = 0.5;
+
+    /** Statistics collector for memory usage */
+    private final Stats stats;
+
+    /** Circuit break limit (percentage) of memory usage */
+    private final int circuitBreakLimit;
+
+    /** Block size for next block */
+    private int nextSize;
 
-    public AdaptiveBlockSize(int upperLimit) {
-        this.upperLimit = upperLimit;
+    /** Is any block measured so far */
+    private boolean isMeasured = false;
+
+    public AdaptiveBlockSize(int initialSize, int circuitBreakLimit, Stats stats) {
+        this.nextSize = initialSize;
+        this.circuitBreakLimit = circuitBreakLimit;
+        this.stats = stats;
     }
 
     @Override
     public int size() {
-        //TODO: calculate dynamically on each call
-        return upperLimit;
+        return nextSize;
+    }
+
+    @Override
+    public void measure(Collection<? extends Row<?>> block) {
+        long avgRowSize = averageRowSize(block);
+        if (avgRowSize <= 0) {
+            return; // Keep current size if unable to measure
+        }
+
+        MemStats memStats = stats.collectMemStats();
+        long limit = (long) (memStats.getMax() * (circuitBreakLimit / 100.0));
+        long headroom = Math.min(Math.max(limit - memStats.getUsed(), 0), stats.collectBreakerHeadroom());
+
+        long targetSize = Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, (long) (headroom * HEADROOM_RATIO) / avgRowSize));
+        if (isMeasured) {
+            nextSize = (int) Math.round(SMOOTHING_FACTOR * targetSize + (1 - SMOOTHING_FACTOR) * nextSize);
+        } else {
+            nextSize = (int) targetSize;
+            isMeasured = true;
+        }
+
+        LOG.debug("Next block size calculated: {} towards target {} by average row size {} bytes and headroom {} bytes",
+            nextSize, targetSize, avgRowSize, headroom);
+    }
+
+    private long averageRowSize(Collection<? extends Row<?>> block) {
+        long total = 0;
+        int count = 0;
+        for (Row<?> row : block) {
+            long size = row.estimatedSize();
+            if (size > 0) {
+                total += size;
+                count++;
+            }
+        }
+        return (count == 0) ? -1 : total / count;
     }
 
     @Override
     public String toString() {
-        return "AdaptiveBlockSize with " + "upperLimit=" + upperLimit;
+        return "AdaptiveBlockSize with " + "nextSize=" + nextSize + ", circuitBreakLimit=" + circuitBreakLimit;
     }
 }
@@ -15,6 +15,10 @@
 
 package com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize;
 
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+
+import java.util.Collection;
+
 /**
  * Block size calculating logic.
  */
@@ -28,6 +32,15 @@ public interface BlockSize {
     int size();
 
 
+    /**
+     * Feed back the block just loaded so that next block size can be adjusted if adaptive.
+     *
+     * @param block     rows in the block loaded
+     */
+    default void measure(Collection<? extends Row<?>> block) {
+    }
+
+
     /** Default implementation with fixed block size */
     class FixedBlockSize implements BlockSize {
 
@@ -18,6 +18,7 @@ package com.amazon.opendistroforelasticsearch.sql.request;
 import org.json.JSONObject;
 
 import java.util.List;
+import java.util.function.IntFunction;
 
 public class PreparedStatementRequest extends SqlRequest {
 
@@ -45,27 +46,43 @@ public class PreparedStatementRequest extends SqlRequest {
     }
 
     private String substituteParameters() {
-        if(this.sqlTemplate == null) {
+        return substituteParameters(this.sqlTemplate, paramIndex -> {
+            if(paramIndex >= this.parameters.size()) {
+                throw new IllegalStateException("Placeholder count is greater than parameter number "
+                        + parameters.size() + " . Cannot convert PreparedStatement to sql query");
+            }
+            return this.parameters.get(paramIndex).getSqlSubstitutionValue();
+        });
+    }
+
+    /**
+     * Replace each placeholder "?" out of string literal in the template.
+     * @param sqlTemplate   SQL template with placeholders
+     * @param substitution  SQL substitution for placeholder at the given index
+     * @return              SQL with placeholders substituted
+     */
+    public static String substituteParameters(String sqlTemplate, IntFunction<String> substitution) {
+        if(sqlTemplate == null) {
             return null;
         }
 
         StringBuilder sb = new StringBuilder();
         int paramIndex = 0;
         int i = 0;
-        while(i < this.sqlTemplate.length()) {
-            char c = this.sqlTemplate.charAt(i);
+        while(i < sqlTemplate.length()) {
+            char c = sqlTemplate.charAt(i);
             if (c == '\'') {
                 // found string starting quote character, skip the string
                 sb.append(c);
                 i++;
-                while (i < this.sqlTemplate.length()) {
-                    char s = this.sqlTemplate.charAt(i);
+                while (i < sqlTemplate.length()) {
+                    char s = sqlTemplate.charAt(i);
                     sb.append(s);
                     if (s == '\'') {
-                        if (this.sqlTemplate.charAt(i-1) == '\\') {
+                        if (sqlTemplate.charAt(i-1) == '\\') {
                             // this is an escaped single quote (\') still in the string
                             i++;
-                        } else if ((i + 1) < this.sqlTemplate.length() && this.sqlTemplate.charAt(i+1) == '\'') {
+                        } else if ((i + 1) < sqlTemplate.length() && sqlTemplate.charAt(i+1) == '\'') {
                             // found 2 single quote {''} in a string, which is escaped single quote {'}
                             // move to next character
                             sb.append('\'');
@@ -81,11 +98,7 @@ public class PreparedStatementRequest extends SqlRequest {
                 }
             } else if (c == '?') {
                 // question mark "?" not in a string
-                if(paramIndex >= this.parameters.size()) {
-                    throw new IllegalStateException("Placeholder count is greater than parameter number "
-                            + parameters.size() + " . Cannot convert PreparedStatement to sql query");
-                }
-                sb.append(this.parameters.get(paramIndex).getSqlSubstitutionValue());
+                sb.append(substitution.apply(paramIndex));
                 paramIndex++;
             } else {
                 // other character, simply append
@@ -32,6 +32,8 @@ import java.util.Collections;
 
 public class SqlRequest {
 
+    private static final String FETCH_SIZE_FIELD_NAME = "fetch_size";
+
     String sql;
     JSONObject jsonContent;
 
@@ -54,6 +56,14 @@ public class SqlRequest {
         return this.jsonContent;
     }
 
+    /**
+     * Number of rows in each page if cursor pagination is requested by 'fetch_size' in JSON request.
+     * @return  fetch size, or 0 if no pagination required
+     */
+    public int fetchSize() {
+        return (jsonContent != null) ? jsonContent.optInt(FETCH_SIZE_FIELD_NAME, 0) : 0;
+    }
+
     /**
      * JSONObject's getJSONObject method will return just the value, this helper method is to extract the key and
      * value of 'filter' and return the JSON as a string.
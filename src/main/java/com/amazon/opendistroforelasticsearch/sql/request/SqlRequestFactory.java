@@ -15,6 +15,7 @@
 
 package com.amazon.opendistroforelasticsearch.sql.request;
 
+import com.amazon.opendistroforelasticsearch.sql.query.PreparedStatementCache;
 import org.elasticsearch.rest.RestRequest;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -28,6 +29,7 @@ public class SqlRequestFactory {
     private static final String SQL_URL_PARAM_KEY = "sql";
     private static final String SQL_FIELD_NAME = "query";
     private static final String PARAM_FIELD_NAME = "parameters";
+    private static final String STATEMENT_ID_FIELD_NAME = "statement_id";
 
     private static final String PARAM_TYPE_FIELD_NAME = "type";
     private static final String PARAM_VALUE_FIELD_NAME = "value";
@@ -62,7 +64,12 @@ public class SqlRequestFactory {
         } catch (JSONException e) {
             throw new IllegalArgumentException("Failed to parse request payload", e);
         }
-        String sql = jsonContent.getString(SQL_FIELD_NAME);
+        String sql;
+        if (jsonContent.has(STATEMENT_ID_FIELD_NAME)) { // executes a statement prepared on server side
+            sql = PreparedStatementCache.getInstance().getStatement(jsonContent.getString(STATEMENT_ID_FIELD_NAME));
+        } else {
+            sql = jsonContent.getString(SQL_FIELD_NAME);
+        }
         if(jsonContent.has(PARAM_FIELD_NAME)) { // is a PreparedStatement
             JSONArray paramArray = jsonContent.getJSONArray(PARAM_FIELD_NAME);
             List<PreparedStatementRequest.PreparedStatementParameter> parameters = parseParameters(paramArray);
@@ -28,6 +28,7 @@ import com.alibaba.druid.sql.ast.statement.SQLTableSource;
 import com.alibaba.druid.sql.dialect.mysql.ast.expr.MySqlSelectGroupByExpr;
 import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
 import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.FieldPathIndex.FieldInfo;
 import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
 import org.elasticsearch.client.Client;
 
@@ -106,34 +107,30 @@ public class TermFieldRewriter extends MySqlASTVisitorAdapter {
     }
 
 
-    @SuppressWarnings("unchecked")
     @Override
     public boolean visit(SQLIdentifierExpr expr) {
         if (isValidIdentifierForTerm(expr)) {
-            Map<String, Object> source = null;
+            FieldInfo field = null;
             if (this.filterType == TermRewriterFilter.COMMA || this.filterType == TermRewriterFilter.MULTI_QUERY) {
-                if (curScope().getFinalMapping().has(expr.getName())) {
-                    source = curScope().getFinalMapping().mapping(expr.getName());
-                } else {
-                    return true;
-                }
+                field = curScope().getFinalMapping().pathIndex().get(expr.getName());
 
             } else if (this.filterType == TermRewriterFilter.JOIN) {
-                String[] arr = expr.getName().split("\\.", 2);
-                if (arr.length < 2)  throw new VerificationException("table alias or field name missing");
-                String alias = arr[0];
-                String fullFieldName = arr[1];
+                int dot = expr.getName().indexOf('.');
+                if (dot < 0)  throw new VerificationException("table alias or field name missing");
+                String alias = expr.getName().substring(0, dot);
+                String fullFieldName = expr.getName().substring(dot + 1);
 
                 String index = curScope().getAliases().get(alias);
                 FieldMappings fieldMappings = curScope().getMapper().mapping(index).firstMapping();
-                if (fieldMappings.has(fullFieldName)) {
-                    source = fieldMappings.mapping(fullFieldName);
-                } else {
-                    return true;
-                }
+                field = fieldMappings.pathIndex().get(fullFieldName);
             }
 
-            String keywordAlias = isBothTextAndKeyword(source);
+            // Multi-field, ex. name.keyword, is not in properties and thus never rewritten
+            if (field == null || field.isMultiField()) {
+                return true;
+            }
+
+            String keywordAlias = field.getKeywordSubField();
             if (keywordAlias != null) {
                 expr.setName(expr.getName() + "." + keywordAlias);
             }
@@ -174,18 +171,6 @@ public class TermFieldRewriter extends MySqlASTVisitorAdapter {
         return environment.peek();
     }
 
-    public String isBothTextAndKeyword(Map<String, Object> source) {
-        if (source.containsKey("fields")) {
-            for (Object key : ((Map) source.get("fields")).keySet()) {
-                if (key instanceof String &&
-                    ((Map) ((Map) source.get("fields")).get(key)).get("type").equals("keyword")) {
-                    return (String) key;
-                }
-            }
-        }
-        return null;
-    }
-
     public boolean isValidIdentifierForTerm(SQLIdentifierExpr expr) {
         /**
          * Only for following conditions Identifier will be modified
@@ -248,9 +233,11 @@ public class TermFieldRewriter extends MySqlASTVisitorAdapter {
     }
 
     private boolean isMappingOfAllIndicesDifferent() {
-        // Collect all FieldMappings into hash set and ignore index/type names. Size > 1 means FieldMappings NOT unique.
+        // Collect path index of all FieldMappings into hash set and ignore index/type names. Size > 1 means NOT unique.
+        // Path index is the same instance for identical mappings so it's cheap even if many indices matched.
         return curScope().getMapper().allMappings().stream().
                                                     flatMap(typeMappings -> typeMappings.allMappings().stream()).
+                                                    map(FieldMappings::pathIndex).
                                                     collect(Collectors.toSet()).
                                                     size() > 1;
     }
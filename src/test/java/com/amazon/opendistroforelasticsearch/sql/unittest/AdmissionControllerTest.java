@@ -0,0 +1,169 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.AdmissionController;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Admission control test
+ */
+public class AdmissionControllerTest {
+
+    private static final String EXECUTOR_NAME = "sql-worker";
+
+    private final AtomicLong headroom = new AtomicLong();
+
+    private final List<String> executed = new ArrayList<>();
+
+    private final List<Exception> rejected = new ArrayList<>();
+
+    private ThreadPool threadPool;
+
+    private AdmissionController controller;
+
+    @Before
+    public void init() {
+        threadPool = mock(ThreadPool.class);
+        when(threadPool.executor(EXECUTOR_NAME)).thenReturn(EsExecutors.newDirectExecutorService());
+
+        controller = new AdmissionController(headroom::get);
+        controller.configure(Settings.builder().
+            put("opendistro.sql.admission.max_parked_queries", 1).
+            put("opendistro.sql.admission.max_park_time", "10s").
+            build());
+    }
+
+    @Test
+    public void runRightAwayIfHeadroomEnough() {
+        headroom.set(100);
+        admit("query", 100);
+
+        assertThat(executed, contains("query"));
+        assertThat(controller.parkedSize(), is(0));
+    }
+
+    @Test
+    public void parkAndResumeOnceHeadroomAvailable() {
+        headroom.set(50);
+        admit("query", 100);
+        assertThat(executed, empty());
+        assertThat(controller.parkedSize(), is(1));
+
+        headroom.set(100);
+        resumeCallback().run();
+        assertThat(executed, contains("query"));
+        assertThat(controller.parkedSize(), is(0));
+    }
+
+    @Test
+    public void rejectIfParkedQueueFull() {
+        headroom.set(0);
+        admit("query1", 100);
+        admit("query2", 100);
+
+        assertThat(executed, empty());
+        assertThat(rejected, hasSize(1));
+        assertThat(((EsRejectedExecutionException) rejected.get(0)).status(), is(RestStatus.TOO_MANY_REQUESTS));
+    }
+
+    @Test
+    public void rejectIfParkedTooLong() {
+        headroom.set(0);
+        admit("query", 100);
+
+        when(threadPool.relativeTimeInMillis()).thenReturn(TimeValue.timeValueSeconds(10).millis());
+        resumeCallback().run();
+        assertThat(executed, empty());
+        assertThat(rejected, hasSize(1));
+        assertThat(controller.parkedSize(), is(0));
+    }
+
+    @Test
+    public void parkSecondQueryWhileFirstReservationHeld() {
+        List<Runnable> pending = queueTasksInExecutor();
+        headroom.set(150);
+        admit("query1", 100);
+        admit("query2", 100);
+
+        assertThat(pending, hasSize(1));
+        assertThat(controller.reservedMemory(), is(100L));
+        assertThat(controller.parkedSize(), is(1));
+
+        pending.get(0).run();
+        assertThat(executed, contains("query1"));
+        assertThat(controller.reservedMemory(), is(0L));
+    }
+
+    @Test
+    public void releaseReservationIfExecutorRejects() {
+        ExecutorService executor = mock(ExecutorService.class);
+        doThrow(new EsRejectedExecutionException("queue full")).when(executor).execute(any(Runnable.class));
+        when(threadPool.executor(EXECUTOR_NAME)).thenReturn(executor);
+
+        headroom.set(100);
+        admit("query", 100);
+        assertThat(rejected, hasSize(1));
+        assertThat(controller.reservedMemory(), is(0L));
+    }
+
+    private List<Runnable> queueTasksInExecutor() {
+        List<Runnable> pending = new ArrayList<>();
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(invocation -> pending.add((Runnable) invocation.getArguments()[0])).
+            when(executor).execute(any(Runnable.class));
+        when(threadPool.executor(EXECUTOR_NAME)).thenReturn(executor);
+        return pending;
+    }
+
+    private void admit(String name, long estimatedMemory) {
+        controller.admit(threadPool, EXECUTOR_NAME, estimatedMemory, () -> executed.add(name), rejected::add);
+    }
+
+    private Runnable resumeCallback() {
+        ArgumentCaptor<Runnable> callback = ArgumentCaptor.forClass(Runnable.class);
+        verify(threadPool).schedule(any(TimeValue.class), eq(ThreadPool.Names.SAME), callback.capture());
+        return callback.getValue();
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.AggregationResultCache;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsRequest;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Aggregation result cache test
+ */
+public class AggregationResultCacheTest {
+
+    private final AggregationResultCache cache = AggregationResultCache.getInstance();
+
+    private Client client;
+
+    private IndicesStatsResponse statsResponse;
+
+    private SearchResponse searchResponse;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        client = mock(Client.class, RETURNS_DEEP_STUBS);
+
+        statsResponse = mock(IndicesStatsResponse.class);
+        when(statsResponse.getShards()).thenReturn(new ShardStats[0]);
+        IndicesAdminClient indicesClient = client.admin().indices();
+        doAnswer(invocation -> {
+            ((ActionListener<IndicesStatsResponse>) invocation.getArguments()[1]).onResponse(statsResponse);
+            return null;
+        }).when(indicesClient).stats(any(IndicesStatsRequest.class), any(ActionListener.class));
+
+        searchResponse = mock(SearchResponse.class);
+        ActionFuture<SearchResponse> future = mock(ActionFuture.class);
+        when(future.actionGet()).thenReturn(searchResponse);
+        when(client.search(any(SearchRequest.class))).thenReturn(future);
+    }
+
+    @After
+    public void cleanUp() {
+        cache.configure(settings("0b"));
+    }
+
+    @Test
+    public void aggregationOnlyRequestWithRequestCacheIsCacheable() {
+        assertThat(AggregationResultCache.isCacheable(aggRequest(0, true)), is(true));
+    }
+
+    @Test
+    public void requestWithRequestCacheDisabledByHintIsNotCacheable() {
+        assertThat(AggregationResultCache.isCacheable(aggRequest(0, false)), is(false));
+    }
+
+    @Test
+    public void requestFetchingHitsIsNotCacheable() {
+        assertThat(AggregationResultCache.isCacheable(aggRequest(10, true)), is(false));
+    }
+
+    @Test
+    public void requestDependingOnNowIsNotCacheable() {
+        SearchRequest request = aggRequest(0, true);
+        request.source().query(QueryBuilders.rangeQuery("timestamp").gte("now-1h"));
+
+        assertThat(AggregationResultCache.isCacheable(request), is(false));
+    }
+
+    @Test
+    public void requestRoundingNowIsNotCacheable() {
+        SearchRequest request = aggRequest(0, true);
+        request.source().query(QueryBuilders.rangeQuery("timestamp").lt("now/d"));
+
+        assertThat(AggregationResultCache.isCacheable(request), is(false));
+    }
+
+    @Test
+    public void requestWithNowInsideWordIsCacheable() {
+        SearchRequest request = aggRequest(0, true);
+        request.source().query(QueryBuilders.termsQuery("state", "known", "snowfall"));
+
+        assertThat(AggregationResultCache.isCacheable(request), is(true));
+    }
+
+    @Test
+    public void securityPluginConfiguredDisablesCache() {
+        assertThat(AggregationResultCache.isSecurityEnabled(Settings.EMPTY), is(false));
+        assertThat(AggregationResultCache.isSecurityEnabled(
+            Settings.builder().put("opendistro_security.ssl.http.enabled", true).build()), is(true));
+        assertThat(AggregationResultCache.isSecurityEnabled(
+            Settings.builder().put("xpack.security.enabled", true).build()), is(true));
+    }
+
+    @Test
+    public void keyDependsOnRequestAndShardState() {
+        SearchRequest request = aggRequest(0, true);
+        String key = AggregationResultCache.key(request, "[0:1:1]");
+
+        assertThat(AggregationResultCache.key(aggRequest(0, true), "[0:1:1]"), is(key));
+        assertThat(AggregationResultCache.key(request, "[0:2:2]"), not(key));
+
+        SearchRequest otherRequest = aggRequest(0, true);
+        otherRequest.source().query(QueryBuilders.termQuery("state", "WA"));
+        assertThat(AggregationResultCache.key(otherRequest, "[0:1:1]"), not(key));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        cache.configure(Settings.EMPTY);
+
+        cache.search(client, aggRequest(0, true));
+        cache.search(client, aggRequest(0, true));
+
+        verify(client, times(2)).search(any(SearchRequest.class));
+        verify(client.admin().indices(), never()).stats(any(IndicesStatsRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    public void hitWithoutReadingShardStateAgainWithinRefreshInterval() {
+        cache.configure(settings("1mb"));
+
+        assertThat(cache.search(client, aggRequest(0, true)), sameInstance(searchResponse));
+        assertThat(cache.search(client, aggRequest(0, true)), sameInstance(searchResponse));
+        assertThat(cache.search(client, aggRequest(0, true)), sameInstance(searchResponse));
+
+        verify(client, times(1)).search(any(SearchRequest.class));
+        verify(client.admin().indices(), times(1)).stats(any(IndicesStatsRequest.class), any(ActionListener.class));
+        assertThat(cache.stats().get("size"), is(1L));
+        assertThat(cache.stats().get("hit_count"), is(2L));
+        assertThat((Long) cache.stats().get("memory_in_bytes"), greaterThan(0L));
+    }
+
+    @Test
+    public void missAfterInvalidated() {
+        cache.configure(settings("1mb"));
+
+        cache.search(client, aggRequest(0, true));
+        cache.invalidateAll();
+        assertThat(cache.stats().get("size"), is(0L));
+        assertThat(cache.stats().get("memory_in_bytes"), is(0L));
+
+        cache.search(client, aggRequest(0, true));
+        verify(client, times(2)).search(any(SearchRequest.class));
+    }
+
+    @Test
+    public void bypassIfShardStateCannotBeRead() {
+        cache.configure(Settings.builder().
+                            put(AggregationResultCache.RESULT_CACHE_SIZE.getKey(), "1mb").
+                            put(AggregationResultCache.RESULT_CACHE_REFRESH_INTERVAL.getKey(), "1nanos").
+                            build());
+        when(statsResponse.getFailedShards()).thenReturn(1);
+
+        cache.search(client, aggRequest(0, true));
+        cache.search(client, aggRequest(0, true));
+
+        verify(client, times(2)).search(any(SearchRequest.class));
+        assertThat(cache.stats().get("size"), is(0L));
+    }
+
+    @Test
+    public void memoryReleasedWhenResponseEvicted() {
+        cache.configure(settings("1b"));
+
+        cache.search(client, aggRequest(0, true));
+
+        assertThat(cache.stats().get("size"), is(0L));
+        assertThat(cache.stats().get("memory_in_bytes"), is(0L));
+    }
+
+    private Settings settings(String size) {
+        return Settings.builder().
+                   put(AggregationResultCache.RESULT_CACHE_SIZE.getKey(), size).
+                   put(AggregationResultCache.RESULT_CACHE_REFRESH_INTERVAL.getKey(), "1h").
+                   build();
+    }
+
+    private SearchRequest aggRequest(int size, boolean requestCache) {
+        SearchSourceBuilder source = new SearchSourceBuilder().
+                                         size(size).
+                                         aggregation(AggregationBuilders.terms("state").field("state"));
+        return new SearchRequest("accounts").source(source).requestCache(requestCache);
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.executor.csv.CSVResultStreamExporter;
+import com.amazon.opendistroforelasticsearch.sql.executor.csv.CSVResultsExtractor;
+import com.amazon.opendistroforelasticsearch.sql.query.DefaultQueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.ESActionFactory;
+import com.amazon.opendistroforelasticsearch.sql.util.CheckScriptContents;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.amazon.opendistroforelasticsearch.sql.intgtest.TestsConstants.TEST_INDEX_BANK;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streaming CSV export test
+ */
+public class CSVResultStreamExporterTest {
+
+    private Client client;
+
+    private ActionFuture<SearchResponse> searchFuture;
+
+    private ArgumentCaptor<SearchRequest> searchRequest;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        client = mock(Client.class, RETURNS_DEEP_STUBS);
+        CheckScriptContents.stubMockClient(client);
+
+        searchFuture = mock(ActionFuture.class);
+        searchRequest = ArgumentCaptor.forClass(SearchRequest.class);
+        doReturn(searchFuture).when(client).execute(eq(SearchAction.INSTANCE), searchRequest.capture());
+    }
+
+    @After
+    public void cleanUp() {
+        LocalClusterState.state(null);
+    }
+
+    @Test
+    public void extractLineInOrderOfHeaders() {
+        CSVResultsExtractor extractor = new CSVResultsExtractor(false, false, false);
+        String line = extractor.extractLine(
+            hit(1, "{\"age\":30,\"name\":\"John\",\"address\":{\"city\":\"Seattle\"}}"),
+            Arrays.asList("name", "age", "address.city", "missing"), true, ",");
+
+        assertThat(line, is("John,30,Seattle,"));
+    }
+
+    @Test
+    public void extractLineWithMetaFields() {
+        CSVResultsExtractor extractor = new CSVResultsExtractor(true, true, true);
+        SearchHit hit = hit(7, "{\"age\":30}");
+        hit.score(2.0f);
+
+        List<String> headers = Arrays.asList("age", "_id", "_score", "_type");
+        assertThat(extractor.extractLine(hit, headers, false, "|"), is("30|7|2.0|account"));
+    }
+
+    @Test
+    public void metaFieldHeadersInOrderOfIdScoreType() {
+        assertThat(new CSVResultsExtractor(false, false, false).metaFieldHeaders(), empty());
+        assertThat(new CSVResultsExtractor(true, false, true).metaFieldHeaders(), contains("_id", "_score"));
+        assertThat(new CSVResultsExtractor(true, true, true).metaFieldHeaders(), contains("_id", "_score", "_type"));
+    }
+
+    @Test
+    public void exportSelectedFieldsWithoutScrollIfFirstPageNotFull() throws Exception {
+        searchReturns(page("scroll1", 2));
+
+        String csv = export("SELECT firstname, age FROM " + TEST_INDEX_BANK, new CSVResultsExtractor(false, false, true));
+
+        assertThat(csv, is("firstname,age,_id\nname0,20,0\nname1,21,1"));
+        assertThat(searchRequest.getValue().source().size(), is(200));
+        verify(client, never()).prepareSearchScroll(anyString());
+        verify(client.prepareClearScroll()).addScrollId("scroll1");
+    }
+
+    @Test
+    public void stopScrollingOnceLimitReached() throws Exception {
+        searchReturns(page("scroll1", 1000));
+        scrollReturns("scroll1", page("scroll2", 1000));
+
+        String csv = export("SELECT age FROM " + TEST_INDEX_BANK + " LIMIT 1500", new CSVResultsExtractor(false, false, false));
+
+        assertThat(csv.split("\n").length, is(1 + 1500));
+        assertThat(searchRequest.getValue().source().size(), is(1000));
+        verify(client, never()).prepareSearchScroll("scroll2");
+        verify(client.prepareClearScroll()).addScrollId("scroll2");
+    }
+
+    @Test
+    public void headersOfSelectAllFromIndexMappings() throws Exception {
+        searchReturns(page("scroll1", 0));
+
+        String csv = export("SELECT * FROM " + TEST_INDEX_BANK, new CSVResultsExtractor(false, false, false));
+
+        assertThat(Arrays.asList(csv.split(",")), containsInAnyOrder(
+            "account_number", "address", "age", "balance", "birthdate", "city", "email",
+            "employer", "firstname", "gender", "lastname", "male", "state"));
+    }
+
+    @Test
+    public void isStreamableOnlyIfNoOffset() throws Exception {
+        assertThat(CSVResultStreamExporter.isStreamable(create("SELECT age FROM " + TEST_INDEX_BANK)), is(true));
+        assertThat(CSVResultStreamExporter.isStreamable(create("SELECT age FROM " + TEST_INDEX_BANK + " LIMIT 10, 5")),
+                   is(false));
+    }
+
+    private String export(String sql, CSVResultsExtractor extractor) throws Exception {
+        BytesStreamOutput output = new BytesStreamOutput();
+        new CSVResultStreamExporter(extractor, false, ",", "\n").export(client, create(sql), output);
+        return output.bytes().utf8ToString();
+    }
+
+    private DefaultQueryAction create(String sql) throws Exception {
+        return (DefaultQueryAction) ESActionFactory.create(client, sql);
+    }
+
+    private void searchReturns(SearchResponse response) {
+        when(searchFuture.actionGet()).thenReturn(response);
+    }
+
+    private void scrollReturns(String scrollId, SearchResponse response) {
+        when(client.prepareSearchScroll(scrollId).setScroll(any(TimeValue.class)).get()).thenReturn(response);
+    }
+
+    private SearchResponse page(String scrollId, int numOfHits) {
+        SearchHit[] hits = new SearchHit[numOfHits];
+        for (int i = 0; i < numOfHits; i++) {
+            hits[i] = hit(i, "{\"firstname\":\"name" + i + "\",\"age\":" + (20 + i) + "}");
+        }
+
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(hits, numOfHits, 1.0f));
+        when(response.getScrollId()).thenReturn(scrollId);
+        return response;
+    }
+
+    private SearchHit hit(int docId, String source) {
+        SearchHit hit = new SearchHit(docId, String.valueOf(docId), new Text("account"), Collections.emptyMap());
+        hit.sourceRef(new BytesArray(source));
+        return hit;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.format.Cursor;
+import com.amazon.opendistroforelasticsearch.sql.executor.format.CursorResultExecutor;
+import com.amazon.opendistroforelasticsearch.sql.executor.format.Schema;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cursor pagination test
+ */
+public class CursorResultExecutorTest {
+
+    private static final Schema SCHEMA = new Schema("accounts", "account", Collections.singletonList(
+        new Schema.Column("age", null, Schema.Type.INTEGER)
+    ));
+
+    private Client client;
+
+    private RestChannel channel;
+
+    @Before
+    public void init() {
+        client = mock(Client.class, RETURNS_DEEP_STUBS);
+        channel = mock(RestChannel.class);
+    }
+
+    @Test
+    public void fullPageReturnsCursorWithRemainingCountedDown() {
+        scrollReturns("scroll1", "scroll2", 2);
+
+        JSONObject page = nextPage(new Cursor("scroll1", 5, 2, SCHEMA));
+
+        assertThat(page.getJSONArray("datarows").length(), is(2));
+        Cursor next = Cursor.decode(page.getString("cursor"));
+        assertThat(next.getScrollId(), is("scroll2"));
+        assertThat(next.getRemaining(), is(3L));
+        assertThat(next.getFetchSize(), is(2));
+        verify(client.prepareClearScroll(), never()).addScrollId(anyString());
+    }
+
+    @Test
+    public void lastPageByLimitIsTruncatedAndClearsScroll() {
+        scrollReturns("scroll1", "scroll2", 2);
+
+        JSONObject page = nextPage(new Cursor("scroll1", 1, 2, SCHEMA));
+
+        assertThat(page.getJSONArray("datarows").length(), is(1));
+        assertThat(page.has("cursor"), is(false));
+        verify(client.prepareClearScroll()).addScrollId("scroll2");
+    }
+
+    @Test
+    public void lastPageByPartialPageClearsScroll() {
+        scrollReturns("scroll1", "scroll2", 1);
+
+        JSONObject page = nextPage(new Cursor("scroll1", 10, 2, SCHEMA));
+
+        assertThat(page.getJSONArray("datarows").length(), is(1));
+        assertThat(page.has("cursor"), is(false));
+        verify(client.prepareClearScroll()).addScrollId("scroll2");
+    }
+
+    private void scrollReturns(String scrollId, String nextScrollId, int numOfHits) {
+        SearchHit[] hits = new SearchHit[numOfHits];
+        for (int i = 0; i < numOfHits; i++) {
+            hits[i] = new SearchHit(i, String.valueOf(i), new Text("account"), Collections.emptyMap());
+            hits[i].sourceRef(new BytesArray("{\"age\":" + (20 + i) + "}"));
+        }
+
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(hits, 100, 1.0f));
+        when(response.getScrollId()).thenReturn(nextScrollId);
+        when(client.prepareSearchScroll(scrollId).setScroll(Cursor.KEEP_ALIVE).get()).thenReturn(response);
+    }
+
+    private JSONObject nextPage(Cursor cursor) {
+        new CursorResultExecutor(client).executeNextPage(cursor.encode(), channel);
+
+        ArgumentCaptor<RestResponse> response = ArgumentCaptor.forClass(RestResponse.class);
+        verify(channel).sendResponse(response.capture());
+        assertThat(response.getValue().status(), is(RestStatus.OK));
+        return new JSONObject(response.getValue().content().utf8ToString());
+    }
+
+}
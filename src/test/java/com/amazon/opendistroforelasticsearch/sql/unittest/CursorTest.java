@@ -0,0 +1,61 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.format.Cursor;
+import com.amazon.opendistroforelasticsearch.sql.executor.format.Schema;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Cursor of JDBC response test
+ */
+public class CursorTest {
+
+    @Test
+    public void encodeAndDecode() {
+        List<Schema.Column> columns = Arrays.asList(
+            new Schema.Column("age", null, Schema.Type.INTEGER),
+            new Schema.Column("firstname", "name", Schema.Type.TEXT)
+        );
+        Cursor cursor = new Cursor("scroll1", 300, 100, new Schema("accounts", "account", columns));
+
+        Cursor decoded = Cursor.decode(cursor.encode());
+        assertThat(decoded.getScrollId(), is("scroll1"));
+        assertThat(decoded.getRemaining(), is(300L));
+        assertThat(decoded.getFetchSize(), is(100));
+        assertThat(decoded.getSchema().getIndexName(), is("accounts"));
+        assertThat(decoded.getSchema().getHeaders(), contains("age", "firstname"));
+
+        Schema.Column firstColumn = decoded.getSchema().iterator().next();
+        assertThat(firstColumn.getAlias(), nullValue());
+        assertThat(firstColumn.getType(), is("integer"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeInvalidCursor() {
+        Cursor.decode("not a cursor");
+    }
+
+}
@@ -16,12 +16,14 @@
 package com.amazon.opendistroforelasticsearch.sql.unittest;
 
 import com.amazon.opendistroforelasticsearch.sql.intgtest.TestsConstants;
+import com.amazon.opendistroforelasticsearch.sql.esdomain.FieldPathIndex;
 import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
 import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.FieldMappings;
 import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.IndexMappings;
 import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState.TypeMappings;
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.junit.After;
 import org.junit.Assert;
@@ -29,6 +31,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.amazon.opendistroforelasticsearch.sql.util.CheckScriptContents.mockClusterService;
 import static com.amazon.opendistroforelasticsearch.sql.util.CheckScriptContents.mockLocalClusterState;
@@ -157,6 +161,34 @@ public class LocalClusterStateTest {
         Assert.assertNull(fieldMappings.mapping("manager.name.first.uppercase"));
     }
 
+    @Test
+    public void getFieldPathIndex() {
+        FieldMappings fieldMappings = LocalClusterState.state().
+            getFieldMappings(new String[]{INDEX_NAME}).mapping(INDEX_NAME).mapping(TYPE_NAME);
+        FieldPathIndex index = fieldMappings.pathIndex();
+
+        Assert.assertEquals("integer", index.get("age").getType());
+        Assert.assertEquals("keyword", index.get("employer").getKeywordSubField());
+        Assert.assertTrue(index.get("employer.keyword").isMultiField());
+        Assert.assertEquals("keyword", index.get("state.raw").getType());
+        Assert.assertNull(index.get("state").getKeywordSubField()); // sub-field is not named keyword but of keyword type
+        Assert.assertTrue(index.get("manager").isObject());
+        Assert.assertEquals("text", index.get("manager.name").getType());
+        Assert.assertEquals("keyword", index.get("manager.name").getKeywordSubField());
+        Assert.assertFalse(index.get("manager.address").isNested());
+        Assert.assertNull(index.get("manager.home-address"));
+    }
+
+    @Test
+    public void getSamePathIndexForIdenticalMappings() throws IOException {
+        // Mapping of different indices created separately, ex. daily indices
+        FieldMappings fieldMappings1 = new FieldMappings(new MappingMetaData(TYPE_NAME, ageMapping()));
+        FieldMappings fieldMappings2 = new FieldMappings(new MappingMetaData(TYPE_NAME, ageMapping()));
+
+        Assert.assertNotSame(fieldMappings1, fieldMappings2);
+        Assert.assertSame(fieldMappings1.pathIndex(), fieldMappings2.pathIndex());
+    }
+
     @Test
     public void getMappingFromCache() throws IOException {
         // Mock here again for verification below and mock addListener()
@@ -187,4 +219,14 @@ public class LocalClusterStateTest {
         verify(mockService.state().metaData(), times(2)).findMappings(eq(new String[]{INDEX_NAME}), any(), any());
     }
 
+    private Map<String, Object> ageMapping() {
+        Map<String, Object> age = new HashMap<>();
+        age.put("type", "integer");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("age", age);
+        Map<String, Object> mapping = new HashMap<>();
+        mapping.put("properties", properties);
+        return mapping;
+    }
+
 }
@@ -0,0 +1,124 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.domain.Field;
+import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.query.ESActionFactory;
+import com.amazon.opendistroforelasticsearch.sql.query.ParsedQueryCache;
+import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
+import com.amazon.opendistroforelasticsearch.sql.util.CheckScriptContents;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Parsed query cache test
+ */
+public class ParsedQueryCacheTest {
+
+    private final ParsedQueryCache cache = ParsedQueryCache.getInstance();
+
+    @Before
+    public void init() {
+        cache.configure(Settings.builder().put("opendistro.sql.query.cache.size", 10).build());
+    }
+
+    @After
+    public void cleanUp() {
+        cache.configure(Settings.builder().put("opendistro.sql.query.cache.size", 0).build());
+    }
+
+    @Test
+    public void normalizeWhitespacesOutOfQuotes() {
+        assertThat(
+            ParsedQueryCache.normalize("  SELECT  a,\tb FROM   t WHERE c = 'x   y'  "),
+            is("SELECT a, b FROM t WHERE c = 'x   y'")
+        );
+    }
+
+    @Test
+    public void hitIfOnlyWhitespacesDiffer() {
+        Select select = new Select();
+        select.addField(new Field("a", null));
+        cache.put("SELECT a FROM t", select);
+
+        Select cached = cache.get("SELECT  a   FROM t ");
+        assertThat(cached, notNullValue());
+        assertThat(cached, not(sameInstance(select)));
+        assertThat(cached.getFields(), hasSize(1));
+        assertThat(cache.get("SELECT b FROM t"), nullValue());
+    }
+
+    @Test
+    public void handOutCopyOnEveryHit() {
+        cache.put("SELECT a FROM t", new Select());
+
+        Select first = cache.get("SELECT a FROM t");
+        first.addField(new Field("b", null));
+        first.addGroupBy(new Field("b", null));
+
+        Select second = cache.get("SELECT a FROM t");
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getFields(), hasSize(0));
+        assertThat(second.getGroupBys(), hasSize(0));
+    }
+
+    @Test
+    public void sameAggregationQueryTwiceThroughCache() throws Exception {
+        String sql = "SELECT gender, COUNT(*) AS cnt, MAX(age) FROM elasticsearch-sql_test_index_bank GROUP BY gender";
+
+        QueryAction first = create(sql);
+        String firstDsl = first.explain().explain();
+        Select firstSelect = (Select) first.getQueryStatement();
+
+        QueryAction second = create(sql);
+        String secondDsl = second.explain().explain();
+        Select secondSelect = (Select) second.getQueryStatement();
+
+        assertThat(secondSelect, not(sameInstance(firstSelect)));
+        assertThat(secondDsl, is(firstDsl));
+        assertThat(secondSelect.getGroupBys().get(0), hasSize(1));
+        assertThat(secondSelect.getFields(), hasSize(3));
+    }
+
+    @Test
+    public void missAfterInvalidated() {
+        cache.put("SELECT a FROM t", new Select());
+        cache.invalidateAll();
+
+        assertThat(cache.get("SELECT a FROM t"), nullValue());
+    }
+
+    private QueryAction create(String sql) throws Exception {
+        Client client = Mockito.mock(Client.class);
+        CheckScriptContents.stubMockClient(client);
+        return ESActionFactory.create(client, sql);
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.domain.Condition;
+import com.amazon.opendistroforelasticsearch.sql.domain.Select;
+import com.amazon.opendistroforelasticsearch.sql.domain.Where;
+import com.amazon.opendistroforelasticsearch.sql.exception.SqlParseException;
+import com.amazon.opendistroforelasticsearch.sql.query.PreparedSelect;
+import com.amazon.opendistroforelasticsearch.sql.request.PreparedStatementRequest;
+import com.amazon.opendistroforelasticsearch.sql.request.PreparedStatementRequest.PreparedStatementParameter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Binding parameters into prepared Select test
+ */
+public class PreparedSelectTest {
+
+    @Test
+    public void bindParametersIntoCopyOfWhere() throws SqlParseException {
+        Select template = select(
+            condition("age", ">", PreparedSelect.marker(0)),
+            condition("state", "IN", new Object[]{PreparedSelect.marker(1), "WA"}),
+            condition("gender", "=", "M")
+        );
+        PreparedSelect prepared = PreparedSelect.of(template, 2);
+        assertThat(prepared, notNullValue());
+
+        List<PreparedStatementParameter> params = Arrays.asList(
+            new PreparedStatementParameter<Long>(30L),
+            new PreparedStatementRequest.StringParameter("CA")
+        );
+        Select bound = prepared.bind(params);
+
+        assertThat(bound, not(sameInstance(template)));
+        assertThat(bound.getFields(), not(sameInstance(template.getFields())));
+        assertThat(valueOf(bound, 0), is(30));
+        assertThat((Object[]) valueOf(bound, 1), arrayContaining("CA", "WA"));
+        assertThat(valueOf(bound, 2), is("M"));
+
+        assertThat(valueOf(template, 0), is(PreparedSelect.marker(0)));
+        assertThat((Object[]) valueOf(template, 1), arrayContaining(PreparedSelect.marker(1), "WA"));
+    }
+
+    @Test
+    public void bindParametersIntoInAndBetween() throws SqlParseException {
+        Select template = select(
+            condition("age", "BETWEEN", new Object[]{PreparedSelect.marker(0), PreparedSelect.marker(1)}),
+            condition("state", "IN", new Object[]{PreparedSelect.marker(2), PreparedSelect.marker(3)})
+        );
+
+        Select bound = PreparedSelect.of(template, 4).bind(Arrays.asList(
+            new PreparedStatementParameter<Long>(20L),
+            new PreparedStatementParameter<Double>(30.5),
+            new PreparedStatementRequest.StringParameter("CA"),
+            new PreparedStatementRequest.StringParameter("WA")
+        ));
+
+        assertThat((Object[]) valueOf(bound, 0), arrayContaining((Object) 20, 30.5));
+        assertThat((Object[]) valueOf(bound, 1), arrayContaining("CA", "WA"));
+    }
+
+    @Test
+    public void bindLongOutOfIntRangeAsLong() throws SqlParseException {
+        Select template = select(condition("balance", ">", PreparedSelect.marker(0)));
+
+        Select bound = PreparedSelect.of(template, 1).bind(Arrays.asList(
+            new PreparedStatementParameter<Long>(Integer.MAX_VALUE + 1L)
+        ));
+
+        assertThat(valueOf(bound, 0), is(Integer.MAX_VALUE + 1L));
+    }
+
+    @Test
+    public void nullParameterIsNotBindable() throws SqlParseException {
+        Select template = select(
+            condition("age", ">", PreparedSelect.marker(0)),
+            condition("state", "=", PreparedSelect.marker(1))
+        );
+        PreparedSelect prepared = PreparedSelect.of(template, 2);
+
+        assertThat(prepared.bind(Arrays.asList(
+            new PreparedStatementParameter<Long>(30L),
+            new PreparedStatementRequest.NullParameter()
+        )), nullValue());
+        assertThat(prepared.bind(Arrays.asList(
+            new PreparedStatementParameter<Long>(30L),
+            new PreparedStatementRequest.StringParameter(null)
+        )), nullValue());
+        assertThat(valueOf(template, 1), is(PreparedSelect.marker(1)));
+    }
+
+    @Test
+    public void nullParameterInListIsNotBindable() throws SqlParseException {
+        Select template = select(
+            condition("state", "IN", new Object[]{PreparedSelect.marker(0), PreparedSelect.marker(1)})
+        );
+
+        assertThat(PreparedSelect.of(template, 2).bind(Arrays.asList(
+            new PreparedStatementRequest.StringParameter("CA"),
+            new PreparedStatementRequest.NullParameter()
+        )), nullValue());
+    }
+
+    @Test
+    public void placeholderNotInWhereIsNotBindable() throws SqlParseException {
+        Select template = select(condition("age", ">", PreparedSelect.marker(0)));
+
+        assertThat(PreparedSelect.of(template, 2), nullValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void bindWithTooFewParameters() throws SqlParseException {
+        Select template = select(
+            condition("age", ">", PreparedSelect.marker(0)),
+            condition("state", "=", PreparedSelect.marker(1))
+        );
+
+        PreparedSelect.of(template, 2).bind(Arrays.asList(new PreparedStatementParameter<Long>(30L)));
+    }
+
+    private Select select(Condition... conditions) {
+        Where where = Where.newInstance();
+        for (Condition condition : conditions) {
+            where.addWhere(condition);
+        }
+        Select select = new Select();
+        select.setWhere(where);
+        return select;
+    }
+
+    private Condition condition(String name, String oper, Object value) throws SqlParseException {
+        return new Condition(Where.CONN.AND, name, null, oper, value, null);
+    }
+
+    private Object valueOf(Select select, int index) {
+        return ((Condition) select.getWhere().getWheres().get(index)).getValue();
+    }
+
+}
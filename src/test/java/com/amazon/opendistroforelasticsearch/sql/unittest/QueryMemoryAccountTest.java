@@ -0,0 +1,139 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Per-query memory account test
+ */
+public class QueryMemoryAccountTest {
+
+    private CircuitBreaker breaker;
+
+    @Before
+    public void init() {
+        breaker = new MemoryCircuitBreaker(new ByteSizeValue(1000), 1.0, LogManager.getLogger());
+        QueryMemoryAccount.initialize(breaker, 500);
+    }
+
+    @After
+    public void cleanUp() {
+        QueryMemoryAccount.initialize(new NoopCircuitBreaker(QueryMemoryAccount.BREAKER_NAME), -1);
+    }
+
+    @Test
+    public void chargeAndReleaseOnClose() {
+        try (QueryMemoryAccount account = QueryMemoryAccount.open()) {
+            assertThat(QueryMemoryAccount.current(), sameInstance(account));
+
+            account.charge(300, "test");
+            account.release(100);
+            assertThat(account.used(), is(200L));
+            assertThat(breaker.getUsed(), is(200L));
+        }
+        assertThat(breaker.getUsed(), is(0L));
+        assertThat(QueryMemoryAccount.current(), sameInstance(QueryMemoryAccount.NOOP));
+    }
+
+    @Test(expected = CircuitBreakingException.class)
+    public void tripIfQueryLimitExceeded() {
+        try (QueryMemoryAccount account = QueryMemoryAccount.open()) {
+            account.charge(300, "test");
+            account.charge(300, "test");
+        }
+    }
+
+    @Test
+    public void otherQueryUnaffectedIfOneQueryTrips() {
+        try (QueryMemoryAccount small = QueryMemoryAccount.open();
+             QueryMemoryAccount large = QueryMemoryAccount.open()) {
+            small.charge(100, "small");
+            try {
+                large.charge(600, "large");
+            } catch (CircuitBreakingException e) {
+                // Expected
+            }
+            small.charge(100, "small");
+            assertThat(small.used(), is(200L));
+            assertThat(large.used(), is(0L));
+        }
+    }
+
+    @Test
+    public void rollBackChargeIfBreakerTrips() {
+        QueryMemoryAccount.initialize(breaker, -1);
+        try (QueryMemoryAccount account = QueryMemoryAccount.open()) {
+            account.charge(800, "test");
+            try {
+                account.charge(300, "test");
+            } catch (CircuitBreakingException e) {
+                // Expected
+            }
+            assertThat(account.used(), is(800L));
+            assertThat(breaker.getUsed(), is(800L));
+        }
+    }
+
+    @Test
+    public void concurrentChargesNeverExceedQueryLimit() throws InterruptedException {
+        try (QueryMemoryAccount account = QueryMemoryAccount.open()) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 100; j++) {
+                            account.charge(10, "test");
+                        }
+                    } catch (CircuitBreakingException | InterruptedException e) {
+                        // Expected once limit reached
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertThat(account.used(), lessThanOrEqualTo(500L));
+            assertThat(breaker.getUsed(), is(account.used()));
+        }
+    }
+
+}
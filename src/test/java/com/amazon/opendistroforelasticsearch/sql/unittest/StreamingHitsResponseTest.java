@@ -0,0 +1,172 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import com.amazon.opendistroforelasticsearch.sql.executor.join.ElasticUtils;
+import com.amazon.opendistroforelasticsearch.sql.executor.join.MetaSearchResult;
+import com.amazon.opendistroforelasticsearch.sql.executor.join.StreamingHitsResponse;
+import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.SearchHit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.fail;
+
+/**
+ * Streaming join response test
+ */
+public class StreamingHitsResponseTest {
+
+    private CircuitBreaker breaker;
+
+    @Before
+    public void init() {
+        breaker = new MemoryCircuitBreaker(new ByteSizeValue(10, ByteSizeUnit.MB), 1.0, LogManager.getLogger());
+    }
+
+    @After
+    public void cleanUp() {
+        QueryMemoryAccount.initialize(new NoopCircuitBreaker(QueryMemoryAccount.BREAKER_NAME), -1);
+    }
+
+    @Test
+    public void sameContentAsZeroCopyResponse() throws IOException {
+        List<SearchHit> hits = hits(3);
+        MetaSearchResult metaResults = metaResults();
+
+        StreamingHitsResponse response = new StreamingHitsResponse();
+        hits.forEach(response);
+        String streamed = toString(response.finish(metaResults));
+        String zeroCopy = toString(ElasticUtils.hitsAsStringResultZeroCopy(hits, metaResults, null));
+
+        assertThat(toMap(streamed), is(toMap(zeroCopy)));
+
+        // Hits total and metadata are only known after the last hit, so they are written as a trailer
+        assertThat(streamed.indexOf("\"hits\""), lessThan(streamed.indexOf("\"took\"")));
+        assertThat(streamed.indexOf("\"_id\""), lessThan(streamed.indexOf("\"total\"")));
+        assertThat(zeroCopy.indexOf("\"took\""), lessThan(zeroCopy.indexOf("\"hits\"")));
+    }
+
+    @Test
+    public void sameContentAsZeroCopyResponseIfNoHits() throws IOException {
+        MetaSearchResult metaResults = metaResults();
+
+        String streamed = toString(new StreamingHitsResponse().finish(metaResults));
+        String zeroCopy = toString(ElasticUtils.hitsAsStringResultZeroCopy(
+            Collections.emptyList(), metaResults, null));
+
+        assertThat(toMap(streamed), is(toMap(zeroCopy)));
+    }
+
+    @Test
+    public void chargeResponseSizeTwiceToMemoryAccount() throws IOException {
+        QueryMemoryAccount.initialize(breaker, -1);
+        try (QueryMemoryAccount account = QueryMemoryAccount.open()) {
+            StreamingHitsResponse response = new StreamingHitsResponse();
+            hits(2500).forEach(response);
+            int size = BytesReference.bytes(response.finish(metaResults())).length();
+
+            assertThat(account.used(), is(2L * size));
+            assertThat(breaker.getUsed(), is(2L * size));
+        }
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void abortIfCircuitBreakerTripsInTheMiddle() throws IOException {
+        QueryMemoryAccount.initialize(breaker, 10_000);
+        List<SearchHit> hits = hits(2500);
+        int numOfHitsWritten = 0;
+
+        try (QueryMemoryAccount account = QueryMemoryAccount.open()) {
+            StreamingHitsResponse response = new StreamingHitsResponse();
+            try {
+                for (SearchHit hit : hits) {
+                    response.accept(hit);
+                    numOfHitsWritten++;
+                }
+                fail("Expected circuit breaking exception thrown");
+            } catch (CircuitBreakingException e) {
+                response.close();
+            }
+
+            // Trips at first charge after 1000 hits rather than after all hits buffered
+            assertThat(numOfHitsWritten, is(999));
+            assertThat(account.used(), is(0L));
+            assertThat(breaker.getUsed(), is(0L));
+        }
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    private List<SearchHit> hits(int numOfHits) {
+        List<SearchHit> hits = new ArrayList<>();
+        for (int i = 0; i < numOfHits; i++) {
+            SearchHit hit = new SearchHit(i, String.valueOf(i), new Text("account"), Collections.emptyMap());
+            hit.sourceRef(new BytesArray("{\"name\":\"name" + i + "\",\"age\":" + (20 + i % 50) + "}"));
+            if (i % 2 == 0) {
+                hit.score(1.0f);
+            }
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    private MetaSearchResult metaResults() {
+        MetaSearchResult metaResults = new MetaSearchResult();
+        metaResults.setTookImMilli(12);
+        metaResults.addTotalNumOfShards(5);
+        metaResults.addSuccessfulShards(4);
+        metaResults.addFailedShards(1);
+        return metaResults;
+    }
+
+    private String toString(XContentBuilder builder) {
+        String result = BytesReference.bytes(builder).utf8ToString();
+        assertThat(result.length(), greaterThan(0));
+        return result;
+    }
+
+    private Map<String, Object> toMap(String json) {
+        return XContentHelper.convertToMap(new BytesArray(json), false, XContentType.JSON).v2();
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest;
+
+import com.amazon.opendistroforelasticsearch.sql.executor.WorkloadClass;
+import com.amazon.opendistroforelasticsearch.sql.query.DefaultQueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.join.ESJoinQueryAction;
+import com.amazon.opendistroforelasticsearch.sql.query.multi.MultiQueryAction;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Workload class of query test
+ */
+public class WorkloadClassTest {
+
+    @Test
+    public void singleIndexQueryIsLight() {
+        assertThat(WorkloadClass.of(mock(DefaultQueryAction.class), "jdbc"), is(WorkloadClass.LIGHT));
+        assertThat(WorkloadClass.of(mock(DefaultQueryAction.class), null), is(WorkloadClass.LIGHT));
+    }
+
+    @Test
+    public void joinMinusAndCsvAreHeavy() {
+        assertThat(WorkloadClass.of(mock(ESJoinQueryAction.class), "jdbc"), is(WorkloadClass.HEAVY));
+        assertThat(WorkloadClass.of(mock(MultiQueryAction.class), null), is(WorkloadClass.HEAVY));
+        assertThat(WorkloadClass.of(mock(DefaultQueryAction.class), "csv"), is(WorkloadClass.HEAVY));
+    }
+
+    @Test
+    public void queueTimeRecordedPerClass() {
+        long queries = (long) WorkloadClass.HEAVY.stats().get("queries");
+        WorkloadClass.HEAVY.recordQueueTime(3_600_000L);
+
+        assertThat(WorkloadClass.HEAVY.stats().get("queries"), is(queries + 1));
+        assertThat(WorkloadClass.HEAVY.stats().get("max_queue_time_in_millis"), is(3_600_000L));
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.MemStats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.blocksize.AdaptiveBlockSize;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Adaptive block size calculation test
+ */
+public class AdaptiveBlockSizeTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void initialSizeBeforeAnyBlockMeasured() {
+        AdaptiveBlockSize blockSize = new AdaptiveBlockSize(10000, 85, memStats(1000 * MB, 500 * MB));
+        assertThat(blockSize.size(), is(10000));
+    }
+
+    @Test
+    public void largerBlockIfMoreHeadroom() {
+        // Headroom = 1000MB * 50% - 200MB = 300MB, half of which is for block of 1KB rows
+        AdaptiveBlockSize blockSize = new AdaptiveBlockSize(10000, 50, memStats(1000 * MB, 800 * MB));
+        blockSize.measure(rows(10, 1024));
+        assertThat(blockSize.size(), is((int) (150 * MB / 1024)));
+    }
+
+    @Test
+    public void minBlockSizeIfNoHeadroom() {
+        AdaptiveBlockSize blockSize = new AdaptiveBlockSize(10000, 85, memStats(1000 * MB, 100 * MB));
+        blockSize.measure(rows(10, 1024));
+        assertThat(blockSize.size(), is(AdaptiveBlockSize.MIN_BLOCK_SIZE));
+    }
+
+    @Test
+    public void headroomBasedOnMaxHeapRatherThanCommitted() {
+        // Headroom = 1000MB max * 50% - 200MB used = 300MB even though only 500MB committed
+        AdaptiveBlockSize blockSize = new AdaptiveBlockSize(10000, 50, memStats(500 * MB, 300 * MB, 1000 * MB, Long.MAX_VALUE));
+        blockSize.measure(rows(10, 1024));
+        assertThat(blockSize.size(), is((int) (150 * MB / 1024)));
+    }
+
+    @Test
+    public void smallerBlockIfSqlBreakerHeadroomIsLess() {
+        AdaptiveBlockSize blockSize = new AdaptiveBlockSize(10000, 50, memStats(1000 * MB, 800 * MB, 1000 * MB, 100 * MB));
+        blockSize.measure(rows(10, 1024));
+        assertThat(blockSize.size(), is((int) (50 * MB / 1024)));
+    }
+
+    @Test
+    public void smoothSizeChangeBetweenBlocks() {
+        long[] breakerHeadroom = { 300 * MB };
+        Stats stats = new Stats(null) {
+            @Override
+            public MemStats collectMemStats() {
+                return new MemStats(1000 * MB, 1000 * MB, 1000 * MB);
+            }
+
+            @Override
+            public long collectBreakerHeadroom() {
+                return breakerHeadroom[0];
+            }
+        };
+        AdaptiveBlockSize blockSize = new AdaptiveBlockSize(10000, 100, stats);
+
+        blockSize.measure(rows(10, 1024));
+        assertThat(blockSize.size(), is((int) (150 * MB / 1024)));
+
+        // Target drops to 50MB worth of rows but size only moves halfway
+        breakerHeadroom[0] = 100 * MB;
+        blockSize.measure(rows(10, 1024));
+        assertThat(blockSize.size(), is((int) (100 * MB / 1024)));
+    }
+
+    @Test
+    public void keepSizeIfRowSizeUnknown() {
+        AdaptiveBlockSize blockSize = new AdaptiveBlockSize(10000, 85, memStats(1000 * MB, 500 * MB));
+        blockSize.measure(rows(10, -1));
+        assertThat(blockSize.size(), is(10000));
+    }
+
+    private Stats memStats(long total, long free) {
+        return memStats(total, free, total, Long.MAX_VALUE);
+    }
+
+    private Stats memStats(long total, long free, long max, long breakerHeadroom) {
+        return new Stats(null) {
+            @Override
+            public MemStats collectMemStats() {
+                return new MemStats(free, total, max);
+            }
+
+            @Override
+            public long collectBreakerHeadroom() {
+                return breakerHeadroom;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Row<Object>> rows(int num, long rowSize) {
+        List<Row<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            Row<Object> row = mock(Row.class);
+            when(row.estimatedSize()).thenReturn(rowSize);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row.RowKey;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join.OpenAddressingHashTable;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Open addressing hash table test
+ */
+public class OpenAddressingHashTableTest {
+
+    private final OpenAddressingHashTable<Object> hashTable = new OpenAddressingHashTable<>(
+        new String[]{ "name", "age" }, new String[]{ "firstname", "years" }
+    );
+
+    @Test
+    public void matchRowsOfSameKeyInInsertionOrder() {
+        Row<Object> row1 = row("Alice", 30);
+        Row<Object> row2 = row("Hank", 30);
+        Row<Object> row3 = row("Alice", 30);
+        hashTable.add(row1);
+        hashTable.add(row2);
+        hashTable.add(row3);
+
+        assertThat(hashTable.match(row("Alice", 30)), contains(row1, row3));
+        assertThat(hashTable.match(row("Hank", 30)), contains(row2));
+        assertThat(hashTable.match(row("Alice", 31)), is(empty()));
+    }
+
+    @Test
+    public void sizeIsNumberOfRows() {
+        hashTable.add(row("Alice", 30));
+        hashTable.add(row("Alice", 30));
+        hashTable.add(row("Hank", 25));
+
+        assertThat(hashTable.size(), is(3));
+        assertThat(hashTable.isEmpty(), is(false));
+    }
+
+    @Test
+    public void skipRowsWithNullKey() {
+        hashTable.add(row(RowKey.NULL));
+
+        assertThat(hashTable.size(), is(0));
+        assertThat(hashTable.isEmpty(), is(true));
+        assertThat(hashTable.match(row(RowKey.NULL)), is(empty()));
+    }
+
+    @Test
+    public void matchAllKeysAfterResize() {
+        int numOfKeys = 1000;
+        for (int i = 0; i < numOfKeys; i++) {
+            hashTable.add(row("name" + i, i));
+        }
+
+        assertThat(hashTable.size(), is(numOfKeys));
+        for (int i = 0; i < numOfKeys; i++) {
+            Collection<Row<Object>> matched = hashTable.match(row("name" + i, i));
+            assertThat(matched.size(), is(1));
+        }
+    }
+
+    @Test
+    public void memoryGrowsWithRowsAndIsReleasedOnClear() {
+        long initialMemory = hashTable.memoryInBytes();
+        for (int i = 0; i < 1000; i++) {
+            hashTable.add(row("name" + i, i));
+        }
+        assertThat(hashTable.memoryInBytes(), greaterThan(initialMemory));
+
+        hashTable.clear();
+        assertThat(hashTable.size(), is(0));
+        assertThat(hashTable.memoryInBytes(), is(initialMemory));
+    }
+
+    @Test
+    public void rightFieldWithDistinctLeftValuesInLowerCase() {
+        hashTable.add(row("Alice", 30));
+        hashTable.add(row("alice", 30));
+        hashTable.add(row("Hank", 25));
+
+        Map<String, Collection<Object>> values = hashTable.rightFieldWithLeftValues()[0];
+        assertThat(values.get("firstname"), containsInAnyOrder("alice", "hank"));
+        assertThat(values.get("years"), containsInAnyOrder(30L, 25L));
+    }
+
+    @Test
+    public void matchPairKeyOfSameNumberInDifferentTypes() {
+        Row<Object> row1 = row("Alice", 30);
+        Row<Object> row2 = row("Hank", 2.5f);
+        hashTable.add(row1);
+        hashTable.add(row2);
+
+        assertThat(RowKey.of("Alice", 30), is(RowKey.of("Alice", 30L)));
+        assertThat(RowKey.of("Alice", 30).hashCode(), is(RowKey.of("Alice", 30L).hashCode()));
+        assertThat(hashTable.match(row("Alice", 30L)), contains(row1));
+        assertThat(hashTable.match(row("Hank", 2.5d)), contains(row2));
+    }
+
+    @Test
+    public void matchMultiColumnKeyOfSameNumberInDifferentTypes() {
+        Row<Object> row = row(RowKey.of("Alice", 30, 1.5f));
+        hashTable.add(row);
+
+        assertThat(RowKey.of("Alice", 30, 1.5f), is(RowKey.of("Alice", 30L, 1.5d)));
+        assertThat(RowKey.of("Alice", 30, 1.5f).hashCode(), is(RowKey.of("Alice", 30L, 1.5d).hashCode()));
+        assertThat(hashTable.match(row(RowKey.of("Alice", 30L, 1.5d))), contains(row));
+        assertThat(hashTable.match(row(RowKey.of("Alice", 3000000000L, 1.5d))), is(empty()));
+    }
+
+    private Row<Object> row(Object name, Object age) {
+        return row(RowKey.of(name, age));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Row<Object> row(RowKey key) {
+        Row<Object> row = mock(Row.class);
+        when(row.key(any(String[].class))).thenReturn(key);
+        return row;
+    }
+
+}
@@ -30,6 +30,8 @@ import static org.hamcrest.Matchers.arrayContaining;
 import static org.hamcrest.Matchers.both;
 import static org.hamcrest.Matchers.emptyArray;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static com.amazon.opendistroforelasticsearch.sql.util.MatcherUtils.featureValueOf;
 
 /**
@@ -127,6 +129,17 @@ public class QueryPlannerConfigTest extends QueryPlannerTest {
         );
     }
 
+    @Test
+    public void scrollSlicesHint() {
+        assertThat(
+            parseHint("! JOIN_SCROLL_SLICES(4, 8) "),
+            hint(
+                hintType(HintType.JOIN_SCROLL_SLICES),
+                hintValues(4, 8)
+            )
+        );
+    }
+
     @Test
     public void blockSizeConfig() {
         assertThat(queryPlannerConfig(
@@ -242,6 +255,52 @@ public class QueryPlannerConfigTest extends QueryPlannerTest {
         );
     }
 
+    @Test
+    public void scrollSlicesConfig() {
+        assertThat(
+            queryPlannerConfig(
+                "SELECT /*! JOIN_SCROLL_SLICES(4) */ " +
+                "  d.name FROM employee e JOIN department d ON d.id = e.departmentId ").scrollSlices(),
+            arrayContaining(is(4), is(4))
+        );
+    }
+
+    @Test
+    public void defaultScrollSlicesConfig() {
+        assertThat(
+            queryPlannerConfig(
+                "SELECT d.name FROM employee e JOIN department d ON d.id = e.departmentId ").scrollSlices(),
+            arrayContaining(is(Config.DEFAULT_SCROLL_SLICES), is(Config.DEFAULT_SCROLL_SLICES))
+        );
+    }
+
+    @Test
+    public void asyncPrefetchConfig() {
+        assertTrue(
+            queryPlannerConfig(
+                "SELECT /*! JOIN_ASYNC_PREFETCH */ " +
+                "  d.name FROM employee e JOIN department d ON d.id = e.departmentId ").isAsyncPrefetch()
+        );
+    }
+
+    @Test
+    public void parallelProbeConfig() {
+        assertThat(
+            queryPlannerConfig(
+                "SELECT /*! JOIN_PARALLEL_PROBE(8) */ " +
+                "  d.name FROM employee e JOIN department d ON d.id = e.departmentId ").probeParallelism(),
+            is(8)
+        );
+    }
+
+    @Test
+    public void defaultAsyncPrefetchConfig() {
+        assertFalse(
+            queryPlannerConfig(
+                "SELECT d.name FROM employee e JOIN department d ON d.id = e.departmentId ").isAsyncPrefetch()
+        );
+    }
+
     private Hint parseHint(String hintStr) {
         try {
             return HintFactory.getHintFromString(hintStr);
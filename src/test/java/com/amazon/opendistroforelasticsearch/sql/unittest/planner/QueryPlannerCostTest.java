@@ -0,0 +1,292 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
+
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.QueryPlanner;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.IndexStats;
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.amazon.opendistroforelasticsearch.sql.util.CheckScriptContents.mockLocalClusterState;
+import static java.util.Collections.emptyMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Cost-based physical operator selection test
+ */
+public class QueryPlannerCostTest extends QueryPlannerTest {
+
+    private static final String TEST_SQL =
+        "SELECT d.name, e.lastname FROM employee e " +
+        "  JOIN department d ON d.id = e.departmentId";
+
+    /** Same mapping is returned for both employee and department index by mock cluster state */
+    private static final String MAPPING = "{\n" +
+        "  \"employee\": {\n" +
+        "    \"mappings\": {\n" +
+        "      \"_doc\": {\n" +
+        "        \"properties\": {\n" +
+        "          \"id\": { \"type\": \"keyword\" },\n" +
+        "          \"departmentId\": { \"type\": \"keyword\" },\n" +
+        "          \"age\": { \"type\": \"long\" },\n" +
+        "          \"level\": { \"type\": \"integer\" },\n" +
+        "          \"name\": { \"type\": \"text\", \"fields\": { \"keyword\": { \"type\": \"keyword\" } } },\n" +
+        "          \"lastname\": { \"type\": \"text\" }\n" +
+        "        }\n" +
+        "      }\n" +
+        "    }\n" +
+        "  }\n" +
+        "}";
+
+    /** Indices counted by hit count query at plan time */
+    private final List<String> countedIndices = new ArrayList<>();
+
+    @Before
+    public void mockMappings() {
+        mockLocalClusterState(MAPPING);
+    }
+
+    @After
+    public void cleanUp() {
+        LocalClusterState.state(null);
+    }
+
+    @Test
+    public void hashJoinIfNoStatistics() {
+        String explain = plan(TEST_SQL).explain();
+        assertThat(explain, containsString("BlockHashJoin"));
+        assertThat(explain, not(containsString("SortMergeJoin")));
+    }
+
+    @Test
+    public void mergeJoinIfBothTablesAreLarge() {
+        String explain = planWithStats(
+            TEST_SQL,
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("SortMergeJoin"));
+        assertThat(explain, not(containsString("BlockHashJoin")));
+    }
+
+    @Test
+    public void hashJoinIfJoinKeyIsTextField() {
+        String explain = planWithStats(
+            "SELECT d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.name = e.lastname",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("BlockHashJoin"));
+        assertThat(explain, not(containsString("SortMergeJoin")));
+    }
+
+    @Test
+    public void hashJoinIfJoinKeysAreOfDifferentTypes() {
+        String explain = planWithStats(
+            "SELECT d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.id = e.age",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("BlockHashJoin"));
+        assertThat(explain, not(containsString("SortMergeJoin")));
+    }
+
+    @Test
+    public void mergeJoinIfJoinKeysAreOfDifferentIntegralTypes() {
+        String explain = planWithStats(
+            "SELECT d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.level = e.age",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("SortMergeJoin"));
+    }
+
+    @Test
+    public void hashJoinIfJoinKeyMappingIsUnknown() {
+        String explain = planWithStats(
+            "SELECT d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.location = e.address",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("BlockHashJoin"));
+        assertThat(explain, not(containsString("SortMergeJoin")));
+    }
+
+    @Test
+    public void hashJoinIfFirstTableFitsInOneBlock() {
+        String explain = planWithStats(
+            TEST_SQL,
+            ImmutableMap.of(
+                "employee", indexStats(1_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("BlockHashJoin"));
+        assertThat(explain, not(containsString("SortMergeJoin")));
+    }
+
+    @Test
+    public void hashJoinIfMultipleGroupsOfConditions() {
+        String explain = planWithStats(
+            "SELECT d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.id = e.departmentId OR d.name = e.lastname",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("BlockHashJoin"));
+        assertThat(explain, not(containsString("SortMergeJoin")));
+    }
+
+    @Test
+    public void buildHashTableFromSmallerSecondTable() {
+        String explain = planWithStats(
+            "SELECT d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.id = e.departmentId OR d.name = e.lastname",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(50_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("\"swapped\": true"));
+    }
+
+    @Test
+    public void noSwapForLeftJoin() {
+        String explain = planWithStats(
+            "SELECT d.name, e.lastname FROM employee e " +
+            "  LEFT JOIN department d ON d.id = e.departmentId OR d.name = e.lastname",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(50_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("\"swapped\": false"));
+    }
+
+    @Test
+    public void externalSortIfJoinResultExceedsSortBuffer() {
+        String explain = planWithStats(
+            "SELECT /*! JOIN_SORT_BUFFER_SIZE(1000) */ d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.id = e.departmentId ORDER BY e.lastname",
+            ImmutableMap.of(
+                "employee", indexStats(10_000),
+                "department", indexStats(100)
+            )
+        ).explain();
+        assertThat(explain, containsString("ExternalMergeSort"));
+        assertThat(explain, not(containsString("QuickSort")));
+    }
+
+    @Test
+    public void quickSortIfJoinResultFitsInSortBuffer() {
+        String explain = planWithStats(
+            "SELECT /*! JOIN_SORT_BUFFER_SIZE(1000) */ d.name, e.lastname FROM employee e " +
+            "  JOIN department d ON d.id = e.departmentId ORDER BY e.lastname",
+            ImmutableMap.of(
+                "employee", indexStats(500),
+                "department", indexStats(100)
+            )
+        ).explain();
+        assertThat(explain, containsString("QuickSort"));
+        assertThat(explain, not(containsString("ExternalMergeSort")));
+    }
+
+    @Test
+    public void quickSortIfNoStatistics() {
+        String explain = plan(TEST_SQL + " ORDER BY e.lastname").explain();
+        assertThat(explain, containsString("QuickSort"));
+        assertThat(explain, not(containsString("ExternalMergeSort")));
+    }
+
+    @Test
+    public void slicedScrollOnlyIfIndexLargeEnough() {
+        String explain = planWithStats(
+            TEST_SQL,
+            ImmutableMap.of(
+                "employee", indexStats(1_000),
+                "department", indexStats(1_000_000)
+            )
+        ).explain();
+        assertThat(explain, containsString("department as d, pageSize=10000, slices=5 ]"));
+        assertThat(explain, containsString("employee as e, pageSize=10000 ]"));
+    }
+
+    @Test
+    public void sequentialScrollIfNoStatistics() {
+        String explain = plan(TEST_SQL).explain();
+        assertThat(explain, not(containsString("slices=")));
+    }
+
+    @Test
+    public void countHitsOnlyForTableWithWhere() {
+        planWithStats(
+            TEST_SQL + " WHERE e.lastname = 'Smith'",
+            ImmutableMap.of(
+                "employee", indexStats(1_000_000),
+                "department", indexStats(1_000_000)
+            )
+        );
+        assertThat(countedIndices, contains("employee"));
+    }
+
+    private QueryPlanner planWithStats(String sql, Map<String, IndexStats> allStats) {
+        return plan(sql, new Stats(client) {
+            @Override
+            public IndexStats collectIndexStats(String index, String... fieldNames) {
+                return allStats.getOrDefault(index, IndexStats.UNKNOWN);
+            }
+
+            @Override
+            public long countHits(String index, QueryBuilder query) {
+                countedIndices.add(index);
+                return -1;
+            }
+        });
+    }
+
+    private IndexStats indexStats(long docNum) {
+        return new IndexStats(docNum, docNum * 100, 5, emptyMap());
+    }
+
+}
@@ -15,19 +15,58 @@
 
 package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
 
+import com.amazon.opendistroforelasticsearch.sql.esdomain.LocalClusterState;
+import com.amazon.opendistroforelasticsearch.sql.executor.QueryMemoryAccount;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.QueryPlanner;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.IndexStats;
 import com.amazon.opendistroforelasticsearch.sql.util.MatcherUtils;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchHit;
 import org.hamcrest.MatcherAssert;
+import org.junit.After;
 import org.junit.Test;
 
+import static com.amazon.opendistroforelasticsearch.sql.util.CheckScriptContents.mockLocalClusterState;
 import static com.amazon.opendistroforelasticsearch.sql.util.MatcherUtils.hit;
 import static com.amazon.opendistroforelasticsearch.sql.util.MatcherUtils.hits;
+import static java.util.Collections.emptyMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Query planner execution unit test
  */
 public class QueryPlannerExecuteTest extends QueryPlannerTest {
 
+    /** Same mapping is returned for both employee and department index by mock cluster state */
+    private static final String MAPPING = "{\n" +
+        "  \"employee\": {\n" +
+        "    \"mappings\": {\n" +
+        "      \"_doc\": {\n" +
+        "        \"properties\": {\n" +
+        "          \"id\": { \"type\": \"keyword\" },\n" +
+        "          \"departmentId\": { \"type\": \"keyword\" },\n" +
+        "          \"name\": { \"type\": \"text\" },\n" +
+        "          \"lastname\": { \"type\": \"text\" }\n" +
+        "        }\n" +
+        "      }\n" +
+        "    }\n" +
+        "  }\n" +
+        "}";
+
+    @After
+    public void cleanUp() {
+        LocalClusterState.state(null);
+        QueryMemoryAccount.initialize(new NoopCircuitBreaker(QueryMemoryAccount.BREAKER_NAME), -1);
+    }
+
     @Test
     public void simpleJoin() {
         MatcherAssert.assertThat(
@@ -490,6 +529,37 @@ public class QueryPlannerExecuteTest extends QueryPlannerTest {
         );
     }
 
+    @Test
+    public void simpleQueryWithOrderByAndLimit() {
+        MatcherAssert.assertThat(
+            query(
+                "SELECT d.name, e.lastname FROM employee e JOIN department d ON d.id = e.departmentId " +
+                "  ORDER BY e.lastname DESC LIMIT 2",
+                employees(
+                    employee(1, "Hank", "1"),
+                    employee(2, "Alice", "2"),
+                    employee(3, "Allen", "1"),
+                    employee(4, "Ellis", "2"),
+                    employee(5, "Frank", "2")
+                ),
+                departments(
+                    department(1, "1", "AWS"),
+                    department(2, "2", "Retail")
+                )
+            ),
+            MatcherUtils.hitsInOrder(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Frank")
+                )
+            )
+        );
+    }
+
     /** Doesn't support muliple columns from both tables (order is missing) */
     @Test
     public void simpleQueryWithLeftJoinAndOrderByMultipleColumnsFromOneTableInDesc() {
@@ -786,4 +856,559 @@ public class QueryPlannerExecuteTest extends QueryPlannerTest {
         );
     }
 
+    @Test
+    public void simpleJoinSpilledToDisk() {
+        MatcherAssert.assertThat(
+            query(
+                "SELECT /*! JOIN_SPILL_TO_DISK */ d.name, e.lastname FROM employee e " +
+                "  JOIN department d ON d.id = e.departmentId ",
+                employees(
+                    employee(1, "Alice", "1"),
+                    employee(2, "Hank", "2"),
+                    employee(3, "Allen", "1"),
+                    employee(4, "Dell", "3")
+                ),
+                departments(
+                    department(1, "1", "AWS"),
+                    department(2, "2", "Retail")
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void simpleLeftJoinSpilledToDiskWithSomeMismatchesInLeft() {
+        MatcherAssert.assertThat(
+            query(
+                "SELECT /*! JOIN_SPILL_TO_DISK */ d.name, e.lastname FROM employee e " +
+                "  LEFT JOIN department d ON d.id = e.departmentId ",
+                employees(
+                    employee(1, "Alice", "1"),
+                    employee(2, "Hank", "2"),
+                    employee(3, "Allen", null)
+                ),
+                departments(
+                    department(1, "1", "AWS")
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void simpleLeftJoinProbedInParallelWithSomeMismatchesInLeft() {
+        MatcherAssert.assertThat(
+            query(
+                "SELECT /*! JOIN_PARALLEL_PROBE(4) */ d.name, e.lastname FROM employee e " +
+                "  LEFT JOIN department d ON d.id = e.departmentId ",
+                employees(
+                    employee(1, "Alice", "1"),
+                    employee(2, "Hank", "2"),
+                    employee(3, "Allen", null),
+                    employee(4, "Frank", "1")
+                ),
+                departments(
+                    department(1, "1", "AWS")
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Frank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void simpleJoinOnNumericKey() {
+        MatcherAssert.assertThat(
+            query(
+                "SELECT d.name, e.lastname FROM employee e " +
+                "  JOIN department d ON d.id = e.departmentId ",
+                employees(
+                    hitWithSource(1, "{\"lastname\":\"Alice\",\"departmentId\":1}"),
+                    hitWithSource(2, "{\"lastname\":\"Hank\",\"departmentId\":3000000000}"),
+                    hitWithSource(3, "{\"lastname\":\"Allen\",\"departmentId\":1}"),
+                    hitWithSource(4, "{\"lastname\":\"Dell\",\"departmentId\":\"1\"}")
+                ),
+                departments(
+                    hitWithSource(1, "{\"id\":1,\"name\":\"AWS\"}"),
+                    hitWithSource(2, "{\"id\":3000000000,\"name\":\"Retail\"}"),
+                    hitWithSource(3, "{\"id\":\"1\",\"name\":\"Dell\"}")
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Dell"),
+                    MatcherUtils.kv("e.lastname", "Dell")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void blockHashJoinReplaysCachedRightForEachLeftBlock() {
+        MatcherAssert.assertThat(
+            query(
+                "SELECT /*! JOIN_ALGORITHM_BLOCK_SIZE(2) */ d.name, e.lastname FROM employee e " +
+                "  JOIN department d ON d.id = e.departmentId ",
+                employees(
+                    employee(1, "Alice", "1"),
+                    employee(2, "Hank", "2"),
+                    employee(3, "Allen", "1"),
+                    employee(4, "Dell", "3"),
+                    employee(5, "Frank", "2")
+                ),
+                departments(
+                    department(1, "1", "AWS"),
+                    department(2, "2", "Retail")
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Frank")
+                )
+            )
+        );
+
+        // Left is scrolled once and right only for the first of 3 blocks
+        verify(client, times(2)).execute(any(), any());
+    }
+
+    @Test
+    public void blockHashJoinReScrollsRightIfLargerThanBlock() {
+        MatcherAssert.assertThat(
+            query(
+                "SELECT /*! JOIN_ALGORITHM_BLOCK_SIZE(2) */ d.name, e.lastname FROM employee e " +
+                "  JOIN department d ON d.id = e.departmentId ",
+                employees(
+                    employee(1, "Alice", "1"),
+                    employee(2, "Hank", "2"),
+                    employee(3, "Allen", "1"),
+                    employee(4, "Dell", "3"),
+                    employee(5, "Frank", "2")
+                ),
+                departments(
+                    department(1, "1", "AWS"),
+                    department(2, "2", "Retail"),
+                    department(3, "3", "Kindle")
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Kindle"),
+                    MatcherUtils.kv("e.lastname", "Dell")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Frank")
+                )
+            )
+        );
+
+        // Left is scrolled once and right is re-scrolled for each of 3 blocks
+        verify(client, times(4)).execute(any(), any());
+    }
+
+    @Test
+    public void mergeJoinWithDuplicateKeysOnBothSides() {
+        MatcherAssert.assertThat(
+            query(
+                planMergeJoin(
+                    "SELECT d.name, e.lastname FROM employee e " +
+                    "  JOIN department d ON d.id = e.departmentId "
+                ),
+                employees(
+                    sortedBy("1", employee(1, "Alice", "1")),
+                    sortedBy("1", employee(2, "Hank", "1")),
+                    sortedBy("2", employee(3, "Allen", "2")),
+                    sortedBy("4", employee(4, "Dell", "4"))
+                ),
+                departments(
+                    sortedBy("1", department(1, "1", "AWS")),
+                    sortedBy("1", department(2, "1", "Alexa")),
+                    sortedBy("2", department(3, "2", "Retail")),
+                    sortedBy("3", department(4, "3", "Kindle"))
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Alexa"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Alexa"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void mergeJoinWithNullKeysOnBothSides() {
+        MatcherAssert.assertThat(
+            query(
+                planMergeJoin(
+                    "SELECT d.name, e.lastname FROM employee e " +
+                    "  JOIN department d ON d.id = e.departmentId "
+                ),
+                employees(
+                    sortedBy("1", employee(1, "Alice", "1")),
+                    sortedBy(null, employee(2, "Hank", null)),
+                    sortedBy(null, employee(3, "Allen", null))
+                ),
+                departments(
+                    sortedBy("1", department(1, "1", "AWS")),
+                    sortedBy(null, department(2, null, "Retail"))
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void mergeLeftJoinWithSomeMismatchesAndNullKeysInLeft() {
+        MatcherAssert.assertThat(
+            query(
+                planMergeJoin(
+                    "SELECT d.name, e.lastname FROM employee e " +
+                    "  LEFT JOIN department d ON d.id = e.departmentId "
+                ),
+                employees(
+                    sortedBy("1", employee(1, "Alice", "1")),
+                    sortedBy("2", employee(2, "Hank", "2")),
+                    sortedBy("5", employee(3, "Dell", "5")),
+                    sortedBy(null, employee(4, "Allen", null))
+                ),
+                departments(
+                    sortedBy("1", department(1, "1", "AWS")),
+                    sortedBy("3", department(2, "3", "Retail")),
+                    sortedBy("5", department(3, "5", "Kindle")),
+                    sortedBy(null, department(4, null, "Alexa"))
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Kindle"),
+                    MatcherUtils.kv("e.lastname", "Dell")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void mergeJoinWithRightGroupAcrossPages() {
+        MatcherAssert.assertThat(
+            query(
+                planMergeJoin(
+                    "SELECT d.name, e.lastname FROM employee e " +
+                    "  JOIN department d ON d.id = e.departmentId "
+                ),
+                employees(2,
+                    sortedBy("2", employee(1, "Alice", "2")),
+                    sortedBy("2", employee(2, "Hank", "2")),
+                    sortedBy("3", employee(3, "Allen", "3"))
+                ),
+                departments(2,
+                    sortedBy("1", department(1, "1", "AWS")),
+                    sortedBy("2", department(2, "2", "Retail")),
+                    sortedBy("2", department(3, "2", "Kindle")),
+                    sortedBy("2", department(4, "2", "Alexa")),
+                    sortedBy("3", department(5, "3", "Prime"))
+                )
+            ),
+            hits(
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Kindle"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Alexa"),
+                    MatcherUtils.kv("e.lastname", "Alice")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Kindle"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Alexa"),
+                    MatcherUtils.kv("e.lastname", "Hank")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Prime"),
+                    MatcherUtils.kv("e.lastname", "Allen")
+                )
+            )
+        );
+    }
+
+    @Test(expected = CircuitBreakingException.class)
+    public void mergeJoinTripsIfRightGroupExceedsQueryMemoryLimit() {
+        QueryMemoryAccount.initialize(new NoopCircuitBreaker(QueryMemoryAccount.BREAKER_NAME), 1);
+        try (QueryMemoryAccount ignored = QueryMemoryAccount.open()) {
+            query(
+                planMergeJoin(
+                    "SELECT d.name, e.lastname FROM employee e " +
+                    "  JOIN department d ON d.id = e.departmentId "
+                ),
+                employees(
+                    sortedBy("1", employee(1, "Alice", "1"))
+                ),
+                departments(
+                    sortedBy("1", department(1, "1", "AWS")),
+                    sortedBy("1", department(2, "1", "Retail"))
+                )
+            );
+        }
+    }
+
+    @Test
+    public void externalSortWithTiesAcrossRunsAndNullLastInAsc() {
+        MatcherAssert.assertThat(
+            query(
+                planExternalSort(
+                    "SELECT /*! JOIN_SORT_BUFFER_SIZE(2) */ d.name, e.lastname FROM employee e " +
+                    "  LEFT JOIN department d ON d.id = e.departmentId ORDER BY d.name"
+                ),
+                employeesForExternalSort(),
+                departmentsForExternalSort()
+            ),
+            MatcherUtils.hitsInOrder(
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Zoe")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Bob")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Ann")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Carl")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Dave")
+                )
+            )
+        );
+    }
+
+    @Test
+    public void externalSortWithTiesAcrossRunsAndNullFirstInDesc() {
+        MatcherAssert.assertThat(
+            query(
+                planExternalSort(
+                    "SELECT /*! JOIN_SORT_BUFFER_SIZE(2) */ d.name, e.lastname FROM employee e " +
+                    "  LEFT JOIN department d ON d.id = e.departmentId ORDER BY d.name DESC"
+                ),
+                employeesForExternalSort(),
+                departmentsForExternalSort()
+            ),
+            MatcherUtils.hitsInOrder(
+                hit(
+                    MatcherUtils.kv("d.name", null),
+                    MatcherUtils.kv("e.lastname", "Dave")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "Retail"),
+                    MatcherUtils.kv("e.lastname", "Carl")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Zoe")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Bob")
+                ),
+                hit(
+                    MatcherUtils.kv("d.name", "AWS"),
+                    MatcherUtils.kv("e.lastname", "Ann")
+                )
+            )
+        );
+    }
+
+    /**
+     * Hash join yields matched rows in order of departments and then the mismatched one. With sort buffer of 2,
+     * runs spilled are [Zoe(AWS), Carl(Retail)], [Bob(AWS), Ann(AWS)] and [Dave(NULL)] so ties on AWS span runs.
+     */
+    private MockSearchHits employeesForExternalSort() {
+        return employees(
+            employee(1, "Zoe", "1"),
+            employee(2, "Carl", "2"),
+            employee(3, "Bob", "3"),
+            employee(4, "Ann", "4"),
+            employee(5, "Dave", "5")
+        );
+    }
+
+    private MockSearchHits departmentsForExternalSort() {
+        return departments(
+            department(1, "1", "AWS"),
+            department(2, "2", "Retail"),
+            department(3, "3", "AWS"),
+            department(4, "4", "AWS")
+        );
+    }
+
+    /** Plan with statistics of large tables and keyword join keys so that merge join is chosen */
+    private QueryPlanner planMergeJoin(String sql) {
+        mockLocalClusterState(MAPPING);
+        QueryPlanner planner = planWithStats(sql, 1_000_000, 1_000_000);
+        assertThat(planner.explain(), containsString("SortMergeJoin"));
+        return planner;
+    }
+
+    /** Plan with statistics of join result larger than sort buffer so that external merge sort is chosen */
+    private QueryPlanner planExternalSort(String sql) {
+        QueryPlanner planner = planWithStats(sql, 10_000, 100);
+        assertThat(planner.explain(), containsString("ExternalMergeSort"));
+        return planner;
+    }
+
+    private QueryPlanner planWithStats(String sql, long employeeDocNum, long departmentDocNum) {
+        return plan(sql, new Stats(client) {
+            @Override
+            public IndexStats collectIndexStats(String index, String... fieldNames) {
+                long docNum = "employee".equals(index) ? employeeDocNum : departmentDocNum;
+                return new IndexStats(docNum, docNum * 100, 5, emptyMap());
+            }
+        });
+    }
+
+    /** Set sort values the same as returned by Elasticsearch for hit sorted by keyword join key and _doc */
+    private SearchHit sortedBy(String key, SearchHit hit) {
+        hit.sortValues(
+            new Object[]{ key, (long) hit.docId() },
+            new DocValueFormat[]{ DocValueFormat.RAW, DocValueFormat.RAW }
+        );
+        return hit;
+    }
+
+    private SearchHit hitWithSource(int docId, String source) {
+        SearchHit hit = new SearchHit(docId);
+        hit.sourceRef(new BytesArray(source));
+        return hit;
+    }
+
 }
@@ -29,7 +29,9 @@ import com.amazon.opendistroforelasticsearch.sql.query.QueryAction;
 import com.amazon.opendistroforelasticsearch.sql.query.SqlElasticRequestBuilder;
 import com.amazon.opendistroforelasticsearch.sql.query.join.ESJoinQueryActionFactory;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.HashJoinQueryPlanRequestBuilder;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.core.QueryParams;
 import com.amazon.opendistroforelasticsearch.sql.query.planner.core.QueryPlanner;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.apache.logging.log4j.core.config.builder.api.AppenderComponentBuilder;
@@ -147,6 +149,10 @@ public abstract class QueryPlannerTest {
     }
 
     protected SearchHits query(String sql, MockSearchHits mockHits1, MockSearchHits mockHits2) {
+        return query(plan(sql), mockHits1, mockHits2);
+    }
+
+    protected SearchHits query(QueryPlanner planner, MockSearchHits mockHits1, MockSearchHits mockHits2) {
         doAnswer(mockHits1).when(response1).getHits();
         doAnswer(mockHits2).when(response2).getHits();
 
@@ -161,7 +167,7 @@ public abstract class QueryPlannerTest {
             }
         });
 
-        List<SearchHit> hits = plan(sql).execute();
+        List<SearchHit> hits = planner.execute();
         return new SearchHits(hits.toArray(new SearchHit[0]), hits.size(), 0);
     }
 
@@ -173,6 +179,26 @@ public abstract class QueryPlannerTest {
         throw new IllegalStateException("Not a JOIN query: " + sql);
     }
 
+    /**
+     * Plan with statistics given instead of collecting from cluster, ex. to make cost-based selection predictable.
+     */
+    protected QueryPlanner plan(String sql, Stats stats) {
+        HashJoinQueryPlanRequestBuilder request = (HashJoinQueryPlanRequestBuilder) createRequestBuilder(sql);
+        request.plan(); // Configure limits in config
+
+        return new QueryPlanner(
+            client,
+            request.getConfig(),
+            new QueryParams(
+                request.getFirstTable(),
+                request.getSecondTable(),
+                request.getJoinType(),
+                request.getT1ToT2FieldsComparison()
+            ),
+            stats
+        );
+    }
+
     protected SqlElasticRequestBuilder createRequestBuilder(String sql) {
         try {
             SQLQueryExpr sqlExpr = (SQLQueryExpr) toSqlExpr(sql);
@@ -0,0 +1,147 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.join.RuntimeFilter;
+import org.elasticsearch.index.query.MatchAllQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.ScriptQueryBuilder;
+import org.elasticsearch.index.query.TermsQueryBuilder;
+import org.elasticsearch.script.Script;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Runtime filter selection test cases
+ */
+public class RuntimeFilterTest {
+
+    @Test
+    public void termsFilterForFewKeys() {
+        QueryBuilder filter = RuntimeFilter.filterOf("name", Arrays.asList("alice", "hank", "alice"), true);
+        assertThat(filter, instanceOf(TermsQueryBuilder.class));
+        assertThat(((TermsQueryBuilder) filter).values(), hasSize(2));
+    }
+
+    @Test
+    public void rangeFilterForManyNumericKeys() {
+        List<Object> values = new ArrayList<>();
+        for (long i = 10; i < RuntimeFilter.MAX_TERMS_SIZE + 20; i++) {
+            values.add(i);
+        }
+
+        QueryBuilder filter = RuntimeFilter.filterOf("age", values, false);
+        assertThat(filter, instanceOf(RangeQueryBuilder.class));
+        assertThat(((RangeQueryBuilder) filter).from(), is(10L));
+        assertThat(((RangeQueryBuilder) filter).to(), is((long) RuntimeFilter.MAX_TERMS_SIZE + 19));
+    }
+
+    @Test
+    public void bloomFilterForManyStringKeys() {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i <= RuntimeFilter.MAX_TERMS_SIZE; i++) {
+            values.add("name" + i);
+        }
+
+        QueryBuilder filter = RuntimeFilter.filterOf("name", values, true);
+        assertThat(filter, instanceOf(ScriptQueryBuilder.class));
+        assertThat(((ScriptQueryBuilder) filter).script().getParams().get("field"), is("name"));
+    }
+
+    @Test
+    public void noFilterForManyStringKeysOnNonKeywordField() {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i <= RuntimeFilter.MAX_TERMS_SIZE; i++) {
+            values.add("2019-01-" + i);
+        }
+
+        QueryBuilder filter = RuntimeFilter.filterOf("birthday", values, false);
+        assertThat(filter, instanceOf(MatchAllQueryBuilder.class));
+    }
+
+    @Test
+    public void bloomFilterScriptHashesSameAsJava() {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i <= RuntimeFilter.MAX_TERMS_SIZE; i++) {
+            values.add("name" + i);
+        }
+        Script script = ((ScriptQueryBuilder) RuntimeFilter.filterOf("name", values, true)).script();
+
+        // Script lines transcribed in scriptMightContain() below
+        assertThat(script.getIdOrCode(), containsString("int h1 = value.toLowerCase().hashCode();"));
+        assertThat(script.getIdOrCode(), containsString("int h2 = (h1 >>> 16) | (h1 << 16);"));
+        assertThat(script.getIdOrCode(), containsString(
+            "int index = ((h1 + i * h2) & 0x7fffffff) % params.numOfBits;"));
+        assertThat(script.getIdOrCode(), containsString("isAllSet = (word & (1L << (index & 63))) != 0;"));
+
+        Map<String, Object> params = script.getParams();
+        int numOfBits = (int) params.get("numOfBits");
+        int numOfHashes = (int) params.get("numOfHashes");
+        for (Object value : values) {
+            int h1 = ((String) value).hashCode();
+            for (int i = 0; i < numOfHashes; i++) {
+                assertThat(scriptIndexOf((String) value, i, numOfBits),
+                           is(RuntimeFilter.bloomIndexOf(h1, i, numOfBits)));
+            }
+            assertThat(scriptMightContain(params, (String) value), is(true));
+            assertThat(scriptMightContain(params, ((String) value).toUpperCase()), is(true));
+        }
+
+        int numOfFalsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (scriptMightContain(params, "other" + i)) {
+                numOfFalsePositives++;
+            }
+        }
+        assertThat(numOfFalsePositives, lessThan(50));
+    }
+
+    /** Index computed the same way as painless script, which is Java-compatible for these lines */
+    private int scriptIndexOf(String value, int i, int numOfBits) {
+        int h1 = value.toLowerCase().hashCode();
+        int h2 = (h1 >>> 16) | (h1 << 16);
+        return ((h1 + i * h2) & 0x7fffffff) % numOfBits;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean scriptMightContain(Map<String, Object> params, String value) {
+        List<Long> bits = (List<Long>) params.get("bits");
+        int numOfBits = (int) params.get("numOfBits");
+        int numOfHashes = (int) params.get("numOfHashes");
+
+        boolean isAllSet = true;
+        for (int i = 0; i < numOfHashes && isAllSet; i++) {
+            int index = scriptIndexOf(value, i, numOfBits);
+            long word = bits.get(index >>> 6);
+            isAllSet = (word & (1L << (index & 63))) != 0;
+        }
+        return isAllSet;
+    }
+
+}
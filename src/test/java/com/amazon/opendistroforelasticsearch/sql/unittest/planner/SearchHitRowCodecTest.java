@@ -0,0 +1,96 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.Row;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.RowCodec;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.SearchHitRowCodec;
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.search.SearchHit;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Search hit row encoding test
+ */
+public class SearchHitRowCodecTest {
+
+    private final RowCodec<SearchHit> codec = SearchHitRowCodec.instance();
+
+    @Test
+    public void decodeSourceAndMetadata() throws IOException {
+        Row<SearchHit> row = decode(source());
+
+        SearchHit hit = row.data();
+        assertThat(hit.getId(), is("1"));
+        assertThat(hit.getType(), is("account"));
+        assertThat(hit.getSourceAsMap(), is(source()));
+        assertThat(encodeAndDecode(row).data().getSourceAsMap(), is(source()));
+    }
+
+    @Test
+    public void estimateSizeOfDecodedRowFromSourceMap() throws IOException {
+        Row<SearchHit> small = decode(ImmutableMap.of("age", 30));
+        Row<SearchHit> large = decode(source());
+
+        // Decoded source has no raw bytes but the size should still grow with source
+        assertThat(large.estimatedSize(), greaterThan(small.estimatedSize() + 1000));
+        assertThat(encodeAndDecode(large).estimatedSize(), is(large.estimatedSize()));
+    }
+
+    private Map<String, Object> source() {
+        char[] address = new char[1000];
+        Arrays.fill(address, 'a');
+
+        Map<String, Object> source = new HashMap<>();
+        source.put("name", ImmutableMap.of("first", "Alice", "last", "Hank"));
+        source.put("age", 30);
+        source.put("address", new String(address));
+        source.put("tags", Arrays.asList("a", "b", "c"));
+        return source;
+    }
+
+    /** Encode the same way as SearchHitRowCodec.write() */
+    private Row<SearchHit> decode(Map<String, Object> source) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.writeString("e");
+        out.writeVInt(1);
+        out.writeOptionalString("1");
+        out.writeOptionalString("account");
+        out.writeBoolean(true);
+        out.writeMap(source);
+        out.writeVInt(0);
+        return codec.read(out.bytes().streamInput());
+    }
+
+    private Row<SearchHit> encodeAndDecode(Row<SearchHit> row) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        codec.write(row, out);
+        return codec.read(out.bytes().streamInput());
+    }
+
+}
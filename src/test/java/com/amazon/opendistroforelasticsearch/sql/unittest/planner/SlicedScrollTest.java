@@ -0,0 +1,101 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.physical.node.scroll.SlicedScroll;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequestBuilder;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sliced scroll test
+ */
+public class SlicedScrollTest {
+
+    private Client client;
+
+    private ClearScrollRequestBuilder clearScroll;
+
+    private SlicedScroll slicedScroll;
+
+    private List<ActionListener<SearchResponse>> listeners;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        client = mock(Client.class);
+        clearScroll = mock(ClearScrollRequestBuilder.class);
+        when(client.prepareClearScroll()).thenReturn(clearScroll);
+        when(clearScroll.addScrollId(anyString())).thenReturn(clearScroll);
+        when(clearScroll.get()).thenReturn(new ClearScrollResponse(true, 0));
+
+        slicedScroll = new SlicedScroll(client, 2, TimeValue.timeValueSeconds(60));
+        slicedScroll.open(new SearchRequest("test").source(new SearchSourceBuilder()));
+
+        ArgumentCaptor<ActionListener> listener = ArgumentCaptor.forClass(ActionListener.class);
+        verify(client, times(2)).search(any(SearchRequest.class), listener.capture());
+        listeners = (List) listener.getAllValues();
+        assertThat(listeners, hasSize(2));
+    }
+
+    @Test
+    public void clearScrollOfResponseReceivedButNotConsumed() {
+        listeners.get(0).onResponse(response("scroll0"));
+        slicedScroll.close();
+
+        verify(clearScroll).addScrollId("scroll0");
+        verify(clearScroll).get();
+    }
+
+    @Test
+    public void clearScrollOfResponseArrivingAfterClosed() {
+        slicedScroll.close();
+        verify(clearScroll, never()).get();
+
+        listeners.get(1).onResponse(response("scroll1"));
+        verify(clearScroll).addScrollId("scroll1");
+        verify(clearScroll).execute(any(ActionListener.class));
+    }
+
+    private SearchResponse response(String scrollId) {
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getScrollId()).thenReturn(scrollId);
+        return response;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+
+
+package com.amazon.opendistroforelasticsearch.sql.unittest.planner;
+
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats;
+import com.amazon.opendistroforelasticsearch.sql.query.planner.resource.Stats.IndexStats;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.action.admin.indices.stats.CommonStats;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.shard.DocsStats;
+import org.elasticsearch.index.store.StoreStats;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Statistics collection test
+ */
+public class StatsTest {
+
+    private Client client;
+
+    @Before
+    public void init() {
+        client = mock(Client.class, RETURNS_DEEP_STUBS);
+    }
+
+    @Test
+    public void scaleUpCardinalityIfSampleMostlyDistinct() {
+        indexStatsReturns("stats_test_unique", 1_000_000);
+        cardinalityReturns("stats_test_unique", "id", 50_000, 40_000, true);
+
+        IndexStats stats = new Stats(client).collectIndexStats("stats_test_unique", "id");
+        assertThat(stats.getCardinality("id"), is(800_000L));
+    }
+
+    @Test
+    public void keepCardinalityIfSampleHasFewDistinctValues() {
+        indexStatsReturns("stats_test_low", 1_000_000);
+        cardinalityReturns("stats_test_low", "gender", 50_000, 2, true);
+
+        IndexStats stats = new Stats(client).collectIndexStats("stats_test_low", "gender");
+        assertThat(stats.getCardinality("gender"), is(2L));
+    }
+
+    @Test
+    public void keepCardinalityIfAllDocsAggregated() {
+        indexStatsReturns("stats_test_small", 1_000);
+        cardinalityReturns("stats_test_small", "id", 1_000, 1_000, false);
+
+        IndexStats stats = new Stats(client).collectIndexStats("stats_test_small", "id");
+        assertThat(stats.getCardinality("id"), is(1_000L));
+    }
+
+    @Test
+    public void unknownCardinalityIfTimedOut() {
+        indexStatsReturns("stats_test_slow", 1_000_000);
+        when(client.prepareSearch("stats_test_slow").setSize(0).setTerminateAfter(anyInt()).
+                    setTimeout(any(TimeValue.class)).addAggregation(any(AggregationBuilder.class)).
+                    get(any(TimeValue.class))).
+            thenThrow(new ElasticsearchTimeoutException("timeout"));
+
+        IndexStats stats = new Stats(client).collectIndexStats("stats_test_slow", "id");
+        assertThat(stats.getDocNum(), is(1_000_000L));
+        assertThat(stats.getCardinality("id"), is(-1L));
+    }
+
+    @Test
+    public void unknownIndexStatsIfTimedOut() {
+        when(client.admin().indices().prepareStats("stats_test_slow_stats").clear().setDocs(true).setStore(true).
+                    get(any(TimeValue.class))).
+            thenThrow(new ElasticsearchTimeoutException("timeout"));
+
+        IndexStats stats = new Stats(client).collectIndexStats("stats_test_slow_stats", "id");
+        assertThat(stats.isKnown(), is(false));
+        assertThat(stats.getCardinality("id"), is(-1L));
+    }
+
+    @Test
+    public void noIndexStatsCollectedIfDisabled() {
+        IndexStats stats = new Stats(client, false).collectIndexStats("stats_test_disabled", "id");
+
+        assertThat(stats, sameInstance(IndexStats.UNKNOWN));
+        verifyZeroInteractions(client);
+    }
+
+    @Test
+    public void countHitsOnceForSameQuery() {
+        when(client.prepareSearch("stats_test_count").setQuery(any(QueryBuilder.class)).setSize(0).
+                    setTerminateAfter(anyInt()).setTimeout(any(TimeValue.class)).get(any(TimeValue.class))).
+            thenReturn(hitCount(100, false), hitCount(200, false));
+
+        Stats stats = new Stats(client);
+        assertThat(stats.countHits("stats_test_count", termQuery("age", 30)), is(100L));
+        assertThat(stats.countHits("stats_test_count", termQuery("age", 30)), is(100L));
+        assertThat(stats.countHits("stats_test_count", termQuery("age", 40)), is(200L));
+    }
+
+    @Test
+    public void unknownHitCountIfTerminatedEarly() {
+        when(client.prepareSearch("stats_test_count_many").setQuery(any(QueryBuilder.class)).setSize(0).
+                    setTerminateAfter(anyInt()).setTimeout(any(TimeValue.class)).get(any(TimeValue.class))).
+            thenReturn(hitCount(Stats.HIT_COUNT_TERMINATE_AFTER_PER_SHARD, true));
+
+        assertThat(new Stats(client).countHits("stats_test_count_many", termQuery("age", 30)), is(-1L));
+    }
+
+    @Test
+    public void unknownHitCountIfTimedOut() {
+        when(client.prepareSearch("stats_test_count_slow").setQuery(any(QueryBuilder.class)).setSize(0).
+                    setTerminateAfter(anyInt()).setTimeout(any(TimeValue.class)).get(any(TimeValue.class))).
+            thenThrow(new ElasticsearchTimeoutException("timeout"));
+
+        assertThat(new Stats(client).countHits("stats_test_count_slow", termQuery("age", 30)), is(-1L));
+    }
+
+    @Test
+    public void noHitCountIfDisabled() {
+        assertThat(new Stats(client, false).countHits("stats_test_count_disabled", termQuery("age", 30)), is(-1L));
+        verifyZeroInteractions(client);
+    }
+
+    private SearchResponse hitCount(long hitNum, boolean terminatedEarly) {
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(new SearchHit[0], hitNum, 0.0f));
+        when(response.isTerminatedEarly()).thenReturn(terminatedEarly);
+        return response;
+    }
+
+    private void indexStatsReturns(String index, long docNum) {
+        CommonStats primaries = mock(CommonStats.class);
+        when(primaries.getDocs()).thenReturn(new DocsStats(docNum, 0, docNum * 100));
+        when(primaries.getStore()).thenReturn(new StoreStats(docNum * 100));
+
+        IndicesStatsResponse response = mock(IndicesStatsResponse.class);
+        when(response.getShards()).thenReturn(new ShardStats[0]);
+        when(response.getPrimaries()).thenReturn(primaries);
+        when(client.admin().indices().prepareStats(index).clear().setDocs(true).setStore(true).
+                    get(any(TimeValue.class))).
+            thenReturn(response);
+    }
+
+    private void cardinalityReturns(String index, String field, long sampled, long distinct, boolean terminatedEarly) {
+        Cardinality cardinality = mock(Cardinality.class);
+        when(cardinality.getValue()).thenReturn(distinct);
+        Aggregations aggregations = mock(Aggregations.class);
+        doReturn(cardinality).when(aggregations).get(field);
+
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(new SearchHits(new SearchHit[0], sampled, 0.0f));
+        when(response.isTerminatedEarly()).thenReturn(terminatedEarly);
+        when(response.getAggregations()).thenReturn(aggregations);
+        when(client.prepareSearch(index).setSize(0).setTerminateAfter(anyInt()).
+                    setTimeout(any(TimeValue.class)).addAggregation(any(AggregationBuilder.class)).
+                    get(any(TimeValue.class))).
+            thenReturn(response);
+    }
+
+}